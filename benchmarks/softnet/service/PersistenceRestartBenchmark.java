@@ -0,0 +1,105 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.service;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.UUID;
+
+/*
+ * Measures how long ServiceFilePersistence takes to reopen a file of a given size, and the slowest save()
+ * observed while the file was being filled. The workload replaces a fixed set of events in rotation, so most
+ * of the file consists of superseded records that the checkpoint lets the loader skip.
+ *
+ * Build the library, compile this class against it and run:
+ *   java -cp <library classes>:<benchmark classes> softnet.service.PersistenceRestartBenchmark [directory] [sizesMB] [runs]
+ * e.g. softnet.service.PersistenceRestartBenchmark /tmp 4,16,64,256 5
+ * Every run starts from a new file, so the results depend only on the arguments and the disk.
+ */
+public class PersistenceRestartBenchmark
+{
+	private static final int EventNames = 1000;
+	private static final int PayloadBytes = 200;
+	
+	public static void main(String[] args) throws Exception
+	{
+		String directory = args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir");
+		String sizeList = args.length > 1 ? args[1] : "4,16,64,256";
+		int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		
+		System.out.println("sizeMB\tfileBytes\trestartMillis(median)\trestartMillis(max)\tmaxSaveMillis");
+		for(String size: sizeList.split(","))
+		{
+			long targetBytes = Long.parseLong(size.trim()) * 1048576L;
+			long[] restartMillis = new long[runs];
+			long fileBytes = 0;
+			long maxSaveNanos = 0;
+			for(int run = 0; run < runs; run++)
+			{
+				UUID serviceUid = UUID.randomUUID();
+				File file = new File(directory, "softnet.service.persistence_" + serviceUid.toString() + ".ssp");
+				try
+				{
+					maxSaveNanos = Math.max(maxSaveNanos, fill(serviceUid, targetBytes * 2, directory, targetBytes));
+					fileBytes = file.length();
+					
+					long startTime = System.nanoTime();
+					ServiceFilePersistence persistence = ServiceFilePersistence.create(serviceUid, targetBytes * 2, directory);
+					restartMillis[run] = (System.nanoTime() - startTime) / 1000000;
+					persistence.close();
+				}
+				finally
+				{
+					file.delete();
+					new File(file.getPath() + ".ckp").delete();
+					new File(file.getPath() + ".ckp.tmp").delete();
+					new File(file.getPath() + ".compact").delete();
+				}
+			}
+			Arrays.sort(restartMillis);
+			System.out.println(size.trim() + "\t" + fileBytes + "\t" + restartMillis[runs / 2] + "\t" + restartMillis[runs - 1] + "\t" + (maxSaveNanos / 1000000));
+		}
+	}
+	
+	private static long fill(UUID serviceUid, long storageCapacity, String directory, long targetBytes) throws Exception
+	{
+		byte[] payload = new byte[PayloadBytes];
+		for(int i = 0; i < payload.length; i++)
+			payload[i] = (byte)i;
+		
+		ServiceFilePersistence persistence = ServiceFilePersistence.create(serviceUid, storageCapacity, directory);
+		File file = new File(directory, "softnet.service.persistence_" + serviceUid.toString() + ".ssp");
+		long maxSaveNanos = 0;
+		try
+		{
+			for(int i = 0; file.length() < targetBytes; i++)
+			{
+				ReplacingEvent event = new ReplacingEvent("Event" + (i % EventNames));
+				event.arguments.OctetString(payload);
+				
+				long startTime = System.nanoTime();
+				persistence.save(event);
+				maxSaveNanos = Math.max(maxSaveNanos, System.nanoTime() - startTime);
+			}
+		}
+		finally
+		{
+			persistence.close();
+		}
+		return maxSaveNanos;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet;
+
+import java.io.IOException;
+
+import softnet.core.SelectorLoopGroup;
+import softnet.exceptions.HostErrorSoftnetException;
+
+public class NetworkIO
+{
+	public static void useSelectorLoops() throws HostErrorSoftnetException
+	{
+		useSelectorLoops(Runtime.getRuntime().availableProcessors());
+	}
+	
+	public static synchronized void useSelectorLoops(int loopCount) throws HostErrorSoftnetException
+	{
+		if(loopCount < 1 || loopCount > 256)
+			throw new IllegalArgumentException("The value of 'loopCount' must be in the range [1, 256].");
+		
+		if(SelectorLoopGroup.getShared() != null)
+			throw new IllegalStateException("The selector loops are already in use.");
+		
+		try
+		{
+			SelectorLoopGroup.setShared(new SelectorLoopGroup(loopCount));
+		}
+		catch(IOException ex)
+		{
+			throw new HostErrorSoftnetException(ex.getMessage());
+		}
+	}
+	
+	public static synchronized void useDedicatedThreads()
+	{
+		SelectorLoopGroup.setShared(null);
+	}
+	
+	public static boolean isSelectorMode()
+	{
+		return SelectorLoopGroup.getShared() != null;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet;
+
+import softnet.core.FairExecutor;
+import softnet.core.Scheduler;
+import softnet.core.ThreadPool;
+import softnet.core.TimingWheel;
+
+public class SoftnetRuntime
+{
+	public static SoftnetRuntime create()
+	{
+		return create(Runtime.getRuntime().availableProcessors() * 2);
+	}
+	
+	public static SoftnetRuntime create(int workerThreads)
+	{
+		if(workerThreads < 1 || workerThreads > 1024)
+			throw new IllegalArgumentException("The value of 'workerThreads' must be in the range [1, 1024].");
+		return new SoftnetRuntime(workerThreads);
+	}
+	
+	private SoftnetRuntime(int workerThreads)
+	{
+		executor = new FairExecutor(workerThreads, "softnet-worker");
+		timingWheel = Scheduler.createTimingWheel("softnet-timer");
+	}
+	
+	private FairExecutor executor;
+	private TimingWheel timingWheel;
+	
+	public int getWorkerThreads()
+	{
+		return executor.getWorkerCount();
+	}
+	
+	public boolean isShutdown()
+	{
+		return executor.isShutdown();
+	}
+	
+	public void shutdown()
+	{
+		timingWheel.shutdown();
+		executor.shutdown();
+	}
+	
+	public ThreadPool createThreadPool()
+	{
+		if(executor.isShutdown())
+			throw new IllegalStateException("The softnet runtime has been shut down.");
+		return new ThreadPool(executor);
+	}
+	
+	public Scheduler createScheduler(ThreadPool threadPool)
+	{
+		if(executor.isShutdown())
+			throw new IllegalStateException("The softnet runtime has been shut down.");
+		return new Scheduler(threadPool, timingWheel);
+	}
+}
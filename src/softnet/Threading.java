@@ -0,0 +1,45 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet;
+
+import softnet.core.Threads;
+import softnet.exceptions.HostErrorSoftnetException;
+
+public class Threading
+{
+	public static synchronized void useVirtualThreads() throws HostErrorSoftnetException
+	{
+		if(Threads.isVirtualThreadSupported() == false)
+			throw new HostErrorSoftnetException("Virtual threads are not supported by the Java runtime.");
+		Threads.setVirtualMode(true);
+	}
+	
+	public static synchronized void usePlatformThreads()
+	{
+		Threads.setVirtualMode(false);
+	}
+	
+	public static boolean isVirtualThreadSupported()
+	{
+		return Threads.isVirtualThreadSupported();
+	}
+	
+	public static boolean isVirtualThreadMode()
+	{
+		return Threads.isVirtualMode();
+	}
+}
@@ -0,0 +1,36 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet;
+
+public class WriteStatistics
+{
+	public final long writeCount;
+	public final long messageCount;
+	
+	public WriteStatistics(long writeCount, long messageCount)
+	{
+		this.writeCount = writeCount;
+		this.messageCount = messageCount;
+	}
+	
+	public double getMessagesPerWrite()
+	{
+		if(writeCount == 0)
+			return 0;
+		return (double)messageCount / writeCount;
+	}
+}
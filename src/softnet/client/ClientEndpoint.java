@@ -21,7 +21,9 @@ import java.util.regex.Pattern;
 
 import softnet.EndpointConnectivity;
 import softnet.MembershipUser;
+import softnet.SoftnetRuntime;
 import softnet.TCPOptions;
+import softnet.WriteStatistics;
 import softnet.core.*;
 
 public class ClientEndpoint
@@ -61,6 +63,18 @@ public class ClientEndpoint
 	{
 		endpointConnector.setLocalPingPeriod(seconds);
 	}
+	
+	// Applies to the connection with the Softnet server. With a non-zero flush delay, messages sent within the delay
+	// are written together in one gathering write of at most 'maxBatchBytes'.
+	public void setWriteCoalescing(int maxBatchBytes, int flushDelayMillis)
+	{
+		writeCoalescing.setLimits(maxBatchBytes, flushDelayMillis);
+	}
+	
+	public WriteStatistics getWriteStatistics()
+	{
+		return new WriteStatistics(writeCoalescing.getWriteCount(), writeCoalescing.getMessageCount());
+	}
 
 	public void close()
 	{
@@ -151,6 +165,18 @@ public class ClientEndpoint
 		eventController.setPersistenceL2(fileBasedPersistenceDirectory);
 	}
 		
+	public void setServiceListSnapshot(String snapshotDirectory)
+	{
+		if(snapshotDirectory == null || snapshotDirectory.length() == 0)
+			throw new IllegalArgumentException("'snapshotDirectory' must not be null or empty.");
+		if((serviceGroup instanceof MultiServiceGroup) == false)
+			throw new IllegalStateException("The service list snapshot is supported only by multi-service clients.");
+		
+		String serverAddress = clientURI.server.replaceAll(":", "-");
+		String fileName = "softnet.client.services_" + serverAddress + "_" + clientURI.clientKey + ".scs";
+		((MultiServiceGroup)serviceGroup).setSnapshotFile(new SnapshotFile(snapshotDirectory + java.io.File.separator + fileName));
+	}
+	
 	public void subscribeToREvent(String eventName, RemoteEventListener listener)
 	{		
 		eventController.subscribeToREvent(eventName, listener);		
@@ -170,6 +196,29 @@ public class ClientEndpoint
 	{
 		return eventController.removeSubscription(eventName);
 	}
+	
+	// When an event arrives while its subscription already has 'queueCapacity' events waiting for dispatch,
+	// the event is not acknowledged and the server redelivers it later. Other subscriptions are not affected.
+	public void setEventDispatchLimits(int maxInFlight, int queueCapacity)
+	{
+		eventController.setEventDispatchLimits(maxInFlight, queueCapacity);
+	}
+	
+	// Receives the runtime exceptions thrown by event listeners. Without a handler, they are passed to
+	// the uncaught exception handler of the thread that dispatched the event.
+	public void setListenerExceptionHandler(Thread.UncaughtExceptionHandler handler)
+	{
+		listenerExceptionHandler = handler;
+	}
+	
+	void reportListenerException(RuntimeException exception)
+	{
+		Thread.UncaughtExceptionHandler handler = listenerExceptionHandler;
+		if(handler != null)
+			handler.uncaughtException(Thread.currentThread(), exception);
+		else
+			Threads.reportException(exception);
+	}
 		
 	public void call(RemoteService remoteService, RemoteProcedure remoteProcedure, RPCResponseHandler responseHandler)
 	{
@@ -181,6 +230,25 @@ public class ClientEndpoint
 		rpcController.call(remoteService, remoteProcedure, responseHandler, requestParams);
 	}
 	
+	public void callAny(RemoteProcedure remoteProcedure, RPCResponseHandler responseHandler)
+	{
+		if((serviceGroup instanceof MultiServiceGroup) == false)
+			throw new IllegalStateException("Load-balanced calls are supported only by multi-service clients.");
+		rpcController.callAny((MultiServiceGroup)serviceGroup, remoteProcedure, responseHandler);
+	}
+
+	public void callAny(RemoteProcedure remoteProcedure, RPCResponseHandler responseHandler, RequestParams requestParams)
+	{
+		if((serviceGroup instanceof MultiServiceGroup) == false)
+			throw new IllegalStateException("Load-balanced calls are supported only by multi-service clients.");
+		rpcController.callAny((MultiServiceGroup)serviceGroup, remoteProcedure, responseHandler, requestParams);
+	}
+	
+	public RPCFuture callAsync(RemoteService remoteService, RemoteProcedure remoteProcedure, RequestParams requestParams)
+	{
+		return rpcController.callAsync(remoteService, remoteProcedure, requestParams);
+	}
+	
 	public void tcpConnect(RemoteService remoteService, int virtualPort, TCPOptions tcpOptions, TCPResponseHandler responseHandler)
 	{
 		tcpController.connect(remoteService, virtualPort, tcpOptions, responseHandler);
@@ -266,6 +334,11 @@ public class ClientEndpoint
 	}
 
 	public static ClientEndpoint create(String serviceType,  String contractAuthor, ClientURI clientURI, String password, String clientDescription) throws IllegalArgumentException
+	{
+		return create(serviceType, contractAuthor, clientURI, password, clientDescription, null);
+	}
+
+	public static ClientEndpoint create(String serviceType,  String contractAuthor, ClientURI clientURI, String password, String clientDescription, SoftnetRuntime softnetRuntime) throws IllegalArgumentException
 	{
 		if(clientURI == null)
 			throw new IllegalArgumentException("The value of 'clientURI' is null.");
@@ -291,7 +364,7 @@ public class ClientEndpoint
 				validateClientDescription(clientDescription);
 		}
 		
-		final ClientEndpoint clientEndpoint = new ClientEndpoint();
+		final ClientEndpoint clientEndpoint = new ClientEndpoint(softnetRuntime);
 		
 		MultiServiceGroup multiServiceGroup = new MultiServiceGroup(clientEndpoint);		
 		multiServiceGroup.remoteServiceOfflineCallback = new BiAcceptor<Long, Channel>()
@@ -308,8 +381,22 @@ public class ClientEndpoint
 	
 	protected ClientEndpoint()
 	{
-		threadPool = new ThreadPool();
-		scheduler = new Scheduler(threadPool);
+		this(null);
+	}
+	
+	protected ClientEndpoint(SoftnetRuntime softnetRuntime)
+	{
+		if(softnetRuntime != null)
+		{
+			threadPool = softnetRuntime.createThreadPool();
+			scheduler = softnetRuntime.createScheduler(threadPool);
+		}
+		else
+		{
+			threadPool = new ThreadPool();
+			scheduler = new Scheduler(threadPool);
+		}
+		writeCoalescing = new WriteCoalescing(scheduler);
 		endpoint_mutex = new Object();
 		_isClosed = false;		
 	}
@@ -397,6 +484,8 @@ public class ClientEndpoint
 	protected Object endpoint_mutex;
 	protected ThreadPool threadPool;
 	protected Scheduler scheduler;
+	protected WriteCoalescing writeCoalescing;
+	private volatile Thread.UncaughtExceptionHandler listenerExceptionHandler = null;
 	protected ClientURI clientURI;
 	private boolean _isClosed;
 	private ServiceGroup serviceGroup;
@@ -19,8 +19,11 @@ package softnet.client;
 import java.io.*;
 import java.net.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
 
 import softnet.utils.*;
+import softnet.core.GroupCommit;
 import softnet.exceptions.PersistenceDataFormatSoftnetException;
 import softnet.exceptions.PersistenceIOSoftnetException;
 import softnet.utils.IPUtility;
@@ -64,7 +67,7 @@ public class ClientFilePersistence implements ClientPersistence
 			String fileName = "softnet.client.persistence_" + serverAddress + "_" + clientURI.clientKey + ".scp";			
 			String filePath = directory + File.separator + fileName;
 			
-			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rwd");
+			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rw");
 			
 			ClientFilePersistence cfp = new ClientFilePersistence(clientURI.clientKey);
 			cfp.load(file, filePath);				
@@ -103,7 +106,7 @@ public class ClientFilePersistence implements ClientPersistence
 			String fileName = "softnet.client.persistence_" + serverAddress + "_" + clientURI.clientKey + ".scp";			
 			String filePath = directory + File.separator + fileName;
 			
-			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rwd");
+			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rw");
 			
 			ClientFilePersistence cfp = new ClientFilePersistence(clientURI.clientKey);
 			cfp.load(file, filePath);				
@@ -119,22 +122,32 @@ public class ClientFilePersistence implements ClientPersistence
 		}
 	}
 	
+	private static final int FormatMagic = 0x53435032;
+	private static final int MaxNameBytes = 512;
+	private static final int SlotSize = 2 + 8 + MaxNameBytes;
+	
 	private Object mutex = new Object();
 	private String clientKey;
 	private boolean isClosed = false;
 	private RandomAccessFile storageFile;
-	private byte[] buffer;
-	private ArrayList<Record> records;
-	private long tailPosition;
+	private GroupCommit groupCommit;
+	private String filePath;
+	private HashMap<String, Record> records;
+	private TreeSet<Integer> freeSlots;
+	private int slotCount;
+	private long slotsPosition;
 	
 	private void load(RandomAccessFile file, String filePath) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
 	{
 		try		
 		{
 			storageFile = file;			
-			records = new ArrayList<Record>();
-			buffer = new byte[512];
-			tailPosition = 0;
+			groupCommit = new GroupCommit(file.getChannel());
+			this.filePath = filePath;
+			records = new HashMap<String, Record>();
+			freeSlots = new TreeSet<Integer>();
+			slotCount = 0;
+			slotsPosition = 6 + 2 * clientKey.length();
 			
 			if(storageFile.length() <= 2)
 			{
@@ -142,54 +155,60 @@ public class ClientFilePersistence implements ClientPersistence
 				return;
 			}
 			
-			storageFile.seek(0);			
-			storageFile.read(buffer, 0, 2);
-			int keylength = ByteConverter.toInt32FromInt16(buffer, 0);
-			if(keylength != (2 * clientKey.length()) || storageFile.length() < (2 + keylength))
+			storageFile.seek(0);
+			if(storageFile.length() < 4 || storageFile.readInt() != FormatMagic)
+			{
+				migrateLegacyRecords(loadLegacyRecords());
+				return;
+			}
+			
+			if(storageFile.length() < slotsPosition)
 				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
-
+			
+			int keylength = storageFile.readUnsignedShort();
+			if(keylength != (2 * clientKey.length()))
+				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+			
 			byte[] keyBytes = new byte[keylength];
-			storageFile.seek(2);
-			storageFile.read(keyBytes, 0, keylength);		
+			storageFile.readFully(keyBytes);
 			String clientKey = new String(keyBytes, 0, keylength, java.nio.charset.StandardCharsets.UTF_16BE);
 			if(clientKey.equals(this.clientKey) == false)
 				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
-
-			tailPosition = 2 + keylength;
 			
-			while(true)
+			slotCount = (int)((storageFile.length() - slotsPosition) / SlotSize);
+			byte[] slot = new byte[SlotSize];
+			for(int index = 0; index < slotCount; index++)
 			{
-				if(storageFile.length() == tailPosition)
-					return;
+				storageFile.seek(slotsPosition + (long)index * SlotSize);
+				storageFile.readFully(slot);
 				
-				if(storageFile.length() - tailPosition == 1)
+				int nameBytesCount = ByteConverter.toInt32FromInt16(slot, 0);
+				if(nameBytesCount == 0)
+				{
+					freeSlots.add(index);
+					continue;
+				}
+				if(nameBytesCount > MaxNameBytes || nameBytesCount % 2 != 0)
 					throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
 				
-				storageFile.seek(tailPosition);			
-				storageFile.read(buffer, 0, 2);
-				int recordSize = ByteConverter.toInt32FromInt16(buffer, 0);
-				if(recordSize < 10 || recordSize > 520)
-					throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
-				if(storageFile.length() < recordSize + 2)
-					throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
-	
 				Record record = new Record();
-	
-				tailPosition += 2;
-				record.position = tailPosition;
-	
-				storageFile.seek(tailPosition);
-				storageFile.read(buffer, 0, 8);			
-				record.instanceId = ByteConverter.toInt64(buffer, 0);
+				record.instanceId = ByteConverter.toInt64(slot, 2);
+				record.name = new String(slot, 10, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
+				record.slot = index;
 				
-				int nameBytesCount = recordSize - 8;
-				storageFile.seek(tailPosition + 8);
-				storageFile.read(buffer, 0, nameBytesCount);			
-				record.name = new String(buffer, 0, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);			
-				records.add(record);
-
-				tailPosition += recordSize;				
+				if(records.containsKey(record.name))
+				{
+					clearSlot(index);
+					continue;
+				}
+				records.put(record.name, record);
 			}
+			
+			if(slotsPosition + (long)slotCount * SlotSize != storageFile.length())
+				storageFile.setLength(slotsPosition + (long)slotCount * SlotSize);
+			
+			if(freeSlots.size() > 0 && freeSlots.size() * 2 >= slotCount)
+				compact();
 		}
 		catch(IOException ex)
 		{
@@ -197,6 +216,113 @@ public class ClientFilePersistence implements ClientPersistence
 		}
 	}
 	
+	private ArrayList<Record> loadLegacyRecords() throws IOException, PersistenceDataFormatSoftnetException
+	{
+		ArrayList<Record> legacyRecords = new ArrayList<Record>();
+		byte[] buffer = new byte[512];
+		
+		storageFile.seek(0);			
+		storageFile.read(buffer, 0, 2);
+		int keylength = ByteConverter.toInt32FromInt16(buffer, 0);
+		if(keylength != (2 * clientKey.length()) || storageFile.length() < (2 + keylength))
+			throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+
+		byte[] keyBytes = new byte[keylength];
+		storageFile.seek(2);
+		storageFile.read(keyBytes, 0, keylength);		
+		String clientKey = new String(keyBytes, 0, keylength, java.nio.charset.StandardCharsets.UTF_16BE);
+		if(clientKey.equals(this.clientKey) == false)
+			throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+
+		long tailPosition = 2 + keylength;
+		
+		while(true)
+		{
+			if(storageFile.length() == tailPosition)
+				return legacyRecords;
+			
+			if(storageFile.length() - tailPosition == 1)
+				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+			
+			storageFile.seek(tailPosition);			
+			storageFile.read(buffer, 0, 2);
+			int recordSize = ByteConverter.toInt32FromInt16(buffer, 0);
+			if(recordSize < 10 || recordSize > 520)
+				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+			if(storageFile.length() < recordSize + 2)
+				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+
+			Record record = new Record();
+			tailPosition += 2;
+
+			storageFile.seek(tailPosition);
+			storageFile.read(buffer, 0, 8);			
+			record.instanceId = ByteConverter.toInt64(buffer, 0);
+			
+			int nameBytesCount = recordSize - 8;
+			storageFile.seek(tailPosition + 8);
+			storageFile.read(buffer, 0, nameBytesCount);			
+			record.name = new String(buffer, 0, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);			
+			legacyRecords.add(record);
+
+			tailPosition += recordSize;				
+		}
+	}
+	
+	private void migrateLegacyRecords(ArrayList<Record> legacyRecords) throws IOException, PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		HashMap<String, Record> migratedRecords = new HashMap<String, Record>();
+		for(Record record: legacyRecords)
+		{
+			if(record.name.length() * 2 > MaxNameBytes)
+				continue;
+			Record migratedRecord = migratedRecords.get(record.name);
+			if(migratedRecord == null)
+			{
+				record.slot = migratedRecords.size();
+				migratedRecords.put(record.name, record);
+			}
+			else
+				migratedRecord.instanceId = record.instanceId;
+		}
+		
+		byte[] keyBytes = clientKey.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+		byte[] data = new byte[6 + keyBytes.length + migratedRecords.size() * SlotSize];
+		System.arraycopy(ByteConverter.getBytes(FormatMagic), 0, data, 0, 4);
+		ByteConverter.writeAsInt16(keyBytes.length, data, 4);
+		System.arraycopy(keyBytes, 0, data, 6, keyBytes.length);
+		for(Record record: migratedRecords.values())
+		{
+			byte[] slot = encodeSlot(record);
+			System.arraycopy(slot, 0, data, 6 + keyBytes.length + record.slot * SlotSize, slot.length);
+		}
+		
+		File tempFile = new File(filePath + ".tmp");
+		FileOutputStream tempStream = new FileOutputStream(tempFile);
+		try
+		{
+			tempStream.write(data);
+			tempStream.getFD().sync();
+		}
+		finally
+		{
+			tempStream.close();
+		}
+		
+		groupCommit.close();
+		storageFile.close();
+		try
+		{
+			java.nio.file.Files.move(tempFile.toPath(), new File(filePath).toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(java.nio.file.AtomicMoveNotSupportedException ex)
+		{
+			java.nio.file.Files.move(tempFile.toPath(), new File(filePath).toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		}
+		
+		load(new RandomAccessFile(new File(filePath), "rw"), filePath);
+	}
+	
 	public void reset() throws PersistenceIOSoftnetException
 	{
 		synchronized(mutex)
@@ -206,14 +332,19 @@ public class ClientFilePersistence implements ClientPersistence
 			try
 			{
 				byte[] keyBytes = clientKey.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);	
-				byte[] lengthBytes = new byte[2];
-				ByteConverter.writeAsInt16(keyBytes.length, lengthBytes, 0);
+				byte[] header = new byte[6 + keyBytes.length];
+				System.arraycopy(ByteConverter.getBytes(FormatMagic), 0, header, 0, 4);
+				ByteConverter.writeAsInt16(keyBytes.length, header, 4);
+				System.arraycopy(keyBytes, 0, header, 6, keyBytes.length);
 				storageFile.seek(0);
-				storageFile.write(lengthBytes);
-				storageFile.seek(2);
-				storageFile.write(keyBytes);
-				tailPosition = 2 + keyBytes.length;
-				storageFile.setLength(tailPosition);
+				storageFile.write(header);
+				slotsPosition = header.length;
+				storageFile.setLength(slotsPosition);
+				
+				records.clear();
+				freeSlots.clear();
+				slotCount = 0;
+				groupCommit.commit();
 			}
 			catch(IOException ex)
 			{
@@ -228,11 +359,17 @@ public class ClientFilePersistence implements ClientPersistence
 		{
 			isClosed = true;
 			records.clear();
+			groupCommit.close();
 			storageFile.close();
 		}
 		catch(IOException ex) {}
 	}
 	
+	GroupCommit getGroupCommit()
+	{
+		return groupCommit;
+	}
+	
 	public ClientEventPersistable getItem(String name)
 	{
 		synchronized(mutex)
@@ -240,11 +377,9 @@ public class ClientFilePersistence implements ClientPersistence
 			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
 
-			for(Record record: records)
-			{
-				if(record.name.equals(name))
-					return new ClientEventPersistable(record.name, record.instanceId);
-			}
+			Record record = records.get(name);
+			if(record != null)
+				return new ClientEventPersistable(record.name, record.instanceId);
 			return null;
 		}
 	}
@@ -258,47 +393,34 @@ public class ClientFilePersistence implements ClientPersistence
 			
 			try
 			{
-				Record record = null;
-				for(Record rec: records)
-				{
-					if(rec.name.equals(name))
-					{
-						record = rec;
-						break;
-					}
-				}
-						
+				Record record = records.get(name);
 				if(record != null)
 				{
 					record.instanceId = instanceId;
-					storageFile.seek(record.position);
+					storageFile.seek(slotsPosition + (long)record.slot * SlotSize + 2);
 					storageFile.write(ByteConverter.getBytes(instanceId), 0, 8);
 				}
 				else
 				{
+					byte[] nameBytes = name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+					if(nameBytes.length > MaxNameBytes)
+						throw new IllegalArgumentException(String.format("The event name '%s' is too long.", name));
+					
 					record = new Record();
 					record.name = name;
 					record.instanceId = instanceId;
-		
-					byte[] nameBytes = name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-					int recordSize = 8 + nameBytes.length;				
-					ByteConverter.writeAsInt16(recordSize, buffer, 0);
-					
-					storageFile.seek(tailPosition);
-					storageFile.write(buffer, 0, 2);
-									
-					tailPosition += 2;
-					storageFile.seek(tailPosition);
-					storageFile.write(ByteConverter.getBytes(instanceId));
-					
-					storageFile.seek(tailPosition + 8);
-					storageFile.write(nameBytes);
-	
-					record.position = tailPosition;
-					records.add(record);
+					if(freeSlots.isEmpty())
+					{
+						record.slot = slotCount;
+						slotCount++;
+					}
+					else
+						record.slot = freeSlots.pollFirst();
 					
-					tailPosition += recordSize;					
+					writeSlot(record);
+					records.put(name, record);
 				}
+				groupCommit.register();
 			}
 			catch(IOException ex)
 			{
@@ -307,10 +429,65 @@ public class ClientFilePersistence implements ClientPersistence
 		}
 	}
 	
+	private byte[] encodeSlot(Record record)
+	{
+		byte[] nameBytes = record.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+		byte[] slot = new byte[10 + nameBytes.length];
+		ByteConverter.writeAsInt16(nameBytes.length, slot, 0);
+		System.arraycopy(ByteConverter.getBytes(record.instanceId), 0, slot, 2, 8);
+		System.arraycopy(nameBytes, 0, slot, 10, nameBytes.length);
+		return slot;
+	}
+	
+	private void writeSlot(Record record) throws IOException
+	{
+		byte[] slot = encodeSlot(record);
+		long slotPosition = slotsPosition + (long)record.slot * SlotSize;
+		if(storageFile.length() < slotPosition + SlotSize)
+			storageFile.setLength(slotPosition + SlotSize);
+		storageFile.seek(slotPosition);
+		storageFile.write(slot);
+	}
+	
+	private void clearSlot(int index) throws IOException
+	{
+		storageFile.seek(slotsPosition + (long)index * SlotSize);
+		storageFile.write(new byte[2]);
+		freeSlots.add(index);
+	}
+	
+	private void compact() throws IOException
+	{
+		Record[] recordsBySlot = new Record[slotCount];
+		for(Record record: records.values())
+			recordsBySlot[record.slot] = record;
+		
+		int last = slotCount - 1;
+		for(int index = 0; index < records.size(); index++)
+		{
+			if(recordsBySlot[index] != null)
+				continue;
+			
+			while(recordsBySlot[last] == null)
+				last--;
+			
+			Record record = recordsBySlot[last];
+			recordsBySlot[last] = null;
+			record.slot = index;
+			recordsBySlot[index] = record;
+			writeSlot(record);
+		}
+		
+		slotCount = records.size();
+		freeSlots.clear();
+		storageFile.setLength(slotsPosition + (long)slotCount * SlotSize);
+		groupCommit.commit();
+	}
+	
 	private class Record
 	{
 		public String name;
 		public long instanceId;
-		public long position;
+		public int slot;
 	}
 }
@@ -16,13 +16,13 @@
 
 package softnet.client;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 
 public class ClientMemoryPersistence implements ClientPersistence
 {
 	public ClientMemoryPersistence()
 	{
-		records = new ArrayList<Record>();
+		records = new HashMap<String, Record>();
 	}
 	
 	public void reset()
@@ -43,7 +43,7 @@ public class ClientMemoryPersistence implements ClientPersistence
 	}
 	
 	private Object mutex = new Object();
-	private ArrayList<Record> records;
+	private HashMap<String, Record> records;
 	private boolean isClosed = false;
 	
 	public ClientEventPersistable getItem(String name)
@@ -53,11 +53,9 @@ public class ClientMemoryPersistence implements ClientPersistence
 			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
 			
-			for(Record record: records)
-			{
-				if(record.name.equals(name))
-					return new ClientEventPersistable(record.name, record.instanceId);
-			}
+			Record record = records.get(name);
+			if(record != null)
+				return new ClientEventPersistable(record.name, record.instanceId);
 			return null;
 		}
 	}
@@ -69,16 +67,7 @@ public class ClientMemoryPersistence implements ClientPersistence
 			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
 			
-			Record record = null;
-			for(Record rec: records)
-			{
-				if(rec.name.equals(name))
-				{
-					record = rec;
-					break;
-				}
-			}
-					
+			Record record = records.get(name);
 			if(record != null)
 			{
 				record.instanceId = instanceId;
@@ -88,7 +77,7 @@ public class ClientMemoryPersistence implements ClientPersistence
 				record = new Record();
 				record.name = name;
 				record.instanceId = instanceId;
-				records.add(record);
+				records.put(name, record);
 			}
 		}
 	}
@@ -16,12 +16,18 @@
 
 package softnet.client;
 
+import softnet.SoftnetRuntime;
 import softnet.TCPOptions;
 import softnet.core.BiAcceptor;
 
 public class ClientSEndpoint extends ClientEndpoint
 {
 	private RemoteService remoteService;
+	
+	private ClientSEndpoint(SoftnetRuntime softnetRuntime)
+	{
+		super(softnetRuntime);
+	}
 
 	public boolean isServiceOnline()
 	{
@@ -63,7 +69,7 @@ public class ClientSEndpoint extends ClientEndpoint
 		if(clientURI.category == ClientCategory.SingleService)
 			throw new IllegalArgumentException(String.format("The URI '%s' identifies a stateful client that is not allowed in this context.", clientURI.value));				
 								
-		ClientSEndpoint clientSEndpoint = new ClientSEndpoint();		
+		ClientSEndpoint clientSEndpoint = new ClientSEndpoint(null);		
 		clientSEndpoint.initialize(serviceType, contractAuthor, clientURI, null, null);			
 		return clientSEndpoint;
 	}
@@ -88,12 +94,17 @@ public class ClientSEndpoint extends ClientEndpoint
 				throw new IllegalArgumentException("The length of 'password' must not be greater than 256.");
 		}
 								
-		ClientSEndpoint clientSEndpoint = new ClientSEndpoint();		
+		ClientSEndpoint clientSEndpoint = new ClientSEndpoint(null);		
 		clientSEndpoint.initialize(serviceType, contractAuthor, clientURI, password, null);			
 		return clientSEndpoint;
 	}
 	
 	public static ClientSEndpoint create(String serviceType, String contractAuthor, ClientURI clientURI, String password, String clientDescription)
+	{
+		return create(serviceType, contractAuthor, clientURI, password, clientDescription, null);
+	}
+	
+	public static ClientSEndpoint create(String serviceType, String contractAuthor, ClientURI clientURI, String password, String clientDescription, SoftnetRuntime softnetRuntime)
 	{
 		if(clientURI == null)
 			throw new IllegalArgumentException("'clientURI' must not be null.");
@@ -119,7 +130,7 @@ public class ClientSEndpoint extends ClientEndpoint
 				validateClientDescription(clientDescription);
 		}
 		
-		ClientSEndpoint clientSEndpoint = new ClientSEndpoint();		
+		ClientSEndpoint clientSEndpoint = new ClientSEndpoint(softnetRuntime);		
 		clientSEndpoint.initialize(serviceType, contractAuthor, clientURI, password, clientDescription);			
 		return clientSEndpoint;
 	}
@@ -134,6 +145,11 @@ public class ClientSEndpoint extends ClientEndpoint
 		super.call(remoteService, remoteProcedure, responseHandler, requestParams);
 	}
 	
+	public RPCFuture callAsync(RemoteProcedure remoteProcedure, RequestParams requestParams)
+	{
+		return super.callAsync(remoteService, remoteProcedure, requestParams);
+	}
+	
 	public void tcpConnect(int virtualPort, TCPResponseHandler responseHandler, TCPOptions tcpOptions)
 	{
 		super.tcpConnect(remoteService, virtualPort, tcpOptions, responseHandler);
@@ -44,6 +44,7 @@ class EndpointConnector
 		this.mutex = endpoint_mutex;
 		this.threadPool = clientEndpoint.threadPool;
 		this.scheduler = clientEndpoint.scheduler;
+		this.writeCoalescing = clientEndpoint.writeCoalescing;
 		channelMonitor = new ChannelMonitor();
 	}
 	
@@ -143,6 +144,7 @@ class EndpointConnector
 	private String password;
 	private ThreadPool threadPool;
 	private Scheduler scheduler;
+	private WriteCoalescing writeCoalescing;
 	
 	private Object mutex;    
 	private boolean isClosed = false;
@@ -440,6 +442,7 @@ class EndpointConnector
 				public void accept(Object data) { executePing(data); }
 			};    	    		
 			ScheduledContextTask task = new ScheduledContextTask(acceptor, pingContext, pingContext);    		
+			pingContext.task = task;
 			scheduler.add(task, ping_period);    	
     	}
 
@@ -492,6 +495,7 @@ class EndpointConnector
 				public void accept(Object data) { executePing(data); }
 			};    	    		
 			ScheduledContextTask task = new ScheduledContextTask(acceptor, pingContext, pingContext); 
+			pingContext.task = task;
     		
 			if(isPingSent)
 			{
@@ -602,6 +606,7 @@ class EndpointConnector
 					public void accept(Object data) { executePing(data); }
 				};    	    		
 				ScheduledContextTask task = new ScheduledContextTask(acceptor, pingContext, pingContext);    					
+				pingContext.task = task;
     			
     			if(isPingSent)
     			{
@@ -697,6 +702,7 @@ class EndpointConnector
 	            					public void accept(Object data) { executeKeepAlive(data); }
 	            				};    	    		
 	            				ScheduledContextTask task2 = new ScheduledContextTask(acceptor2, keepAliveContext, keepAliveContext);	            				
+	            				keepAliveContext.task = task2;
 	            				scheduler.add(task2, 300 - last_output_message_age);           
             				}
             			}
@@ -748,7 +754,8 @@ class EndpointConnector
     	
     	private class PingContext implements STaskContext
     	{
-    		private boolean is_closed = false;    		
+    		private boolean is_closed = false;
+    		public ScheduledContextTask task = null;
     		public boolean isClosed()
     		{
     			return is_closed;
@@ -756,12 +763,15 @@ class EndpointConnector
     		public void close()
     		{
     			is_closed = true;
+    			if(task != null)
+    				task.cancel();
     		}
     	}
     	
     	private class KeepAliveContext implements STaskContext
     	{
-    		private boolean is_closed = false;    		
+    		private boolean is_closed = false;
+    		public ScheduledContextTask task = null;
     		public boolean isClosed()
     		{
     			return is_closed;
@@ -769,6 +779,8 @@ class EndpointConnector
     		public void close()
     		{
     			is_closed = true;
+    			if(task != null)
+    				task.cancel();
     		}
     	}
     }
@@ -841,6 +853,7 @@ class EndpointConnector
 			};					
 			msgSocket.minLength = 2;
 			msgSocket.maxLength = 256;	
+			msgSocket.setWriteCoalescing(writeCoalescing);
 			msgSocket.start();
 
 			startHandshake();
@@ -29,4 +29,5 @@ interface EventController {
 	boolean removeSubscription(String eventName);
 	void addEventListener(ClientEventListener listener);
 	void removeEventListener(ClientEventListener listener);
+	void setEventDispatchLimits(int maxInFlight, int queueCapacity);
 }
@@ -0,0 +1,206 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.client;
+
+import java.util.LinkedList;
+
+import softnet.core.ThreadPool;
+
+class EventDispatcher
+{
+	public EventDispatcher(ClientEndpoint clientEndpoint)
+	{
+		this.clientEndpoint = clientEndpoint;
+		this.threadPool = clientEndpoint.threadPool;
+		readyQueues = new LinkedList<DispatchQueue>();
+		runningQueues = new LinkedList<DispatchQueue>();
+	}
+	
+	private Object mutex = new Object();
+	private ClientEndpoint clientEndpoint;
+	private ThreadPool threadPool;
+	private LinkedList<DispatchQueue> readyQueues;
+	private LinkedList<DispatchQueue> runningQueues;
+	private int maxInFlight = 16;
+	private int queueCapacity = 1000;
+	private int inFlight = 0;
+	private boolean isClosed = false;
+	
+	public void setLimits(int maxInFlight, int queueCapacity)
+	{
+		if(maxInFlight < 1)
+			throw new IllegalArgumentException("The value of 'maxInFlight' must be greater than zero.");
+		if(queueCapacity < 1)
+			throw new IllegalArgumentException("The value of 'queueCapacity' must be greater than zero.");
+		
+		synchronized(mutex)
+		{
+			this.maxInFlight = maxInFlight;
+			this.queueCapacity = queueCapacity;
+			scheduleWorkers();
+		}
+	}
+	
+	public DispatchQueue createQueue()
+	{
+		return new DispatchQueue();
+	}
+	
+	public void close()
+	{
+		synchronized(mutex)
+		{
+			isClosed = true;
+			discardTasks();
+		}
+	}
+	
+	public void discardPending()
+	{
+		synchronized(mutex)
+		{
+			discardTasks();
+		}
+	}
+	
+	// A queue whose task is running stays scheduled; the worker unschedules it once it finds the queue empty.
+	private void discardTasks()
+	{
+		for(DispatchQueue queue: readyQueues)
+		{
+			queue.tasks.clear();
+			queue.isScheduled = false;
+		}
+		readyQueues.clear();
+		for(DispatchQueue queue: runningQueues)
+			queue.tasks.clear();
+	}
+	
+	private void scheduleWorkers()
+	{
+		while(inFlight < maxInFlight && inFlight < readyQueues.size())
+		{
+			inFlight++;
+			threadPool.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					workCircle();
+				}
+			});
+		}
+	}
+	
+	private void workCircle()
+	{
+		while(true)
+		{
+			DispatchQueue queue;
+			Runnable task;
+			synchronized(mutex)
+			{
+				if(readyQueues.isEmpty() || inFlight > maxInFlight)
+				{
+					inFlight--;
+					return;
+				}
+				
+				queue = readyQueues.removeFirst();
+				task = queue.tasks.removeFirst();
+				runningQueues.add(queue);
+			}
+			
+			try
+			{
+				task.run();
+			}
+			catch(RuntimeException ex)
+			{
+				clientEndpoint.reportListenerException(ex);
+			}
+			
+			synchronized(mutex)
+			{
+				runningQueues.remove(queue);
+				if(queue.tasks.isEmpty())
+				{
+					queue.isScheduled = false;
+				}
+				else
+				{
+					readyQueues.addLast(queue);
+				}
+			}
+		}
+	}
+	
+	public class DispatchQueue
+	{
+		private LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+		private boolean isScheduled = false;
+		private boolean isClosed = false;
+		
+		// Returns false if the queue is closed or already holds 'queueCapacity' tasks; the task is not queued in either case.
+		public boolean dispatch(Runnable task)
+		{
+			synchronized(mutex)
+			{
+				if(isClosed || EventDispatcher.this.isClosed)
+					return false;
+				if(tasks.size() >= queueCapacity)
+					return false;
+				
+				tasks.add(task);
+				if(isScheduled == false)
+				{
+					isScheduled = true;
+					readyQueues.addLast(this);
+					scheduleWorkers();
+				}
+				return true;
+			}
+		}
+		
+		public boolean isEmpty()
+		{
+			synchronized(mutex)
+			{
+				return tasks.isEmpty();
+			}
+		}
+		
+		public boolean isClosed()
+		{
+			synchronized(mutex)
+			{
+				return isClosed || EventDispatcher.this.isClosed;
+			}
+		}
+		
+		public void close()
+		{
+			synchronized(mutex)
+			{
+				isClosed = true;
+				tasks.clear();
+				if(isScheduled && readyQueues.remove(this))
+					isScheduled = false;
+			}
+		}
+	}
+}
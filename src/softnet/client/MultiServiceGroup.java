@@ -16,6 +16,7 @@
 
 package softnet.client;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -34,6 +35,8 @@ class MultiServiceGroup implements ServiceGroup
 		this.endpoint_mutex = clientEndpoint.endpoint_mutex;
 		eventListeners = new HashSet<ClientEventListener>();
 		remoteServices = new TreeSet<RmtService>();
+		servicesById = new HashMap<Long, RmtService>();
+		servicesByHostname = new HashMap<String, RmtService>();
 	}
 	
 	public BiAcceptor<Long, Channel> remoteServiceOfflineCallback;
@@ -62,12 +65,43 @@ class MultiServiceGroup implements ServiceGroup
 		clientStatus = StatusEnum.Disconnected;
 	}
 	
+	public void setSnapshotFile(SnapshotFile snapshotFile)
+	{
+		synchronized(endpoint_mutex)
+		{
+			if(this.snapshotFile != null)
+				throw new IllegalStateException("The service list snapshot has already been set.");
+			if(clientStatus != StatusEnum.Disconnected)
+				throw new IllegalStateException("The service list snapshot must be set before the endpoint is connected.");
+			this.snapshotFile = snapshotFile;
+			
+			try
+			{
+				byte[] snapshot = snapshotFile.read();
+				if(snapshot != null)
+					loadServiceList(ASNDecoder.Sequence(snapshot));
+			}
+			catch(AsnException ex)
+			{
+				clearServiceList();
+				snapshotFile.delete();
+			}
+			catch(SoftnetException ex)
+			{
+				clearServiceList();
+				snapshotFile.delete();
+			}
+		}
+	}
+	
 	public byte[] getHash() throws HostErrorSoftnetException
 	{
 		synchronized(endpoint_mutex)
 		{
 			if(remoteServices.size() == 0)
 				return null;
+			if(servicesHash != null)
+				return servicesHash;
 			
 			ASNEncoder asnEncoder = new ASNEncoder();
 	        SequenceEncoder asnRootSequence = asnEncoder.Sequence();	
@@ -78,7 +112,8 @@ class MultiServiceGroup implements ServiceGroup
 	            asnService.IA5String(service.getHostname());
 	            asnService.IA5String(service.getVersion());
 	        }	
-	        return Sha1Hash.compute(asnEncoder.getEncoding());
+	        servicesHash = Sha1Hash.compute(asnEncoder.getEncoding());
+	        return servicesHash;
 		}
 	}
 	
@@ -86,26 +121,56 @@ class MultiServiceGroup implements ServiceGroup
 	{
 		synchronized(endpoint_mutex)
 		{
-			for(RmtService service: remoteServices)
-			{
-				if(service.getId() == serviceId)
-					return service;
-			}
+			return servicesById.get(serviceId);
 		}
-		return null;			
 	}
 	
 	public RemoteService findService(String hostname)
 	{
 		synchronized(endpoint_mutex)
 		{
+			return servicesByHostname.get(hostname);
+		}
+	}
+	
+	public RemoteService selectService(RPCController rpcController)
+	{
+		synchronized(endpoint_mutex)
+		{
+			int minRequests = Integer.MAX_VALUE;
+			int candidates = 0;
+			for(RmtService service: remoteServices)
+			{
+				if(service.isOnline() == false)
+					continue;
+				int pendingRequests = rpcController.getPendingRequests(service.getId());
+				if(pendingRequests < minRequests)
+				{
+					minRequests = pendingRequests;
+					candidates = 1;
+				}
+				else if(pendingRequests == minRequests)
+				{
+					candidates++;
+				}
+			}
+			
+			if(candidates == 0)
+				return null;
+			
+			int index = selectionCounter % candidates;
+			selectionCounter = (selectionCounter + 1) & Integer.MAX_VALUE;
 			for(RmtService service: remoteServices)
 			{
-				if(hostname.equals(service.getHostname()))
-					return service;
+				if(service.isOnline() && rpcController.getPendingRequests(service.getId()) == minRequests)
+				{
+					if(index == 0)
+						return service;
+					index--;
+				}
 			}
+			return null;
 		}
-		return null;
 	}
 
 	public RemoteService[] getServices()
@@ -146,22 +211,67 @@ class MultiServiceGroup implements ServiceGroup
 	private ThreadPool threadPool;
 	private HashSet<ClientEventListener> eventListeners;
 	private SortedSet<RmtService> remoteServices;
+	private HashMap<Long, RmtService> servicesById;
+	private HashMap<String, RmtService> servicesByHostname;
+	private int selectionCounter = 0;
+	private byte[] servicesHash;
+	private SnapshotFile snapshotFile;
 	
 	private RmtService findRemoteService(long serviceId)
 	{
-		for(RmtService service: remoteServices)
+		return servicesById.get(serviceId);
+	}
+	
+	private void clearServiceList()
+	{
+		remoteServices = new TreeSet<RmtService>();
+		servicesById = new HashMap<Long, RmtService>();
+		servicesByHostname = new HashMap<String, RmtService>();
+		servicesHash = null;
+	}
+	
+	private void saveSnapshot()
+	{
+		if(snapshotFile == null)
+			return;
+		
+		snapshotFile.writeLater(snapshotEncoder, threadPool);
+	}
+	
+	private final SnapshotFile.Encoder snapshotEncoder = new SnapshotFile.Encoder()
+	{
+		public byte[] encode()
 		{
-			if(service.getId() == serviceId)
-				return service;
+			synchronized(endpoint_mutex)
+			{
+				ASNEncoder asnEncoder = new ASNEncoder();
+				SequenceEncoder asnRootSequence = asnEncoder.Sequence();
+				for(RmtService service: remoteServices)
+				{
+					SequenceEncoder asnService = asnRootSequence.Sequence();
+					asnService.Int64(service.getId());
+					asnService.IA5String(service.getHostname());
+					asnService.IA5String(service.getVersion());
+				}
+				return asnEncoder.getEncoding();
+			}
 		}
-		return null;		
-	}
+	};
 	
 	private void ProcessMessage_ServicesUpdated(byte[] message) throws AsnException, SoftnetException
+	{
+		loadServiceList(ASNDecoder.Sequence(message, 2));
+		saveSnapshot();
+		
+        fireServicesUpdatedEvent();
+	}
+	
+	private void loadServiceList(SequenceDecoder asnRootSequence) throws AsnException, SoftnetException
 	{
 		SortedSet<RmtService> updatedServices = new TreeSet<RmtService>();
+		HashMap<Long, RmtService> updatedServicesById = new HashMap<Long, RmtService>();
+		HashMap<String, RmtService> updatedServicesByHostname = new HashMap<String, RmtService>();
 		
-		SequenceDecoder asnRootSequence = ASNDecoder.Sequence(message, 2);
 		while(asnRootSequence.hasNext())
 		{
 			SequenceDecoder asnService = asnRootSequence.Sequence();
@@ -183,6 +293,8 @@ class MultiServiceGroup implements ServiceGroup
 			}
 
 			updatedServices.add(remoteService);
+			updatedServicesById.put(serviceId, remoteService);
+			updatedServicesByHostname.put(hostname, remoteService);
 		}
 		asnRootSequence.end();
 		
@@ -190,7 +302,9 @@ class MultiServiceGroup implements ServiceGroup
         	service.setRemoved();
 
         this.remoteServices = updatedServices;
-        fireServicesUpdatedEvent();
+        this.servicesById = updatedServicesById;
+        this.servicesByHostname = updatedServicesByHostname;
+        servicesHash = null;
 	}
 		
 	private void ProcessMessage_ServicesOnline(byte[] message) throws AsnException, SoftnetException
@@ -220,6 +334,10 @@ class MultiServiceGroup implements ServiceGroup
 		
 		RmtService remoteService = new RmtService(serviceId, hostname, version);		
 		remoteServices.add(remoteService);
+		servicesById.put(serviceId, remoteService);
+		servicesByHostname.put(hostname, remoteService);
+		servicesHash = null;
+		saveSnapshot();
 		
         fireServiceIncludedEvent(remoteService);
 	}
@@ -235,7 +353,12 @@ class MultiServiceGroup implements ServiceGroup
 			throw new InputDataInconsistentSoftnetException();
 		
 		remoteServices.remove(remoteService);
+		servicesById.remove(serviceId);
+		if(servicesByHostname.get(remoteService.getHostname()) == remoteService)
+			servicesByHostname.remove(remoteService.getHostname());
 		remoteService.setRemoved();
+		servicesHash = null;
+		saveSnapshot();
 	
         fireServiceRemovedEvent(remoteService);
 	}
@@ -251,8 +374,16 @@ class MultiServiceGroup implements ServiceGroup
 		RmtService remoteService = findRemoteService(serviceId);
 		if(remoteService == null)
 			throw new InputDataInconsistentSoftnetException();
+		if(remoteService.getHostname().equals(hostname) == false)
+		{
+			if(servicesByHostname.get(remoteService.getHostname()) == remoteService)
+				servicesByHostname.remove(remoteService.getHostname());
+			servicesByHostname.put(hostname, remoteService);
+		}
 		remoteService.setVersion(version);
 		remoteService.setHostname(hostname);			
+		servicesHash = null;
+		saveSnapshot();
 
 		fireServiceUpdatedEvent(remoteService);
 	}
@@ -281,8 +412,13 @@ class MultiServiceGroup implements ServiceGroup
 		RmtService remoteService = findRemoteService(serviceId);
 		if(remoteService == null)
 			throw new InputDataInconsistentSoftnetException();
-		remoteService.setVersion(version);
 		remoteService.setOnline();
+		if(version.equals(remoteService.getVersion()) == false)
+		{
+			remoteService.setVersion(version);
+			servicesHash = null;
+			saveSnapshot();
+		}
 		
         fireServiceOnlineEvent(remoteService);
 	}
@@ -0,0 +1,33 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package softnet.client;
+
+import softnet.asn.SequenceDecoder;
+
+public class RPCAppErrorException extends Exception
+{
+	private static final long serialVersionUID = 5310724480639181362L;
+
+	public final int errorCode;
+	public final transient SequenceDecoder error;
+
+	public RPCAppErrorException(int errorCode, SequenceDecoder error)
+	{
+		super(String.format("The remote procedure has returned the application error %d.", errorCode));
+		this.errorCode = errorCode;
+		this.error = error;
+	}
+}
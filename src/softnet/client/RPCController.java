@@ -19,7 +19,9 @@ package softnet.client;
 import softnet.asn.*;
 import softnet.core.*;
 import softnet.exceptions.*;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.UUID;
 
 class RPCController 
@@ -30,7 +32,8 @@ class RPCController
 	private ClientEndpoint clientEndpoint;
 	private StatusEnum clientStatus;	
 	private Channel channel;
-	private LinkedList<RpcRequest> requestList;
+	private HashMap<UUID, RpcRequest> requests;
+	private HashMap<Long, HashSet<RpcRequest>> serviceRequests;
 
 	private enum StatusEnum
 	{ 
@@ -44,7 +47,8 @@ class RPCController
 		this.scheduler = clientEndpoint.scheduler;
 		this.endpoint_mutex = clientEndpoint.endpoint_mutex;
 		clientStatus = StatusEnum.Disconnected;
-		requestList = new LinkedList<RpcRequest>();
+		requests = new HashMap<UUID, RpcRequest>();
+		serviceRequests = new HashMap<Long, HashSet<RpcRequest>>();
 	}
 	
 	public void onEndpointConnected(Channel channel)
@@ -72,7 +76,7 @@ class RPCController
 		clientStatus = StatusEnum.Disconnected;
 		channel = null;
 		
-		for(RpcRequest request: requestList)
+		for(RpcRequest request: requests.values())
 		{
 			request.timeoutControlTask.cancel();
 			
@@ -80,35 +84,42 @@ class RPCController
 			Runnable runnable = new Runnable() {
 				@Override
 				public void run() {
-					f_request.responseHandler.onError(new ResponseContext(clientEndpoint, f_request.remoteService, f_request.attachment), new ClientOfflineSoftnetException());
+					f_request.notifyError(new ClientOfflineSoftnetException());
 				}
 			};
 			threadPool.execute(runnable);
 		}
-		requestList.clear();
+		requests.clear();
+		serviceRequests.clear();
 	}
 
 	public void onRemoteServiceOffline(long serviceId, Channel channel)
 	{
-		for(int i = requestList.size()-1; i >= 0; i--)
+		HashSet<RpcRequest> requestSet = serviceRequests.get(serviceId);
+		if(requestSet == null)
+			return;
+		
+		Iterator<RpcRequest> iterator = requestSet.iterator();
+		while(iterator.hasNext())
 		{
-			RpcRequest request = requestList.get(i);
-			if(request.remoteService.getId() == serviceId)
-			{
-				if(request.timeoutControlTask.cancel())
-				{				
-					requestList.remove(i);
-					final RpcRequest f_request = request; 
-					Runnable runnable = new Runnable() {
-						@Override
-						public void run() {
-							f_request.responseHandler.onError(new ResponseContext(clientEndpoint, f_request.remoteService, f_request.attachment), new ServiceOfflineSoftnetException());
-						}
-					};
-					threadPool.execute(runnable);						
-				}
+			RpcRequest request = iterator.next();
+			if(request.timeoutControlTask.cancel())
+			{				
+				iterator.remove();
+				requests.remove(request.transactionUid);
+				final RpcRequest f_request = request; 
+				Runnable runnable = new Runnable() {
+					@Override
+					public void run() {
+						f_request.notifyError(new ServiceOfflineSoftnetException());
+					}
+				};
+				threadPool.execute(runnable);						
 			}
-		}			
+		}
+		
+		if(requestSet.isEmpty())
+			serviceRequests.remove(serviceId);
 	}		
 	
 	public void call(RemoteService remoteService, RemoteProcedure remoteProcedure, RPCResponseHandler responseHandler)
@@ -132,32 +143,14 @@ class RPCController
 
 			UUID transactionUid = UUID.randomUUID();
 
-			ASNEncoder asnEncoder = new ASNEncoder();
-			SequenceEncoder rootSequence = asnEncoder.Sequence();
-			rootSequence.OctetString(transactionUid);
-			rootSequence.Int64(remoteService.getId());
-			rootSequence.IA5String(remoteProcedure.name);			
-			rootSequence.OctetString(remoteProcedure.getEncoding());
-			SoftnetMessage message = MsgBuilder.Create(Constants.Client.RpcController.ModuleId, Constants.Client.RpcController.REQUEST, asnEncoder);
+			SoftnetMessage message = encodeMessage_Request(transactionUid, remoteService, remoteProcedure, null);
 			
 			RpcRequest request = new RpcRequest(transactionUid);
 			request.remoteService = remoteService;
 			request.procedureName = remoteProcedure.name;
 			request.responseHandler = responseHandler;			
-			Acceptor<Object> acceptor = new Acceptor<Object>() {
-				public void accept(Object state) { onRequestTimeoutExpired(state); }
-			};
-			request.timeoutControlTask = new ScheduledTask(acceptor, request);
-			
-			synchronized(endpoint_mutex)
-			{
-				if(clientStatus != StatusEnum.Online)
-					throw new ClientOfflineSoftnetException();			
-				requestList.add(request);
-		        channel.send(message);
-			}
 			
-			scheduler.add(request.timeoutControlTask, Constants.RpcWaitSeconds);
+			send(request, message, 0);
 		}
 		catch(SoftnetException ex) {
 			responseHandler.onError(new ResponseContext(clientEndpoint, remoteService, null), ex);
@@ -188,50 +181,158 @@ class RPCController
 
 			UUID transactionUid = UUID.randomUUID();
 
-			ASNEncoder asnEncoder = new ASNEncoder();
-			SequenceEncoder rootSequence = asnEncoder.Sequence();
-			rootSequence.OctetString(transactionUid);
-			rootSequence.Int64(remoteService.getId());
-			rootSequence.IA5String(remoteProcedure.name);			
-			rootSequence.OctetString(remoteProcedure.getEncoding());
-			if(requestParams.sessionTag != null)
-				rootSequence.OctetString(1, requestParams.getSessionTagEncoding()); 			
-			SoftnetMessage message = MsgBuilder.Create(Constants.Client.RpcController.ModuleId, Constants.Client.RpcController.REQUEST, asnEncoder);
+			SoftnetMessage message = encodeMessage_Request(transactionUid, remoteService, remoteProcedure, requestParams);
 			
 			RpcRequest request = new RpcRequest(transactionUid);
 			request.remoteService = remoteService;
 			request.procedureName = remoteProcedure.name;
 			request.responseHandler = responseHandler;
 			request.attachment = requestParams.attachment;
-			Acceptor<Object> acceptor = new Acceptor<Object>() {
-				public void accept(Object state) { onRequestTimeoutExpired(state); }
-			};
-			request.timeoutControlTask = new ScheduledTask(acceptor, request);
-			
-			synchronized(endpoint_mutex)
-			{
-				if(clientStatus != StatusEnum.Online)
-					throw new ClientOfflineSoftnetException();			
-				requestList.add(request);
-		        channel.send(message);
-			}
 			
-			scheduler.add(request.timeoutControlTask, requestParams.waitSeconds > 0 ? requestParams.waitSeconds : Constants.RpcWaitSeconds);
+			send(request, message, requestParams.waitMillis);
 		}
 		catch(SoftnetException ex) {
 			responseHandler.onError(new ResponseContext(clientEndpoint, remoteService, requestParams.attachment), ex);
 		}
 	}
 
+	public RPCFuture callAsync(RemoteService remoteService, RemoteProcedure remoteProcedure, RequestParams requestParams)
+	{
+		if(remoteService == null)
+			throw new IllegalArgumentException("The argument 'remoteService' is null."); 
+
+		if(remoteProcedure == null)
+			throw new IllegalArgumentException("The argument 'remoteProcedure' is null."); 
+		
+		if(remoteProcedure.arguments.getSize() > 65536)
+			throw new IllegalArgumentException("The size of data in the 'remoteProcedure.arguments' field exceeds 64 kilobytes (65536 bytes)."); 
+		
+		if(requestParams == null)
+			throw new IllegalArgumentException("The argument 'requestParams' is null."); 
+		
+		RPCFuture future = new RPCFuture();
+		try
+		{			
+			if(remoteService.isOnline() == false)
+				throw new ServiceOfflineSoftnetException();
+
+			final UUID transactionUid = UUID.randomUUID();
+
+			SoftnetMessage message = encodeMessage_Request(transactionUid, remoteService, remoteProcedure, requestParams);
+			
+			RpcRequest request = new RpcRequest(transactionUid);
+			request.remoteService = remoteService;
+			request.procedureName = remoteProcedure.name;
+			request.future = future;
+			request.attachment = requestParams.attachment;
+			future.setCanceller(new Runnable() {
+				public void run() { cancelRequest(transactionUid); }
+			});
+			
+			send(request, message, requestParams.waitMillis);
+		}
+		catch(SoftnetException ex) {
+			future.onError(new ResponseContext(clientEndpoint, remoteService, requestParams.attachment), ex);
+		}
+		return future;
+	}
+
+	private SoftnetMessage encodeMessage_Request(UUID transactionUid, RemoteService remoteService, RemoteProcedure remoteProcedure, RequestParams requestParams)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder rootSequence = asnEncoder.Sequence();
+		rootSequence.OctetString(transactionUid);
+		rootSequence.Int64(remoteService.getId());
+		rootSequence.IA5String(remoteProcedure.name);		
+		rootSequence.OctetString(remoteProcedure.getEncoding());
+		if(requestParams != null)
+		{
+			if(requestParams.sessionTag != null)
+				rootSequence.OctetString(1, requestParams.getSessionTagEncoding()); 			
+			if(requestParams.hasDeadline)
+				rootSequence.Int64(2, requestParams.waitMillis);
+		}
+		return MsgBuilder.Create(Constants.Client.RpcController.ModuleId, Constants.Client.RpcController.REQUEST, asnEncoder);
+	}
+	
+	private void send(RpcRequest request, SoftnetMessage message, long waitMillis) throws ClientOfflineSoftnetException
+	{
+		Acceptor<Object> acceptor = new Acceptor<Object>() {
+			public void accept(Object state) { onRequestTimeoutExpired(state); }
+		};
+		request.timeoutControlTask = new ScheduledTask(acceptor, request);
+		
+		synchronized(endpoint_mutex)
+		{
+			if(clientStatus != StatusEnum.Online)
+				throw new ClientOfflineSoftnetException();			
+			addRequest(request);
+			channel.send(message);
+		}
+		
+		scheduler.addMillis(request.timeoutControlTask, waitMillis > 0 ? waitMillis : Constants.RpcWaitSeconds * 1000L);
+	}
+
+	public void callAny(MultiServiceGroup serviceGroup, RemoteProcedure remoteProcedure, RPCResponseHandler responseHandler)
+	{
+		if(responseHandler == null)
+			throw new IllegalArgumentException("The argument 'responseHandler' is null."); 
+		
+		RemoteService remoteService = serviceGroup.selectService(this);
+		if(remoteService == null)
+		{
+			responseHandler.onError(new ResponseContext(clientEndpoint, null, null), new ServiceOfflineSoftnetException());
+			return;
+		}
+		call(remoteService, remoteProcedure, responseHandler);
+	}
+
+	public void callAny(MultiServiceGroup serviceGroup, RemoteProcedure remoteProcedure, RPCResponseHandler responseHandler, RequestParams requestParams)
+	{
+		if(responseHandler == null)
+			throw new IllegalArgumentException("The argument 'responseHandler' is null."); 
+
+		if(requestParams == null)
+			throw new IllegalArgumentException("The argument 'requestParams' is null."); 
+		
+		RemoteService remoteService = serviceGroup.selectService(this);
+		if(remoteService == null)
+		{
+			responseHandler.onError(new ResponseContext(clientEndpoint, null, requestParams.attachment), new ServiceOfflineSoftnetException());
+			return;
+		}
+		call(remoteService, remoteProcedure, responseHandler, requestParams);
+	}
+	
+	public int getPendingRequests(long serviceId)
+	{
+		synchronized(endpoint_mutex)
+		{
+			HashSet<RpcRequest> requestSet = serviceRequests.get(serviceId);
+			return requestSet != null ? requestSet.size() : 0;
+		}
+	}
+	
+	private void cancelRequest(UUID transactionUid)
+	{
+		RpcRequest request;
+		synchronized(endpoint_mutex)
+		{
+			request = removeRequest(transactionUid);
+		}
+		if(request != null)
+			request.timeoutControlTask.cancel();
+	}
+
 	private void onRequestTimeoutExpired(Object state)
 	{
 		RpcRequest request = (RpcRequest)state;
 		synchronized(endpoint_mutex)
 		{
-			if(requestList.remove(request) == false)
+			if(removeRequest(request.transactionUid) == null)
 				return;
 		}
-		request.responseHandler.onError(new ResponseContext(clientEndpoint, request.remoteService, request.attachment), new TimeoutExpiredSoftnetException("The RPC call timeout expired."));		
+		request.notifyError(new TimeoutExpiredSoftnetException("The RPC call timeout expired."));		
 	}
 	
 	private void processMessage_Result(byte[] message, Channel channel) throws AsnException, SoftnetException
@@ -254,11 +355,16 @@ class RPCController
 				return;
 			
 			final RpcRequest f_request = request;
+			final byte[] f_resultEncoding = resultEncoding;
 			final SequenceDecoder asnResult = ASNDecoder.Sequence(resultEncoding);
 			Runnable runnable = new Runnable() {
 				@Override
 				public void run() {
-					f_request.responseHandler.onSuccess(new ResponseContext(clientEndpoint, f_request.remoteService, f_request.attachment), asnResult);
+					ResponseContext context = new ResponseContext(clientEndpoint, f_request.remoteService, f_request.attachment);
+					if(f_request.future != null)
+						f_request.future.onResult(context, f_resultEncoding);
+					else
+						f_request.responseHandler.onSuccess(context, asnResult);
 				}
 			};
 			threadPool.execute(runnable);
@@ -289,7 +395,7 @@ class RPCController
 			Runnable runnable = new Runnable() {
 				@Override
 				public void run() {
-					f_request.responseHandler.onError(new ResponseContext(clientEndpoint, f_request.remoteService, f_request.attachment), exception);
+					f_request.notifyError(exception);
 				}
 			};
 			threadPool.execute(runnable);			
@@ -301,9 +407,13 @@ class RPCController
 		SequenceDecoder asnRootSequence = ASNDecoder.Sequence(message, 2);
 		UUID transactionUid = asnRootSequence.OctetStringToUUID();
 		final int errorCode = asnRootSequence.Int32();
+		byte[] errorEncoding = null;
 		SequenceDecoder asnErrorSequence = null; 
 		if(asnRootSequence.exists(1))
-			asnErrorSequence = ASNDecoder.Sequence(asnRootSequence.OctetString(2, 65536));
+		{
+			errorEncoding = asnRootSequence.OctetString(2, 65536);
+			asnErrorSequence = ASNDecoder.Sequence(errorEncoding);
+		}
 		asnRootSequence.end();
 		
 		RpcRequest request = null;
@@ -320,13 +430,18 @@ class RPCController
 				return;
 			
 			final RpcRequest f_request = request;
+			final byte[] f_errorEncoding = errorEncoding;
 			final SequenceDecoder f_asnErrorSequence = asnErrorSequence;
 			Runnable runnable = new Runnable()
 			{
 				@Override
 				public void run()
 				{
-					f_request.responseHandler.onError(new ResponseContext(clientEndpoint, f_request.remoteService, f_request.attachment), errorCode, f_asnErrorSequence);
+					ResponseContext context = new ResponseContext(clientEndpoint, f_request.remoteService, f_request.attachment);
+					if(f_request.future != null)
+						f_request.future.onAppError(context, errorCode, f_errorEncoding);
+					else
+						f_request.responseHandler.onError(context, errorCode, f_asnErrorSequence);
 				}
 			};
 			threadPool.execute(runnable);
@@ -365,17 +480,35 @@ class RPCController
 		return new UnexpectedErrorSoftnetException(errorCode);
 	}
 	
+	private void addRequest(RpcRequest request)
+	{
+		requests.put(request.transactionUid, request);
+		
+		long serviceId = request.remoteService.getId();
+		HashSet<RpcRequest> requestSet = serviceRequests.get(serviceId);
+		if(requestSet == null)
+		{
+			requestSet = new HashSet<RpcRequest>();
+			serviceRequests.put(serviceId, requestSet);
+		}
+		requestSet.add(request);
+	}
+	
 	private RpcRequest removeRequest(UUID transactionUid)
 	{
-		for(RpcRequest request: requestList)
+		RpcRequest request = requests.remove(transactionUid);
+		if(request == null)
+			return null;
+		
+		long serviceId = request.remoteService.getId();
+		HashSet<RpcRequest> requestSet = serviceRequests.get(serviceId);
+		if(requestSet != null)
 		{
-			if(request.transactionUid.equals(transactionUid))
-			{
-				requestList.remove(request);
-				return request;
-			}
+			requestSet.remove(request);
+			if(requestSet.isEmpty())
+				serviceRequests.remove(serviceId);
 		}
-		return null;
+		return request;
 	}
 
 	private class RpcRequest
@@ -384,6 +517,7 @@ class RPCController
 		public RemoteService remoteService;
 		public String procedureName;	
 		public RPCResponseHandler responseHandler;
+		public RPCFuture future;
 		public Object attachment;
 		public ScheduledTask timeoutControlTask;
 		
@@ -391,6 +525,16 @@ class RPCController
 		{
 			this.transactionUid = transactionUid;
 			this.attachment = null;
-		}		
+			this.future = null;
+		}
+		
+		public void notifyError(SoftnetException exception)
+		{
+			ResponseContext context = new ResponseContext(clientEndpoint, remoteService, attachment);
+			if(future != null)
+				future.onError(context, exception);
+			else
+				responseHandler.onError(context, exception);
+		}
 	}
 }
@@ -0,0 +1,231 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package softnet.client;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import softnet.asn.*;
+import softnet.exceptions.*;
+
+public class RPCFuture implements Future<SequenceDecoder>
+{
+	RPCFuture()
+	{
+		handlers = new ArrayList<RPCResponseHandler>();
+	}
+	
+	private Object mutex = new Object();
+	private boolean isDone = false;
+	private boolean isCancelled = false;
+	private ResponseContext context = null;
+	private byte[] resultEncoding = null;
+	private int errorCode = 0;
+	private byte[] errorEncoding = null;
+	private Exception exception = null;
+	private ArrayList<RPCResponseHandler> handlers;
+	private Runnable canceller = null;
+	
+	public boolean isDone()
+	{
+		synchronized(mutex)
+		{
+			return isDone;
+		}
+	}
+	
+	public boolean isCancelled()
+	{
+		synchronized(mutex)
+		{
+			return isCancelled;
+		}
+	}
+	
+	public ResponseContext getContext()
+	{
+		synchronized(mutex)
+		{
+			return context;
+		}
+	}
+	
+	public boolean cancel(boolean mayInterruptIfRunning)
+	{
+		Runnable canceller;
+		synchronized(mutex)
+		{
+			if(isDone)
+				return false;
+			isDone = true;
+			isCancelled = true;
+			canceller = this.canceller;
+			this.canceller = null;
+			handlers.clear();
+			mutex.notifyAll();
+		}
+		
+		if(canceller != null)
+			canceller.run();
+		return true;
+	}
+	
+	public SequenceDecoder get() throws InterruptedException, ExecutionException
+	{
+		synchronized(mutex)
+		{
+			while(isDone == false)
+				mutex.wait();
+			return getResult();
+		}
+	}
+
+	public SequenceDecoder get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+	{
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized(mutex)
+		{
+			while(isDone == false)
+			{
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0)
+					throw new TimeoutException();
+				TimeUnit.NANOSECONDS.timedWait(mutex, remaining);
+			}
+			return getResult();
+		}
+	}
+	
+	public void addHandler(RPCResponseHandler handler)
+	{
+		if(handler == null)
+			throw new IllegalArgumentException("The argument 'handler' is null.");
+		
+		synchronized(mutex)
+		{
+			if(isDone == false)
+			{
+				handlers.add(handler);
+				return;
+			}
+			if(isCancelled)
+				return;
+		}
+		notifyHandler(handler);
+	}
+	
+	void setCanceller(Runnable canceller)
+	{
+		synchronized(mutex)
+		{
+			this.canceller = canceller;
+		}
+	}
+	
+	// RPCController completes the future with the raw encodings so that every handler and every get()
+	// decodes the result with its own decoder.
+	void onResult(ResponseContext context, byte[] resultEncoding)
+	{
+		complete(context, resultEncoding, 0, null, null);
+	}
+	
+	void onAppError(ResponseContext context, int errorCode, byte[] errorEncoding)
+	{
+		complete(context, null, errorCode, errorEncoding, new RPCAppErrorException(errorCode, null));
+	}
+	
+	void onError(ResponseContext context, SoftnetException exception)
+	{
+		complete(context, null, 0, null, exception);
+	}
+	
+	private void complete(ResponseContext context, byte[] resultEncoding, int errorCode, byte[] errorEncoding, Exception exception)
+	{
+		RPCResponseHandler[] handlerArray;
+		synchronized(mutex)
+		{
+			if(isDone)
+				return;
+			isDone = true;
+			this.context = context;
+			this.resultEncoding = resultEncoding;
+			this.errorCode = errorCode;
+			this.errorEncoding = errorEncoding;
+			this.exception = exception;
+			canceller = null;
+			handlerArray = handlers.toArray(new RPCResponseHandler[handlers.size()]);
+			handlers.clear();
+			mutex.notifyAll();
+		}
+		
+		RuntimeException handlerException = null;
+		for(RPCResponseHandler handler: handlerArray)
+		{
+			try
+			{
+				notifyHandler(handler);
+			}
+			catch(RuntimeException ex)
+			{
+				if(handlerException == null)
+					handlerException = ex;
+				else
+					softnet.core.Threads.reportException(ex);
+			}
+		}
+		if(handlerException != null)
+			throw handlerException;
+	}
+	
+	private void notifyHandler(RPCResponseHandler handler)
+	{
+		try
+		{
+			if(exception == null)
+				handler.onSuccess(context, ASNDecoder.Sequence(resultEncoding));
+			else if(exception instanceof RPCAppErrorException)
+				handler.onError(context, errorCode, errorEncoding != null ? ASNDecoder.Sequence(errorEncoding) : null);
+			else
+				handler.onError(context, (SoftnetException)exception);
+		}
+		catch(AsnException ex)
+		{
+			handler.onError(context, new InputDataFormatSoftnetException(ex.getMessage()));
+		}
+	}
+	
+	private SequenceDecoder getResult() throws ExecutionException
+	{
+		if(isCancelled)
+			throw new CancellationException();
+		try
+		{
+			if(exception instanceof RPCAppErrorException)
+				throw new ExecutionException(new RPCAppErrorException(errorCode, errorEncoding != null ? ASNDecoder.Sequence(errorEncoding) : null));
+			if(exception != null)
+				throw new ExecutionException(exception);
+			return ASNDecoder.Sequence(resultEncoding);
+		}
+		catch(AsnException ex)
+		{
+			throw new ExecutionException(new InputDataFormatSoftnetException(ex.getMessage()));
+		}
+	}
+}
@@ -5,12 +5,16 @@ import softnet.asn.*;
 public class RequestParams {
 	public final Object attachment;
 	public final int waitSeconds; 
+	public final long waitMillis;
+	public final boolean hasDeadline;
 	public final SequenceEncoder sessionTag;
 		
 	public RequestParams(Object attachment,	int waitSeconds) {
 		if(waitSeconds < 0)
 			throw new IllegalArgumentException("'waitSeconds' must not be negative.");
 		this.waitSeconds = waitSeconds >= 5 ? waitSeconds : 5;
+		this.waitMillis = this.waitSeconds * 1000L;
+		this.hasDeadline = false;
 		this.attachment = attachment;
 		this.sessionTag = null; 		
 	}
@@ -18,6 +22,8 @@ public class RequestParams {
 	public RequestParams(Object attachment) {
 		this.attachment = attachment;
 		this.waitSeconds = 0;
+		this.waitMillis = 0;
+		this.hasDeadline = false;
 		this.sessionTag = null; 		
 	}
 
@@ -25,12 +31,16 @@ public class RequestParams {
 		if(waitSeconds < 0)
 			throw new IllegalArgumentException("'waitSeconds' must not be negative.");
 		this.waitSeconds = waitSeconds >= 5 ? waitSeconds : 5;
+		this.waitMillis = this.waitSeconds * 1000L;
+		this.hasDeadline = false;
 		this.attachment = null;
 		this.sessionTag = null; 		
 	}
 
 	protected RequestParams(boolean withSessionTag) {
 		this.waitSeconds = 0;
+		this.waitMillis = 0;
+		this.hasDeadline = false;
 		this.attachment = null;
 		
 		if(withSessionTag) {
@@ -44,6 +54,8 @@ public class RequestParams {
 		if(waitSeconds < 0)
 			throw new IllegalArgumentException("'waitSeconds' must not be negative.");
 		this.waitSeconds = waitSeconds >= 5 ? waitSeconds : 5;
+		this.waitMillis = this.waitSeconds * 1000L;
+		this.hasDeadline = false;
 		this.attachment = attachment;
 		
 		if(withSessionTag) {
@@ -53,6 +65,31 @@ public class RequestParams {
 			sessionTag = null;
 	}
 
+	protected RequestParams(long waitMillis, Object attachment, boolean withSessionTag) {
+		if(waitMillis <= 0)
+			throw new IllegalArgumentException("'waitMillis' must be greater than zero.");
+		this.waitMillis = waitMillis;
+		this.hasDeadline = true;
+		this.waitSeconds = (int)Math.min((waitMillis + 999) / 1000, Integer.MAX_VALUE);
+		this.attachment = attachment;
+		
+		if(withSessionTag) {
+			asnEncoder = new ASNEncoder(); 
+			sessionTag = asnEncoder.Sequence();
+		} else
+			sessionTag = null;
+	}
+
+	// Only requests created by withDeadline carry the wait time to the service, in an optional field of the request.
+	// Use it with services whose site runs a server version that accepts the field.
+	public static RequestParams withDeadline(long waitMillis) {
+		return new RequestParams(waitMillis, null, false);
+	}
+
+	public static RequestParams withDeadline(Object attachment, long waitMillis) {
+		return new RequestParams(waitMillis, attachment, false);
+	}
+
 	private ASNEncoder asnEncoder;
 
 	public byte[] getSessionTagEncoding() {
@@ -17,4 +17,16 @@ public class RequestParamsExt extends RequestParams {
 	public RequestParamsExt() {
 		super(true);
 	}
+	
+	private RequestParamsExt(long waitMillis, Object attachment) {
+		super(waitMillis, attachment, true);
+	}
+
+	public static RequestParamsExt withDeadline(long waitMillis) {
+		return new RequestParamsExt(waitMillis, null);
+	}
+
+	public static RequestParamsExt withDeadline(Object attachment, long waitMillis) {
+		return new RequestParamsExt(waitMillis, attachment);
+	}
 }
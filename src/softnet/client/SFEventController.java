@@ -30,6 +30,7 @@ class SFEventController implements EventController
 	{
 		this.clientEndpoint = clientEndpoint;
 		this.threadPool = clientEndpoint.threadPool;
+		this.eventDispatcher = new EventDispatcher(clientEndpoint);
 		this.clientURI = clientURI;
 		clientPersistence = new ClientMemoryPersistence();
 		subscriptions = new ArrayList<Subscription>();	
@@ -40,6 +41,7 @@ class SFEventController implements EventController
 	private Object mutex = new Object();
 	private ClientEndpoint clientEndpoint;
 	private ThreadPool threadPool;
+	private EventDispatcher eventDispatcher;
 	private boolean isClosed = false;
 	private boolean isInitialized = false;
 	private Channel channel;
@@ -121,6 +123,26 @@ class SFEventController implements EventController
 			isClosed = true;
 			clientPersistence.close();
 		}
+		eventDispatcher.close();
+	}
+	
+	public void setEventDispatchLimits(int maxInFlight, int queueCapacity)
+	{
+		eventDispatcher.setLimits(maxInFlight, queueCapacity);
+	}
+
+	// Once a subscription's queue is full, events of that subscription are dropped without an ack until the queue
+	// has drained, and the server redelivers them in order. Other subscriptions keep being dispatched.
+	private void dispatch(Subscription subscription, Runnable runnable)
+	{
+		if(subscription.isBackpressured)
+		{
+			if(subscription.dispatchQueue.isEmpty() == false)
+				return;
+			subscription.isBackpressured = false;
+		}
+		if(subscription.dispatchQueue.dispatch(runnable) == false)
+			subscription.isBackpressured = true;
 	}
 		
 	public void onEndpointConnected(Channel channel)
@@ -146,7 +168,10 @@ class SFEventController implements EventController
 		{
 			isSynchronized = false;
 			channel = null;
+			for(Subscription subscription: subscriptions)
+				subscription.isBackpressured = false;
 		}
+		eventDispatcher.discardPending();
 	}
 	
 	public void addEventListener(ClientEventListener listener)
@@ -273,6 +298,7 @@ class SFEventController implements EventController
 				if(subscription.eventName.equals(eventName))
 				{
 					subscriptions.remove(subscription);
+					subscription.dispatchQueue.close();
 	
 					if(isSynchronized)
 					{
@@ -297,6 +323,8 @@ class SFEventController implements EventController
 		}
 		catch(AsnException e) { }
 		
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
 		{
 			if(isClosed) return;
@@ -304,6 +332,11 @@ class SFEventController implements EventController
 			try
 			{
 				clientPersistence.putItem(eventIData.name, eventIData.instanceId);
+				if(clientPersistence instanceof ClientFilePersistence)
+				{
+					groupCommit = ((ClientFilePersistence)clientPersistence).getGroupCommit();
+					commitTicket = groupCommit.getTicket();
+				}
 			}
 			catch(PersistenceIOSoftnetException ex)
 			{
@@ -311,9 +344,16 @@ class SFEventController implements EventController
 				clientPersistence = new ClientMemoryPersistence();
 				((ClientMemoryPersistence)clientPersistence).putItem(eventIData.name, eventIData.instanceId);
 				raisePersistenceFailedEvent(ex);
-			}			
-			
-			channel.send(EncodeMessage_ReplacingEventAck(eventIData));	
+			}
+		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket, eventIData);
+		
+		synchronized(mutex)
+		{
+			if(isClosed) return;
+			channel.send(EncodeMessage_ReplacingEventAck(eventIData));
 		}
 	}
 	
@@ -325,6 +365,8 @@ class SFEventController implements EventController
 		}
 		catch(AsnException e) { }
 		
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
 		{
 			if(isClosed) return;
@@ -332,6 +374,11 @@ class SFEventController implements EventController
 			try
 			{
 				clientPersistence.putItem(eventIData.name, eventIData.instanceId);
+				if(clientPersistence instanceof ClientFilePersistence)
+				{
+					groupCommit = ((ClientFilePersistence)clientPersistence).getGroupCommit();
+					commitTicket = groupCommit.getTicket();
+				}
 			}
 			catch(PersistenceIOSoftnetException ex)
 			{
@@ -339,7 +386,15 @@ class SFEventController implements EventController
 				clientPersistence = new ClientMemoryPersistence();
 				((ClientMemoryPersistence)clientPersistence).putItem(eventIData.name, eventIData.instanceId);
 				raisePersistenceFailedEvent(ex);
-			}			
+			}
+		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket, eventIData);
+		
+		synchronized(mutex)
+		{
+			if(isClosed) return;
 			channel.send(EncodeMessage_QueueingEventAck(eventIData));
 		}
 	}
@@ -352,6 +407,8 @@ class SFEventController implements EventController
 		}
 		catch(AsnException e) { }
 		
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
 		{
 			if(isClosed) return;
@@ -359,6 +416,11 @@ class SFEventController implements EventController
 			try
 			{
 				clientPersistence.putItem(eventIData.name, eventIData.instanceId);
+				if(clientPersistence instanceof ClientFilePersistence)
+				{
+					groupCommit = ((ClientFilePersistence)clientPersistence).getGroupCommit();
+					commitTicket = groupCommit.getTicket();
+				}
 			}
 			catch(PersistenceIOSoftnetException ex)
 			{
@@ -366,12 +428,40 @@ class SFEventController implements EventController
 				clientPersistence = new ClientMemoryPersistence();
 				((ClientMemoryPersistence)clientPersistence).putItem(eventIData.name, eventIData.instanceId);
 				raisePersistenceFailedEvent(ex);
-			}		
-			
+			}
+		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket, eventIData);
+		
+		synchronized(mutex)
+		{
+			if(isClosed) return;
 			channel.send(EncodeMessage_PrivateEventAck(eventIData));
 		}
 	}
 
+	private void awaitCommit(GroupCommit groupCommit, long commitTicket, EventIData eventIData)
+	{
+		try
+		{
+			groupCommit.await(commitTicket);
+		}
+		catch(java.io.IOException e)
+		{
+			synchronized(mutex)
+			{
+				if(isClosed || (clientPersistence instanceof ClientFilePersistence) == false || ((ClientFilePersistence)clientPersistence).getGroupCommit() != groupCommit)
+					return;
+				
+				clientPersistence.close();
+				clientPersistence = new ClientMemoryPersistence();
+				((ClientMemoryPersistence)clientPersistence).putItem(eventIData.name, eventIData.instanceId);
+				raisePersistenceFailedEvent(new PersistenceIOSoftnetException(e.getMessage()));
+			}
+		}
+	}
+
 	private void ProcessMessage_Sync(byte[] message, Channel channel) throws AsnException, softnet.exceptions.HostErrorSoftnetException
 	{
 		byte[] receivedhash = null;
@@ -406,7 +496,7 @@ class SFEventController implements EventController
 		isSynchronized = true;
 	}
 	
-	private void ProcessMessage_ReplacingEvent(byte[] message, final Channel channel) throws AsnException
+	private void ProcessMessage_ReplacingEvent(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
 		final EventIData eventIData = new EventIData();
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
@@ -438,7 +528,7 @@ class SFEventController implements EventController
 							handleReplacingEvent(eventIData, eventListener, channel);
 						}
 					};
-					threadPool.execute(runnable);
+					dispatch(subscription, runnable);
 				}
 				else
 				{
@@ -451,7 +541,7 @@ class SFEventController implements EventController
 		channel.send(EncodeMessage_EventRejected(eventIData, Constants.EventCategory.Replacing));
 	}
 
-	private void ProcessMessage_ReplacingNullEvent(byte[] message, final Channel channel) throws AsnException
+	private void ProcessMessage_ReplacingNullEvent(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
 		final EventIData eventIData = new EventIData();
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
@@ -481,7 +571,7 @@ class SFEventController implements EventController
 							handleReplacingEvent(eventIData, eventListener, channel);
 						}
 					};
-					threadPool.execute(runnable);
+					dispatch(subscription, runnable);
 				}
 				else
 				{
@@ -494,7 +584,7 @@ class SFEventController implements EventController
 		channel.send(EncodeMessage_EventRejected(eventIData, Constants.EventCategory.Replacing));
 	}
 	
-	private void ProcessMessage_QueueingEvent(byte[] message, final Channel channel) throws AsnException
+	private void ProcessMessage_QueueingEvent(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
 		final EventIData eventIData = new EventIData();
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
@@ -525,7 +615,7 @@ class SFEventController implements EventController
 							handleQueueingEvent(eventIData, eventListener, channel);
 						}
 					};
-					threadPool.execute(runnable);
+					dispatch(subscription, runnable);
 				}
 				else
 				{
@@ -538,7 +628,7 @@ class SFEventController implements EventController
 		channel.send(EncodeMessage_EventRejected(eventIData, Constants.EventCategory.Queueing));
 	}
 
-	private void ProcessMessage_PrivateEvent(byte[] message, final Channel channel) throws AsnException
+	private void ProcessMessage_PrivateEvent(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
 		final EventIData eventIData = new EventIData();
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
@@ -569,7 +659,7 @@ class SFEventController implements EventController
 							handlePrivateEvent(eventIData, eventListener, channel);
 						}
 					};
-					threadPool.execute(runnable);
+					dispatch(subscription, runnable);
 				}
 				else
 				{
@@ -582,7 +672,7 @@ class SFEventController implements EventController
 		channel.send(EncodeMessage_EventRejected(eventIData, Constants.EventCategory.Private));
 	}
 
-	private void ProcessMessage_IllegalSubscription(byte[] message) throws AsnException
+	private void ProcessMessage_IllegalSubscription(byte[] message) throws AsnException, SoftnetException
 	{
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
 		String eventName = sequenceDecoder.IA5String(1, 256);
@@ -603,7 +693,7 @@ class SFEventController implements EventController
 						eventListener.acceptError(clientEndpoint, softnetException);
 					}
 				};				
-				threadPool.execute(runnable);
+				dispatch(subscription, runnable);
 				return;
 			}
 		}
@@ -721,6 +811,8 @@ class SFEventController implements EventController
 		public final int eventCategory;
 		public final String eventName;
 		public final RemoteEventListener listener;
+		public final EventDispatcher.DispatchQueue dispatchQueue;
+		public boolean isBackpressured = false;
 		
 		public Subscription(EventCategory kind, String eventName, RemoteEventListener listener)
 		{
@@ -734,6 +826,7 @@ class SFEventController implements EventController
 				throw new IllegalArgumentException();
 			this.eventName = eventName;
 			this.listener = listener;
+			this.dispatchQueue = eventDispatcher.createQueue();
 		}
 		
 		public int compareTo(Subscription other)
@@ -30,6 +30,7 @@ class SLEventController implements EventController
 	{
 		this.clientEndpoint = clientEndpoint;
 		this.threadPool = clientEndpoint.threadPool;
+		this.eventDispatcher = new EventDispatcher(clientEndpoint);
 		this.clientURI = clientURI;
 		clientPersistence = new ClientMemoryPersistence();
 		subscriptions = new ArrayList<Subscription>();	
@@ -44,6 +45,7 @@ class SLEventController implements EventController
 	private ClientURI clientURI;
 	private ClientEndpoint clientEndpoint;
 	private ThreadPool threadPool;
+	private EventDispatcher eventDispatcher;
 	private ClientPersistence clientPersistence;
 	private ArrayList<Subscription> subscriptions;	
 	private HashSet<ClientEventListener> eventListeners;
@@ -136,6 +138,26 @@ class SLEventController implements EventController
 			isClosed = true;
 			clientPersistence.close();
 		}
+		eventDispatcher.close();
+	}
+	
+	public void setEventDispatchLimits(int maxInFlight, int queueCapacity)
+	{
+		eventDispatcher.setLimits(maxInFlight, queueCapacity);
+	}
+
+	// Once a subscription's queue is full, events of that subscription are dropped without an ack until the queue
+	// has drained, and the server redelivers them in order. Other subscriptions keep being dispatched.
+	private void dispatch(Subscription subscription, Runnable runnable)
+	{
+		if(subscription.isBackpressured)
+		{
+			if(subscription.dispatchQueue.isEmpty() == false)
+				return;
+			subscription.isBackpressured = false;
+		}
+		if(subscription.dispatchQueue.dispatch(runnable) == false)
+			subscription.isBackpressured = true;
 	}
 		
 	public void onEndpointConnected(Channel channel)
@@ -161,7 +183,10 @@ class SLEventController implements EventController
 		{
 			isSynchronized = false;
 			channel = null;
+			for(Subscription subscription: subscriptions)
+				subscription.isBackpressured = false;
 		}
+		eventDispatcher.discardPending();
 	}
 	
 	public void addEventListener(ClientEventListener listener)
@@ -297,6 +322,7 @@ class SLEventController implements EventController
 				if(subscription.eventName.equals(eventName))
 				{
 					subscriptions.remove(subscription);
+					subscription.dispatchQueue.close();
 	
 					if(isSynchronized)
 					{
@@ -321,13 +347,20 @@ class SLEventController implements EventController
 		}
 		catch(AsnException e) { }
 		
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
-		{			
-			if(isClosed) return;	
+		{
+			if(isClosed) return;
 			
 			try
 			{
 				clientPersistence.putItem(eventIData.name, eventIData.instanceId);
+				if(clientPersistence instanceof ClientFilePersistence)
+				{
+					groupCommit = ((ClientFilePersistence)clientPersistence).getGroupCommit();
+					commitTicket = groupCommit.getTicket();
+				}
 			}
 			catch(PersistenceIOSoftnetException ex)
 			{
@@ -336,6 +369,14 @@ class SLEventController implements EventController
 				((ClientMemoryPersistence)clientPersistence).putItem(eventIData.name, eventIData.instanceId);
 				raisePersistenceFailedEvent(ex);
 			}
+		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket, eventIData);
+		
+		synchronized(mutex)
+		{
+			if(isClosed) return;
 			channel.send(EncodeMessage_ReplacingEventAck(eventIData));
 		}
 	}
@@ -348,13 +389,20 @@ class SLEventController implements EventController
 		}
 		catch(AsnException e) { }
 		
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
-		{			
+		{
 			if(isClosed) return;
 			
 			try
 			{
 				clientPersistence.putItem(eventIData.name, eventIData.instanceId);
+				if(clientPersistence instanceof ClientFilePersistence)
+				{
+					groupCommit = ((ClientFilePersistence)clientPersistence).getGroupCommit();
+					commitTicket = groupCommit.getTicket();
+				}
 			}
 			catch(PersistenceIOSoftnetException ex)
 			{
@@ -362,11 +410,40 @@ class SLEventController implements EventController
 				clientPersistence = new ClientMemoryPersistence();
 				((ClientMemoryPersistence)clientPersistence).putItem(eventIData.name, eventIData.instanceId);
 				raisePersistenceFailedEvent(ex);
-			}			
+			}
+		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket, eventIData);
+		
+		synchronized(mutex)
+		{
+			if(isClosed) return;
 			channel.send(EncodeMessage_QueueingEventAck(eventIData));
 		}
 	}
 
+	private void awaitCommit(GroupCommit groupCommit, long commitTicket, EventIData eventIData)
+	{
+		try
+		{
+			groupCommit.await(commitTicket);
+		}
+		catch(java.io.IOException e)
+		{
+			synchronized(mutex)
+			{
+				if(isClosed || (clientPersistence instanceof ClientFilePersistence) == false || ((ClientFilePersistence)clientPersistence).getGroupCommit() != groupCommit)
+					return;
+				
+				clientPersistence.close();
+				clientPersistence = new ClientMemoryPersistence();
+				((ClientMemoryPersistence)clientPersistence).putItem(eventIData.name, eventIData.instanceId);
+				raisePersistenceFailedEvent(new PersistenceIOSoftnetException(e.getMessage()));
+			}
+		}
+	}
+
 	private void ProcessMessage_Sync(Channel channel)
 	{
 		ASNEncoder asnEncoder = new ASNEncoder();
@@ -385,7 +462,7 @@ class SLEventController implements EventController
         isSynchronized = true;
 	}
 	
-	private void ProcessMessage_ReplacingEvent(byte[] message, final Channel channel) throws AsnException
+	private void ProcessMessage_ReplacingEvent(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
 		final EventIData eventIData = new EventIData();
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
@@ -417,7 +494,7 @@ class SLEventController implements EventController
 							handleReplacingEvent(eventIData, eventListener, channel);
 						}
 					};
-					threadPool.execute(runnable);
+					dispatch(subscription, runnable);
 				}
 				else
 				{
@@ -430,7 +507,7 @@ class SLEventController implements EventController
 		channel.send(EncodeMessage_EventRejected(eventIData, Constants.EventCategory.Replacing));
 	}
 
-	private void ProcessMessage_ReplacingNullEvent(byte[] message, final Channel channel) throws AsnException
+	private void ProcessMessage_ReplacingNullEvent(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
 		final EventIData eventIData = new EventIData();
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
@@ -460,7 +537,7 @@ class SLEventController implements EventController
 							handleReplacingEvent(eventIData, eventListener, channel);
 						}
 					};
-					threadPool.execute(runnable);
+					dispatch(subscription, runnable);
 				}
 				else
 				{
@@ -473,7 +550,7 @@ class SLEventController implements EventController
 		channel.send(EncodeMessage_EventRejected(eventIData, Constants.EventCategory.Replacing));
 	}
 	
-	private void ProcessMessage_QueueingEvent(byte[] message, final Channel channel) throws AsnException
+	private void ProcessMessage_QueueingEvent(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
 		final EventIData eventIData = new EventIData();
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
@@ -504,7 +581,7 @@ class SLEventController implements EventController
 							handleQueueingEvent(eventIData, eventListener, channel);
 						}
 					};
-					threadPool.execute(runnable);
+					dispatch(subscription, runnable);
 				}
 				else
 				{
@@ -517,7 +594,7 @@ class SLEventController implements EventController
 		channel.send(EncodeMessage_EventRejected(eventIData, Constants.EventCategory.Queueing));
 	}
 
-	private void ProcessMessage_IllegalSubscription(byte[] message) throws AsnException
+	private void ProcessMessage_IllegalSubscription(byte[] message) throws AsnException, SoftnetException
 	{
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);
 		String eventName = sequenceDecoder.IA5String(1, 256);
@@ -538,7 +615,7 @@ class SLEventController implements EventController
 						eventListener.acceptError(clientEndpoint, softnetException);
 					}
 				};				
-				threadPool.execute(runnable);
+				dispatch(subscription, runnable);
 				return;
 			}
 		}
@@ -630,6 +707,8 @@ class SLEventController implements EventController
 		public final int eventCategory;
 		public final String eventName;
 		public final RemoteEventListener listener;
+		public final EventDispatcher.DispatchQueue dispatchQueue;
+		public boolean isBackpressured = false;
 		
 		public Subscription(EventCategory kind, String eventName, RemoteEventListener listener)
 		{
@@ -641,6 +720,7 @@ class SLEventController implements EventController
 				throw new IllegalArgumentException();
 			this.eventName = eventName;
 			this.listener = listener;
+			this.dispatchQueue = eventDispatcher.createQueue();
 		}
 		
 		public int compareTo(Subscription other)
@@ -75,13 +75,12 @@ class TCPConnectorV4 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -248,13 +247,12 @@ class TCPConnectorV4 implements TCPConnector
 					listenerChannel.bind(localIEP);
 				
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();
+					});
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 								
@@ -359,8 +357,7 @@ class TCPConnectorV4 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationTask(acceptedChannel));
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -597,19 +594,17 @@ class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationTask(acceptedChannel));
 				}
 			}
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateP2PConnectionInDualMode(byte[] message) throws AsnException, UnknownHostException
@@ -643,27 +638,24 @@ class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationTask(acceptedChannel));
 				}
 			}
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryLocalP2PConnection();
 		    }
-		};
-		thread.start();
+		});
 		
-		Thread thread2 = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread2.start();
+		});
 	}
 
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -672,13 +664,12 @@ class TCPConnectorV4 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();		
+		});
 	}
 
 	private SoftnetMessage EncodeMessage_ClientP2P()
@@ -766,11 +757,11 @@ class TCPConnectorV4 implements TCPConnector
 		}
 	}
 
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationTask implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
-		public ClientAuthenticationThread(SocketChannel acceptedChannel){
+		public ClientAuthenticationTask(SocketChannel acceptedChannel){
 			this.acceptedChannel = acceptedChannel;
 		}
 		
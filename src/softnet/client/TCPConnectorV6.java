@@ -74,13 +74,12 @@ public class TCPConnectorV6 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -220,13 +219,12 @@ public class TCPConnectorV6 implements TCPConnector
 					listenerChannel.bind(localIEP);
 				
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();
+					});
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 								
@@ -332,8 +330,7 @@ public class TCPConnectorV6 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationTask(acceptedChannel));
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -528,19 +525,17 @@ public class TCPConnectorV6 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationTask(acceptedChannel));
 				}
 			}
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -549,13 +544,12 @@ public class TCPConnectorV6 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	private SoftnetMessage EncodeMessage_ClientP2P()
@@ -632,11 +626,11 @@ public class TCPConnectorV6 implements TCPConnector
 		}
 	}
 	
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationTask implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
-		public ClientAuthenticationThread(SocketChannel acceptedChannel){
+		public ClientAuthenticationTask(SocketChannel acceptedChannel){
 			this.acceptedChannel = acceptedChannel;
 		}
 		
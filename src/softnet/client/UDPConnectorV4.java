@@ -70,13 +70,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -186,13 +185,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 			thisEndpointUid = endpointUid;			
 		}
         
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	udpExecute();
 		    }
-		};
-		thread.start();
+		});
         
 		authenticationHandler.accept(authKey, attachment);
 	}
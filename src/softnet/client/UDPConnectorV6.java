@@ -67,13 +67,12 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -183,13 +182,12 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 			thisEndpointUid = endpointUid;			
 		}
         
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	udpExecute();
 		    }
-		};
-		thread.start();
+		});
         
 		authenticationHandler.accept(authKey, attachment);
 	}
@@ -0,0 +1,67 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BufferPool
+{
+	public static final int ChunkSize = 8192;
+	private static final int MaxFreeChunks = 1024;
+	
+	private ConcurrentLinkedQueue<ByteBuffer> freeChunks;
+	private AtomicInteger freeChunkCount;
+	
+	public BufferPool()
+	{
+		freeChunks = new ConcurrentLinkedQueue<ByteBuffer>();
+		freeChunkCount = new AtomicInteger(0);
+	}
+	
+	public ByteBuffer allocate()
+	{
+		ByteBuffer chunk = freeChunks.poll();
+		if(chunk == null)
+			return ByteBuffer.allocateDirect(ChunkSize);
+		
+		freeChunkCount.decrementAndGet();
+		((java.nio.Buffer)chunk).clear();
+		return chunk;
+	}
+	
+	// Chunks released beyond MaxFreeChunks are left to the garbage collector.
+	public void release(ByteBuffer chunk)
+	{
+		if(freeChunkCount.incrementAndGet() > MaxFreeChunks)
+		{
+			freeChunkCount.decrementAndGet();
+			return;
+		}
+		freeChunks.add(chunk);
+	}
+	
+	private static BufferPool sharedPool = null;
+	
+	public static synchronized BufferPool getShared()
+	{
+		if(sharedPool == null)
+			sharedPool = new BufferPool();
+		return sharedPool;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.util.LinkedList;
+
+public class FairExecutor
+{
+	private Object mutex = new Object();
+	private LinkedList<TaskQueue> readyQueues;
+	private Thread[] workers;
+	private boolean isShutdown = false;
+	
+	public FairExecutor(int workerCount, String threadName)
+	{
+		if(workerCount < 1)
+			throw new IllegalArgumentException("The value of 'workerCount' must be greater than zero.");
+		
+		readyQueues = new LinkedList<TaskQueue>();
+		workers = new Thread[workerCount];
+		for(int i = 0; i < workerCount; i++)
+		{
+			workers[i] = new Thread(threadName + "-" + i)
+			{
+			    public void run(){
+			    	workCircle();
+			    }
+			};
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+	
+	public int getWorkerCount()
+	{
+		return workers.length;
+	}
+	
+	public TaskQueue createQueue()
+	{
+		return new TaskQueue();
+	}
+	
+	public boolean isShutdown()
+	{
+		return isShutdown;
+	}
+	
+	public void shutdown()
+	{
+		synchronized(mutex)
+		{
+			isShutdown = true;
+			for(TaskQueue taskQueue: readyQueues)
+				taskQueue.tasks.clear();
+			readyQueues.clear();
+			mutex.notifyAll();
+		}
+	}
+	
+	private void workCircle()
+	{
+		while(true)
+		{
+			Runnable task;
+			synchronized(mutex)
+			{
+				while(readyQueues.isEmpty())
+				{
+					if(isShutdown)
+						return;
+					try
+					{
+						mutex.wait();
+					}
+					catch(InterruptedException ex)
+					{
+						return;
+					}
+				}
+				
+				TaskQueue taskQueue = readyQueues.removeFirst();
+				task = taskQueue.tasks.removeFirst();
+				if(taskQueue.tasks.isEmpty())
+					taskQueue.isReady = false;
+				else
+					readyQueues.addLast(taskQueue);
+			}
+			
+			try
+			{
+				task.run();
+			}
+			catch(RuntimeException ex)
+			{
+				Threads.reportException(ex);
+			}
+		}
+	}
+	
+	public class TaskQueue
+	{
+		private LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+		private boolean isReady = false;
+		private boolean isClosed = false;
+		
+		public void execute(Runnable task)
+		{
+			synchronized(mutex)
+			{
+				if(isClosed)
+					return;
+				if(isShutdown)
+					throw new java.util.concurrent.RejectedExecutionException("The executor has been shut down.");
+				
+				tasks.add(task);
+				if(isReady == false)
+				{
+					isReady = true;
+					readyQueues.addLast(this);
+					mutex.notify();
+				}
+			}
+		}
+		
+		public void close()
+		{
+			synchronized(mutex)
+			{
+				isClosed = true;
+				tasks.clear();
+				if(isReady)
+				{
+					isReady = false;
+					readyQueues.remove(this);
+				}
+			}
+		}
+	}
+}
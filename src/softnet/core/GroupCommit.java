@@ -0,0 +1,222 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+public class GroupCommit
+{
+	private final FileChannel fileChannel;
+	private Object mutex = new Object();
+	private long writeCount = 0;
+	private long commitCount = 0;
+	private boolean isCommitting = false;
+	private boolean isCommitScheduled = false;
+	private boolean isClosed = false;
+	private IOException failure = null;
+	private Runnable commitListener = null;
+	
+	public GroupCommit(FileChannel fileChannel)
+	{
+		this.fileChannel = fileChannel;
+	}
+	
+	public long register()
+	{
+		synchronized(mutex)
+		{
+			writeCount++;
+			return writeCount;
+		}
+	}
+	
+	public long getTicket()
+	{
+		synchronized(mutex)
+		{
+			return writeCount;
+		}
+	}
+	
+	public long getCommittedTicket()
+	{
+		synchronized(mutex)
+		{
+			return commitCount;
+		}
+	}
+	
+	public boolean isClosed()
+	{
+		synchronized(mutex)
+		{
+			return isClosed;
+		}
+	}
+	
+	// A failed force leaves the file in an unknown state, so the failure is final for this instance.
+	// The owner is expected to discard it and reopen the storage, which creates a new GroupCommit.
+	public IOException getFailure()
+	{
+		synchronized(mutex)
+		{
+			return failure;
+		}
+	}
+	
+	public void commit() throws IOException
+	{
+		await(register());
+	}
+	
+	public void await(long ticket) throws IOException
+	{
+		long target;
+		synchronized(mutex)
+		{
+			while(true)
+			{
+				if(commitCount >= ticket || isClosed)
+					return;
+				if(failure != null)
+					throw failure;
+				if(isCommitting == false)
+					break;
+				try
+				{
+					mutex.wait();
+				}
+				catch(InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+					throw new IOException("The thread has been interrupted while waiting for the commit.");
+				}
+			}
+			isCommitting = true;
+			target = writeCount;
+		}
+		
+		try
+		{
+			fileChannel.force(false);
+			synchronized(mutex)
+			{
+				commitCount = target;
+			}
+		}
+		catch(IOException ex)
+		{
+			synchronized(mutex)
+			{
+				failure = ex;
+			}
+			throw ex;
+		}
+		finally
+		{
+			synchronized(mutex)
+			{
+				isCommitting = false;
+				mutex.notifyAll();
+			}
+		}
+	}
+	
+	// The force runs as a task on the given pool, at most one scheduled per instance. Once it has completed or failed,
+	// the listener is dispatched to the same pool without any lock held. The listener is kept only while writes
+	// remain uncommitted, so callers pass it again whenever they have something waiting for the commit.
+	public void commitLater(Runnable listener, final ThreadPool threadPool)
+	{
+		synchronized(mutex)
+		{
+			if(listener != null)
+				commitListener = listener;
+			if(isClosed || isCommitScheduled)
+				return;
+			if(commitCount >= writeCount && commitListener == null)
+				return;
+			isCommitScheduled = true;
+		}
+		
+		threadPool.execute(new Runnable()
+		{
+			public void run()
+			{
+				commitScheduled(threadPool);
+			}
+		});
+	}
+	
+	private void commitScheduled(ThreadPool threadPool)
+	{
+		long ticket;
+		Runnable listener;
+		synchronized(mutex)
+		{
+			isCommitScheduled = false;
+			ticket = writeCount;
+			listener = commitListener;
+		}
+		try
+		{
+			await(ticket);
+		}
+		catch(IOException ex) {}
+		
+		synchronized(mutex)
+		{
+			if(commitListener == listener && isCommitScheduled == false && (commitCount >= writeCount || failure != null || isClosed))
+				commitListener = null;
+		}
+		
+		if(listener != null)
+			threadPool.execute(listener);
+	}
+	
+	public void close()
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				return;
+			while(isCommitting)
+			{
+				try
+				{
+					mutex.wait();
+				}
+				catch(InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			isClosed = true;
+			if(failure == null && commitCount < writeCount)
+			{
+				try
+				{
+					fileChannel.force(false);
+					commitCount = writeCount;
+				}
+				catch(IOException ex) {}
+			}
+			mutex.notifyAll();
+		}
+	}
+}
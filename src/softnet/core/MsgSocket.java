@@ -17,6 +17,7 @@
 package softnet.core;
 
 import java.lang.Thread;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.ByteBuffer;
 import java.io.IOException;
@@ -54,20 +55,68 @@ public class MsgSocket
 			}
 		}
 		catch(IOException ex){}
+		
+		if(selectorLoop != null && m_buffer != null)
+		{
+			selectorLoop.execute(new Runnable()
+			{
+				public void run() { releaseInputBuffers(); }
+			}, selectorHandler);
+		}
+	}
+	
+	// Sockets without write coalescing write at most DefaultMaxBatchBytes per call and never delay a flush.
+	public void setWriteCoalescing(WriteCoalescing writeCoalescing)
+	{
+		this.writeCoalescing = writeCoalescing;
 	}
 	
 	public void start()
 	{
-		m_buffer = ByteBuffer.allocate(1024);
+		SelectorLoopGroup selectorLoopGroup = SelectorLoopGroup.getShared();
+		if(selectorLoopGroup != null)
+		{
+			start(selectorLoopGroup.next());
+			return;
+		}
+		
+		allocateInputBuffer();
 		outputMessageQueue = new LinkedList<ByteBuffer>();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	inputCircle();
 		    }
+		});
+	}
+	
+	// In this mode received messages are delivered on the selector thread, so message handlers must not block.
+	public void start(SelectorLoop selectorLoop)
+	{
+		allocateInputBuffer();
+		outputMessageQueue = new LinkedList<ByteBuffer>();
+		
+		try
+		{
+			socketChannel.configureBlocking(false);
+		}
+		catch(IOException ex)
+		{
+			networkErrorHandler.accept(new NetworkErrorSoftnetException(ex.getMessage()));
+			closeSocketChannel();
+			return;
+		}
+		
+		this.selectorLoop = selectorLoop;
+		selectorHandler = new SelectorHandler()
+		{
+			public void onRegistered(SelectionKey key) { selectionKey = key; }
+			public void onReadable() { onInputReady(); }
+			public void onWritable() { onOutputReady(); }
+			public void onFailure(Exception ex) { onSelectorFailure(ex); }
 		};
-		thread.start();
+		selectorLoop.register(socketChannel, SelectionKey.OP_READ, selectorHandler);
 	}
 	
 	public SocketChannel getChannel()
@@ -76,6 +125,10 @@ public class MsgSocket
 	}
 	
 	private SocketChannel socketChannel;
+	private SelectorLoop selectorLoop = null;
+	private SelectionKey selectionKey = null;
+	private SelectorHandler selectorHandler = null;
+	private boolean isSelectorFailed = false;
 
 	private ByteBuffer m_buffer;
 	private byte[] m_message;
@@ -83,6 +136,11 @@ public class MsgSocket
 	private int messageBytesReceived;
 	private boolean isReadingAtMessageOrigin = true;
 		
+	private void allocateInputBuffer()
+	{
+		m_buffer = BufferPool.getShared().allocate();
+	}
+		
 	private void inputCircle()
 	{
 		try
@@ -101,104 +159,148 @@ public class MsgSocket
 		        }
 				
 				((java.nio.Buffer)m_buffer).flip();
-				
-				while (isClosed == false)
-	            {
-	                if (isReadingAtMessageOrigin)
-	                {
-	                    int firstByte = m_buffer.get(m_buffer.position());
+				processInput();
+			}
+		}
+		catch(FormatException ex)
+		{			
+			formatErrorHandler.run();
+			closeSocketChannel();
+		}
+		catch(IOException ex)
+		{
+			networkErrorHandler.accept(new NetworkErrorSoftnetException(ex.getMessage()));
+			closeSocketChannel();
+		}
+		finally
+		{
+			releaseInputBuffers();
+		}
+	}
+		
+	private void processInput() throws FormatException
+	{
+		while (isClosed == false)
+		{
+			if (isReadingAtMessageOrigin)
+			{
+				int firstByte = m_buffer.get(m_buffer.position());
 	                    
-	                    if (firstByte > 0)
-	                    {
-	                    	m_buffer.get();
-	                    	messageLength = firstByte;
-	                    }
-	                    else if(firstByte < 0)
-	                    {
-	                    	int lengthBytes = firstByte & 0x0000007F;
-	                    	if(lengthBytes < m_buffer.remaining())
-	                    	{    
-	                    		m_buffer.get();
-	                    		messageLength = decodeLength(lengthBytes);
-	                    	}
-	                    	else
-	                    	{
-	                    		m_buffer.compact();
-	                    		break;
-	                    	}
-	                    }
-	                    else
-	                    {
-	                    	throw new FormatException();
-	                    }
+				if (firstByte > 0)
+				{
+					m_buffer.get();
+					messageLength = firstByte;
+				}
+				else if(firstByte < 0)
+				{
+					int lengthBytes = firstByte & 0x0000007F;
+					if(lengthBytes < m_buffer.remaining())
+					{    
+						m_buffer.get();
+						messageLength = decodeLength(lengthBytes);
+					}
+					else
+					{
+						m_buffer.compact();
+						break;
+					}
+				}
+				else
+				{
+					throw new FormatException();
+				}
 	                    
-	                    if (messageLength < minLength || messageLength > maxLength)
-	                        throw new FormatException();
+				if (messageLength < minLength || messageLength > maxLength)
+					throw new FormatException();
 	                    
-	                    m_message = new byte[messageLength];
+				m_message = new byte[messageLength];
 	                    
-	                    if(messageLength == m_buffer.remaining())
-	            		{
-	            			m_buffer.get(m_message);
-	            			((java.nio.Buffer)m_buffer).clear();
+				if(messageLength == m_buffer.remaining())
+				{
+					m_buffer.get(m_message);
+					((java.nio.Buffer)m_buffer).clear();
 	            			
-	            			messageReceivedHandler.accept(m_message);
-	            			m_message = null;
-	            			break;
-	            		}
-	            		else if(messageLength < m_buffer.remaining())
-	            		{
-	            			m_buffer.get(m_message);
+					messageReceivedHandler.accept(m_message);
+					m_message = null;
+					break;
+				}
+				else if(messageLength < m_buffer.remaining())
+				{
+					m_buffer.get(m_message);
 	            			
-	            			messageReceivedHandler.accept(m_message);
-	            			m_message = null;
-	            		}
-	            		else
-	            		{
-	            			messageBytesReceived = m_buffer.remaining();
-	            			m_buffer.get(m_message, 0, messageBytesReceived);                    			
-	            			((java.nio.Buffer)m_buffer).clear();
+					messageReceivedHandler.accept(m_message);
+					m_message = null;
+				}
+				else
+				{
+					messageBytesReceived = m_buffer.remaining();
+					m_buffer.get(m_message, 0, messageBytesReceived);                    			
+					((java.nio.Buffer)m_buffer).clear();
 	            			
-	            			isReadingAtMessageOrigin = false;
-	            			break;
-	            		}
-	                }
-	                else
-	                {
-	                	int messageBytesRequired = messageLength - messageBytesReceived;
-	                	if(messageBytesRequired == m_buffer.remaining())
-	                	{
-	                		m_buffer.get(m_message, messageBytesReceived, messageBytesRequired);                    			
-	                		((java.nio.Buffer)m_buffer).clear();
+					isReadingAtMessageOrigin = false;
+					break;
+				}
+			}
+			else
+			{
+				int messageBytesRequired = messageLength - messageBytesReceived;
+				if(messageBytesRequired == m_buffer.remaining())
+				{
+					m_buffer.get(m_message, messageBytesReceived, messageBytesRequired);                    			
+					((java.nio.Buffer)m_buffer).clear();
 	            			
-	                		messageReceivedHandler.accept(m_message);
-	            			m_message = null;
+					messageReceivedHandler.accept(m_message);
+					m_message = null;
 	
-	            			isReadingAtMessageOrigin = true;
-	            			break;
-	                	}
-	                	else if(messageBytesRequired > m_buffer.remaining())
-	                	{
-	                		int bytesReceived = m_buffer.remaining();                		
-	            			m_buffer.get(m_message, messageBytesReceived, bytesReceived);            
-	            			((java.nio.Buffer)m_buffer).clear();
+					isReadingAtMessageOrigin = true;
+					break;
+				}
+				else if(messageBytesRequired > m_buffer.remaining())
+				{
+					int bytesReceived = m_buffer.remaining();                		
+					m_buffer.get(m_message, messageBytesReceived, bytesReceived);            
+					((java.nio.Buffer)m_buffer).clear();
 	            			
-	                		messageBytesReceived = messageBytesReceived + bytesReceived;
-	                		break;
-	                	}
-	                	else // messageBytesRequired < m_buffer.remaining()
-	                	{
-	                		m_buffer.get(m_message, messageBytesReceived, messageBytesRequired); 
+					messageBytesReceived = messageBytesReceived + bytesReceived;
+					break;
+				}
+				else // messageBytesRequired < m_buffer.remaining()
+				{
+					m_buffer.get(m_message, messageBytesReceived, messageBytesRequired); 
 	                		
-	                		messageReceivedHandler.accept(m_message);
-	            			m_message = null;
+					messageReceivedHandler.accept(m_message);
+					m_message = null;
 	            			
-	            			isReadingAtMessageOrigin = true;
-	                	}
-	                }
-	            }
+					isReadingAtMessageOrigin = true;
+				}
 			}
 		}
+	}
+	
+	private void onInputReady()
+	{
+		if(m_buffer == null)
+			return;
+		try
+		{
+			int bytesRead = socketChannel.read(m_buffer);
+			if (bytesRead == -1)
+			{
+				if(isClosed == false)
+				{
+					networkErrorHandler.accept(new NetworkErrorSoftnetException("The softnet server closed the connection."));
+					closeSocketChannel();
+				}
+				releaseInputBuffers();
+				return;
+			}
+			
+			if(bytesRead == 0)
+				return;
+			
+			((java.nio.Buffer)m_buffer).flip();
+			processInput();
+		}
 		catch(FormatException ex)
 		{			
 			formatErrorHandler.run();
@@ -206,9 +308,36 @@ public class MsgSocket
 		}
 		catch(IOException ex)
 		{
-			networkErrorHandler.accept(new NetworkErrorSoftnetException(ex.getMessage()));
+			if(isClosed == false)
+				networkErrorHandler.accept(new NetworkErrorSoftnetException(ex.getMessage()));
 			closeSocketChannel();
 		}
+		
+		if(socketChannel.isOpen() == false)
+			releaseInputBuffers();
+	}
+	
+	private void onSelectorFailure(Exception ex)
+	{
+		synchronized(mutex)
+		{
+			if(isSelectorFailed)
+				return;
+			isSelectorFailed = true;
+		}
+		if(isClosed == false)
+			networkErrorHandler.accept(new NetworkErrorSoftnetException(ex.getMessage()));
+		closeSocketChannel();
+		releaseInputBuffers();
+	}
+	
+	private void releaseInputBuffers()
+	{
+		if(m_buffer != null)
+		{
+			BufferPool.getShared().release(m_buffer);
+			m_buffer = null;
+		}
 	}
 		
 	private int decodeLength(int lengthBytes) throws FormatException
@@ -268,24 +397,51 @@ public class MsgSocket
 
 	public void send(SoftnetMessage message)
 	{	
-		ByteBuffer msg = ByteBuffer.wrap(message.buffer, message.offset, message.length);
+		enqueue(ByteBuffer.wrap(message.buffer, message.offset, message.length));
+	}
+		
+	public void send(byte[] buffer, int offset, int length)
+	{		
+		enqueue(ByteBuffer.wrap(buffer, offset, length));
+	}
+	
+	public void send(SoftnetMessage[] messages)
+	{
+		if(messages.length == 0)
+			return;
+		
+		ByteBuffer[] batch;
 		synchronized(mutex)
         {
-			if(isClosed) 
+			if(isClosed)
 				return;
+			
+			for(SoftnetMessage message: messages)
+				outputMessageQueue.add(ByteBuffer.wrap(message.buffer, message.offset, message.length));
+			
             if (isSending)
-            {
-                outputMessageQueue.add(msg);
                 return;                    
+            isSending = true;
+            
+            if(isFlushDelayed())
+            {
+            	scheduleFlush();
+            	return;
             }
-            isSending = true;            
+            batch = drainOutputQueue();
         }
-		send(msg);
+		send(batch, 0);
 	}
-		
-	public void send(byte[] buffer, int offset, int length)
-	{		
-		ByteBuffer msg = ByteBuffer.wrap(buffer, offset, length);
+	
+	private static final int MaxBatchMessages = 256;
+	private static final int DefaultMaxBatchBytes = 65536;
+	
+	private WriteCoalescing writeCoalescing = null;
+	private ByteBuffer[] pendingOutputBatch = null;
+	private int pendingOutputOffset = 0;
+	
+	private void enqueue(ByteBuffer msg)
+	{
 		synchronized(mutex)
         {
 			if(isClosed)
@@ -298,17 +454,88 @@ public class MsgSocket
             }
             
             isSending = true;
+            
+            if(isFlushDelayed())
+            {
+            	outputMessageQueue.add(msg);
+            	scheduleFlush();
+            	return;
+            }
         }
-		send(msg);
+		send(new ByteBuffer[] { msg }, 0);
+	}
+	
+	private boolean isFlushDelayed()
+	{
+		return writeCoalescing != null && writeCoalescing.getFlushDelayMillis() > 0;
+	}
+	
+	private void scheduleFlush()
+	{
+		writeCoalescing.scheduleFlush(new Runnable()
+		{
+			public void run() { flush(); }
+		}, writeCoalescing.getFlushDelayMillis());
+	}
+	
+	private void flush()
+	{
+		ByteBuffer[] batch;
+		synchronized(mutex)
+		{
+			batch = drainOutputQueue();
+		}
+		send(batch, 0);
+	}
+	
+	private ByteBuffer[] drainOutputQueue()
+	{
+		int maxBatchBytes = writeCoalescing != null ? writeCoalescing.getMaxBatchBytes() : DefaultMaxBatchBytes;
+		int batchSize = 0;
+		long batchBytes = 0;
+		for(ByteBuffer msg: outputMessageQueue)
+		{
+			if(batchSize > 0 && (batchBytes + msg.remaining() > maxBatchBytes || batchSize == MaxBatchMessages))
+				break;
+			batchBytes += msg.remaining();
+			batchSize++;
+		}
+		
+		ByteBuffer[] batch = new ByteBuffer[batchSize];
+		for(int i = 0; i < batchSize; i++)
+			batch[i] = outputMessageQueue.remove();
+		return batch;
 	}
 	
-	private void send(ByteBuffer message)
+	private void send(ByteBuffer[] batch, int offset)
 	{
 		try		
 		{
 			while(isSending)
-			{				
-				socketChannel.write(message);
+			{
+				if(batch.length - offset == 1)
+					socketChannel.write(batch[offset]);
+				else
+					socketChannel.write(batch, offset, batch.length - offset);
+				int completedOffset = offset;
+				while(offset < batch.length && batch[offset].hasRemaining() == false)
+					offset++;
+				if(writeCoalescing != null)
+					writeCoalescing.onWritten(offset - completedOffset);
+				
+				if(offset < batch.length)
+				{
+					if(selectorLoop == null)
+						continue;
+					
+					synchronized(mutex)
+					{
+						pendingOutputBatch = batch;
+						pendingOutputOffset = offset;
+					}
+					setInterestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
 				
 				synchronized(mutex)
                 {
@@ -322,7 +549,8 @@ public class MsgSocket
                         }                        	
                         return;
                     }
-                    message = outputMessageQueue.remove();
+                    batch = drainOutputQueue();
+                    offset = 0;
                 }
 			}
 		}
@@ -333,6 +561,36 @@ public class MsgSocket
 		}
 	}
 	
+	private void onOutputReady()
+	{
+		ByteBuffer[] batch;
+		int offset;
+		synchronized(mutex)
+		{
+			batch = pendingOutputBatch;
+			offset = pendingOutputOffset;
+			pendingOutputBatch = null;
+		}
+		
+		if(batch == null)
+			return;
+		
+		setInterestOps(SelectionKey.OP_READ);
+		send(batch, offset);
+	}
+	
+	private void setInterestOps(final int interestOps)
+	{
+		selectorLoop.execute(new Runnable()
+		{
+			public void run()
+			{
+				if(selectionKey != null && selectionKey.isValid())
+					selectionKey.interestOps(interestOps);
+			}
+		}, selectorHandler);
+	}
+	
 	private void closeSocketChannel()
 	{
 		try
@@ -341,4 +599,4 @@ public class MsgSocket
 		}
 		catch(IOException ex) {}
 	}
-}
\ No newline at end of file
+}
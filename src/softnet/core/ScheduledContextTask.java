@@ -36,8 +36,16 @@ public class ScheduledContextTask extends ScheduledTask
 	public boolean cancel()
     {	
 		if (this.context.isClosed())
+		{
+			removeFromTimer();
             return false;
-		return super.completed.compareAndSet(0, 1);
+		}
+		if(super.completed.compareAndSet(0, 1))
+		{
+			removeFromTimer();
+			return true;
+		}
+		return false;
     }
 
 	@Override
@@ -31,14 +31,37 @@ public class ScheduledTask
 	}
 
 	protected AtomicInteger completed;
+	private volatile TimingWheel.TimerEntry timerEntry = null;
 
 	public boolean cancel()
     {	
-		return completed.compareAndSet(0, 1);
+		if(completed.compareAndSet(0, 1))
+		{
+			removeFromTimer();
+			return true;
+		}
+		return false;
     }
 
     public boolean complete()
     {    	
     	return completed.compareAndSet(0, 1);
     }
+
+    void setTimerEntry(TimingWheel.TimerEntry entry)
+    {
+    	timerEntry = entry;
+    	if(completed.get() != 0)
+    		removeFromTimer();
+    }
+    
+    protected void removeFromTimer()
+    {
+    	TimingWheel.TimerEntry entry = timerEntry;
+    	if(entry != null)
+    	{
+    		timerEntry = null;
+    		entry.cancel();
+    	}
+    }
 }
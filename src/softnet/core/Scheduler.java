@@ -16,14 +16,13 @@
 
 package softnet.core;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
 public class Scheduler
 {
+	private static final long TickMillis = 10;
+	
 	private ThreadPool threadPool;
-	private ScheduledExecutorService scheduledThreadPool;	
+	private TimingWheel timingWheel;	
+	private boolean isShared = false;
 	private boolean isShutdown = false;
 	
 	public Scheduler(ThreadPool threadPool)
@@ -31,29 +30,41 @@ public class Scheduler
 		this.threadPool = threadPool;
 	}
 	
+	public Scheduler(ThreadPool threadPool, TimingWheel sharedTimingWheel)
+	{
+		this.threadPool = threadPool;
+		this.timingWheel = sharedTimingWheel;
+		isShared = true;
+	}
+	
 	public void init()
 	{
-		scheduledThreadPool = Executors.newScheduledThreadPool(1);
+		if(isShared == false)
+			timingWheel = new TimingWheel(TickMillis, "softnet-scheduler");
 	}
 
 	public void add(ScheduledTask task, long delaySeconds)
 	{
-		try
-		{
-			scheduledThreadPool.schedule(new STaskWrapper(task, threadPool), delaySeconds, TimeUnit.SECONDS);
-		}
-		catch(java.util.concurrent.RejectedExecutionException e)
-		{
-			if(isShutdown == true)
-				return;
-			throw e;
-		}		
+		addMillis(task, delaySeconds * 1000);
+	}
+	
+	public void addMillis(ScheduledTask task, long delayMillis)
+	{
+		if(isShutdown)
+			return;
+		task.setTimerEntry(timingWheel.schedule(new STaskWrapper(task, threadPool), delayMillis));
 	}
 	
 	public void shutdown()
 	{
 		isShutdown = true;
-		scheduledThreadPool.shutdownNow();
+		if(isShared == false)
+			timingWheel.shutdown();
+	}
+	
+	public static TimingWheel createTimingWheel(String threadName)
+	{
+		return new TimingWheel(TickMillis, threadName);
 	}
 }
 
@@ -0,0 +1,30 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.nio.channels.SelectionKey;
+
+// All callbacks are invoked on the thread of the SelectorLoop the channel is registered with.
+// They must not block, as every other channel of the loop waits for them to return.
+// Once the loop has terminated, onFailure may also be called on the thread that submitted work to it.
+public interface SelectorHandler
+{
+	void onRegistered(SelectionKey selectionKey);
+	void onReadable();
+	void onWritable();
+	void onFailure(Exception ex);
+}
@@ -0,0 +1,239 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SelectorLoop
+{
+	private Selector selector;
+	private Thread thread;
+	private ConcurrentLinkedQueue<LoopTask> taskQueue;
+	private volatile boolean isShutdown = false;
+	private volatile boolean isTerminated = false;
+	
+	public SelectorLoop(String threadName) throws IOException
+	{
+		selector = Selector.open();
+		taskQueue = new ConcurrentLinkedQueue<LoopTask>();
+		
+		thread = new Thread(threadName)
+		{
+		    public void run(){
+		    	selectCircle();
+		    }
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public boolean inLoop()
+	{
+		return Thread.currentThread() == thread;
+	}
+	
+	public void execute(Runnable task)
+	{
+		execute(task, null);
+	}
+	
+	// A RuntimeException thrown by the task is passed to the owner's onFailure. Tasks without an owner
+	// report it to the loop thread's uncaught exception handler.
+	public void execute(Runnable task, SelectorHandler owner)
+	{
+		if(inLoop())
+		{
+			runTask(new LoopTask(task, owner));
+			return;
+		}
+		
+		if(isTerminated)
+		{
+			if(owner != null)
+				owner.onFailure(new IOException("The selector loop has terminated."));
+			return;
+		}
+		
+		taskQueue.add(new LoopTask(task, owner));
+		selector.wakeup();
+		
+		if(isTerminated)
+			failPendingTasks(new IOException("The selector loop has terminated."));
+	}
+
+	public void register(final SelectableChannel channel, final int interestOps, final SelectorHandler handler)
+	{
+		execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					SelectionKey selectionKey = channel.register(selector, interestOps, handler);
+					handler.onRegistered(selectionKey);
+				}
+				catch(ClosedChannelException ex)
+				{
+					handler.onFailure(ex);
+				}
+			}
+		}, handler);
+	}
+	
+	public void shutdown()
+	{
+		isShutdown = true;
+		selector.wakeup();
+	}
+	
+	private void selectCircle()
+	{
+		Exception failure = null;
+		try
+		{
+			while(isShutdown == false)
+			{
+				selector.select();
+				runTasks();
+				
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+				while(iterator.hasNext())
+				{
+					SelectionKey selectionKey = iterator.next();
+					iterator.remove();
+					processKey(selectionKey);
+				}
+			}
+		}
+		catch(IOException ex)
+		{
+			failure = ex;
+		}
+		catch(RuntimeException ex)
+		{
+			failure = ex;
+		}
+		finally
+		{
+			isTerminated = true;
+			if(failure == null)
+				failure = new IOException("The selector loop has been shut down.");
+			failPendingTasks(failure);
+			closeSelector(failure);
+		}
+	}
+	
+	private void processKey(SelectionKey selectionKey)
+	{
+		SelectorHandler handler = (SelectorHandler)selectionKey.attachment();
+		try
+		{
+			if(selectionKey.isValid() && selectionKey.isReadable())
+				handler.onReadable();
+			if(selectionKey.isValid() && selectionKey.isWritable())
+				handler.onWritable();
+		}
+		catch(java.nio.channels.CancelledKeyException ex) {}
+		catch(RuntimeException ex)
+		{
+			selectionKey.cancel();
+			handler.onFailure(ex);
+		}
+	}
+	
+	private void runTasks()
+	{
+		LoopTask loopTask;
+		while((loopTask = taskQueue.poll()) != null)
+			runTask(loopTask);
+	}
+	
+	private void runTask(LoopTask loopTask)
+	{
+		try
+		{
+			loopTask.task.run();
+		}
+		catch(RuntimeException ex)
+		{
+			if(loopTask.owner != null)
+				loopTask.owner.onFailure(ex);
+			else
+				Threads.reportException(ex);
+		}
+	}
+	
+	private void failPendingTasks(Exception failure)
+	{
+		LoopTask loopTask;
+		while((loopTask = taskQueue.poll()) != null)
+		{
+			if(loopTask.owner != null)
+				loopTask.owner.onFailure(failure);
+		}
+	}
+	
+	// Every handler still registered learns that its channel is closed along with the selector.
+	private void closeSelector(Exception failure)
+	{
+		for(SelectionKey selectionKey: selector.keys())
+		{
+			try
+			{
+				selectionKey.channel().close();
+			}
+			catch(IOException ex) {}
+			
+			SelectorHandler handler = (SelectorHandler)selectionKey.attachment();
+			if(handler != null)
+			{
+				try
+				{
+					handler.onFailure(failure);
+				}
+				catch(RuntimeException ex)
+				{
+					Threads.reportException(ex);
+				}
+			}
+		}
+		
+		try
+		{
+			selector.close();
+		}
+		catch(IOException ex) {}
+	}
+	
+	private static class LoopTask
+	{
+		public final Runnable task;
+		public final SelectorHandler owner;
+		
+		public LoopTask(Runnable task, SelectorHandler owner)
+		{
+			this.task = task;
+			this.owner = owner;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SelectorLoopGroup
+{
+	private SelectorLoop[] loops;
+	private AtomicInteger nextIndex;
+	
+	public SelectorLoopGroup(int loopCount) throws IOException
+	{
+		if(loopCount < 1)
+			throw new IllegalArgumentException("The value of 'loopCount' must be greater than zero.");
+		
+		loops = new SelectorLoop[loopCount];
+		nextIndex = new AtomicInteger(0);
+		try
+		{
+			for(int i = 0; i < loopCount; i++)
+				loops[i] = new SelectorLoop("softnet-selector-" + i);
+		}
+		catch(IOException ex)
+		{
+			shutdown();
+			throw ex;
+		}
+	}
+	
+	public SelectorLoop next()
+	{
+		int index = nextIndex.getAndIncrement() & 0x7FFFFFFF;
+		return loops[index % loops.length];
+	}
+	
+	public int getLoopCount()
+	{
+		return loops.length;
+	}
+	
+	public void shutdown()
+	{
+		for(SelectorLoop loop: loops)
+		{
+			if(loop != null)
+				loop.shutdown();
+		}
+	}
+	
+	private static SelectorLoopGroup sharedGroup = null;
+	
+	public static synchronized SelectorLoopGroup getShared()
+	{
+		return sharedGroup;
+	}
+	
+	public static synchronized void setShared(SelectorLoopGroup group)
+	{
+		sharedGroup = group;
+	}
+}
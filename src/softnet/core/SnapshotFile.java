@@ -0,0 +1,207 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import softnet.exceptions.*;
+
+public class SnapshotFile
+{
+	private static final int SnapshotMagic = 0x534E5031;
+	private static final int MaxSnapshotSize = 67108864;
+
+	private final File file;
+	private final File tempFile;
+	private Object mutex = new Object();
+	private Encoder pendingEncoder = null;
+	private boolean isWriterScheduled = false;
+	
+	public interface Encoder
+	{
+		byte[] encode();
+	}
+	
+	public SnapshotFile(String filePath)
+	{
+		file = new File(filePath);
+		tempFile = new File(filePath + ".tmp");
+	}
+	
+	public String getPath()
+	{
+		return file.getPath();
+	}
+	
+	public byte[] read() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		if(file.exists() == false)
+			return null;
+		
+		try
+		{
+			DataInputStream input = new DataInputStream(new FileInputStream(file));
+			try
+			{
+				if(input.readInt() != SnapshotMagic)
+					throw new PersistenceDataFormatSoftnetException("The snapshot file has an invalid format.");
+				
+				int size = input.readInt();
+				if(size < 0 || size > MaxSnapshotSize)
+					throw new PersistenceDataFormatSoftnetException("The snapshot file has an invalid format.");
+				
+				int checksum = input.readInt();
+				byte[] data = new byte[size];
+				input.readFully(data);
+				
+				CRC32 crc = new CRC32();
+				crc.update(data, 0, size);
+				if((int)crc.getValue() != checksum)
+					throw new PersistenceDataFormatSoftnetException("The snapshot file is corrupted.");
+				
+				return data;
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch(EOFException ex)
+		{
+			throw new PersistenceDataFormatSoftnetException("The snapshot file is truncated.");
+		}
+		catch(IOException ex)
+		{
+			throw new PersistenceIOSoftnetException(ex.getMessage());
+		}
+		catch(SecurityException ex)
+		{
+			throw new PersistenceIOSoftnetException(ex.getMessage());
+		}
+	}
+	
+	public void write(byte[] data) throws PersistenceIOSoftnetException
+	{
+		try
+		{
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, data.length);
+			
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length + 12);
+			DataOutputStream output = new DataOutputStream(buffer);
+			output.writeInt(SnapshotMagic);
+			output.writeInt(data.length);
+			output.writeInt((int)crc.getValue());
+			output.write(data);
+			
+			FileOutputStream fileStream = new FileOutputStream(tempFile);
+			try
+			{
+				buffer.writeTo(fileStream);
+				fileStream.getFD().sync();
+			}
+			finally
+			{
+				fileStream.close();
+			}
+			
+			try
+			{
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException ex)
+			{
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch(IOException ex)
+		{
+			throw new PersistenceIOSoftnetException(ex.getMessage());
+		}
+		catch(SecurityException ex)
+		{
+			throw new PersistenceIOSoftnetException(ex.getMessage());
+		}
+	}
+	
+	// Marks the snapshot dirty. The encoder is called on the thread pool right before the write, so any number
+	// of changes made while a write is pending or in progress result in a single encoding of the latest state.
+	// A snapshot that fails to be written is deleted.
+	public void writeLater(Encoder encoder, ThreadPool threadPool)
+	{
+		synchronized(mutex)
+		{
+			pendingEncoder = encoder;
+			if(isWriterScheduled)
+				return;
+			isWriterScheduled = true;
+		}
+		
+		threadPool.execute(new Runnable()
+		{
+			public void run() { writePending(); }
+		});
+	}
+	
+	private void writePending()
+	{
+		while(true)
+		{
+			Encoder encoder;
+			synchronized(mutex)
+			{
+				encoder = pendingEncoder;
+				pendingEncoder = null;
+				if(encoder == null)
+				{
+					isWriterScheduled = false;
+					return;
+				}
+			}
+			
+			try
+			{
+				write(encoder.encode());
+			}
+			catch(PersistenceIOSoftnetException ex)
+			{
+				delete();
+			}
+		}
+	}
+	
+	public void delete()
+	{
+		try
+		{
+			file.delete();
+			tempFile.delete();
+		}
+		catch(SecurityException ex) {}
+	}
+}
@@ -17,23 +17,37 @@
 package softnet.core;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class ThreadPool
 {
 	private ExecutorService cachedThreadPool;
+	private FairExecutor sharedExecutor = null;
+	private FairExecutor.TaskQueue taskQueue = null;
 	private boolean shutdown = false;
 	
+	public ThreadPool() {}
+	
+	public ThreadPool(FairExecutor sharedExecutor)
+	{
+		this.sharedExecutor = sharedExecutor;
+	}
+	
 	public void init()
 	{
-		cachedThreadPool = Executors.newCachedThreadPool();
+		if(sharedExecutor != null)
+			taskQueue = sharedExecutor.createQueue();
+		else
+			cachedThreadPool = Threads.newCachedExecutor();
 	}
 	
 	public void execute(Runnable runnable)
 	{
 		try
 		{
-			cachedThreadPool.execute(runnable);
+			if(taskQueue != null)
+				taskQueue.execute(runnable);
+			else
+				cachedThreadPool.execute(runnable);
 		}
 		catch(java.util.concurrent.RejectedExecutionException e)
 		{
@@ -46,6 +60,9 @@ public class ThreadPool
 	public void shutdown()
 	{
 		shutdown = true;
-		cachedThreadPool.shutdownNow();
+		if(taskQueue != null)
+			taskQueue.close();
+		else
+			cachedThreadPool.shutdownNow();
 	}	
 }
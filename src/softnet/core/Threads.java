@@ -0,0 +1,112 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class Threads
+{
+	private static final Method startVirtualThreadMethod;
+	private static final Method newVirtualThreadExecutorMethod;
+	private static volatile boolean virtualMode = false;
+	
+	static
+	{
+		Method startMethod = null;
+		Method executorMethod = null;
+		try
+		{
+			startMethod = Thread.class.getMethod("startVirtualThread", Runnable.class);
+			executorMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch(NoSuchMethodException ex)
+		{
+			startMethod = null;
+			executorMethod = null;
+		}
+		catch(SecurityException ex)
+		{
+			startMethod = null;
+			executorMethod = null;
+		}
+		startVirtualThreadMethod = startMethod;
+		newVirtualThreadExecutorMethod = executorMethod;
+	}
+	
+	public static boolean isVirtualThreadSupported()
+	{
+		return startVirtualThreadMethod != null;
+	}
+	
+	public static boolean isVirtualMode()
+	{
+		return virtualMode;
+	}
+	
+	public static void setVirtualMode(boolean value)
+	{
+		if(value && startVirtualThreadMethod == null)
+			throw new IllegalStateException("Virtual threads are not supported by the Java runtime.");
+		virtualMode = value;
+	}
+	
+	public static void start(Runnable runnable)
+	{
+		if(virtualMode)
+		{
+			try
+			{
+				startVirtualThreadMethod.invoke(null, runnable);
+				return;
+			}
+			catch(IllegalAccessException ex) {}
+			catch(InvocationTargetException ex)
+			{
+				if(ex.getCause() instanceof RuntimeException)
+					throw (RuntimeException)ex.getCause();
+				if(ex.getCause() instanceof Error)
+					throw (Error)ex.getCause();
+			}
+		}
+		new Thread(runnable).start();
+	}
+	
+	// Hands an exception thrown by a task to the current thread's uncaught exception handler
+	// without terminating the thread that runs the task.
+	public static void reportException(RuntimeException exception)
+	{
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+	}
+	
+	public static ExecutorService newCachedExecutor()
+	{
+		if(virtualMode)
+		{
+			try
+			{
+				return (ExecutorService)newVirtualThreadExecutorMethod.invoke(null);
+			}
+			catch(IllegalAccessException ex) {}
+			catch(InvocationTargetException ex) {}
+		}
+		return Executors.newCachedThreadPool();
+	}
+}
@@ -0,0 +1,254 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.util.ArrayList;
+
+public class TimingWheel
+{
+	private static final int WheelSize = 512;
+	private static final int WheelMask = WheelSize - 1;
+	
+	private final long tickMillis;
+	private final long startTime;
+	private final TimerEntry[] buckets;
+	private final Object mutex = new Object();
+	private long currentTick = 0;
+	private int entryCount = 0;
+	private long wakeTick = Long.MAX_VALUE;
+	private boolean isShutdown = false;
+	private Thread thread;
+	
+	public TimingWheel(long tickMillis, String threadName)
+	{
+		if(tickMillis < 1)
+			throw new IllegalArgumentException("The value of 'tickMillis' must be greater than zero.");
+		
+		this.tickMillis = tickMillis;
+		startTime = SystemClock.milliSeconds();
+		buckets = new TimerEntry[WheelSize];
+		
+		thread = new Thread(threadName)
+		{
+		    public void run(){
+		    	tickCircle();
+		    }
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public TimerEntry schedule(Runnable action, long delayMillis)
+	{
+		if(delayMillis < 0)
+			delayMillis = 0;
+		
+		TimerEntry entry = new TimerEntry(action);
+		long elapsedMillis = SystemClock.milliSeconds() - startTime;
+		long nowTick = elapsedMillis / tickMillis;
+		long deadlineTick = (elapsedMillis + delayMillis + tickMillis - 1) / tickMillis;
+		
+		synchronized(mutex)
+		{
+			if(isShutdown)
+				return entry;
+			
+			if(nowTick < currentTick)
+				nowTick = currentTick;
+			if(deadlineTick <= nowTick)
+				deadlineTick = nowTick + 1;
+			entry.deadlineTick = deadlineTick;
+			link(entry, (int)(deadlineTick & WheelMask));
+			
+			entryCount++;
+			if(deadlineTick < wakeTick)
+				mutex.notify();
+		}
+		return entry;
+	}
+	
+	public int size()
+	{
+		synchronized(mutex)
+		{
+			return entryCount;
+		}
+	}
+	
+	public void shutdown()
+	{
+		synchronized(mutex)
+		{
+			isShutdown = true;
+			for(int i = 0; i < WheelSize; i++)
+				buckets[i] = null;
+			entryCount = 0;
+			mutex.notify();
+		}
+	}
+	
+	private void cancel(TimerEntry entry)
+	{
+		synchronized(mutex)
+		{
+			if(entry.bucketIndex < 0 || isShutdown)
+				return;
+			unlink(entry);
+			entryCount--;
+		}
+	}
+	
+	private void tickCircle()
+	{
+		ArrayList<TimerEntry> expiredEntries = new ArrayList<TimerEntry>();
+		try
+		{
+			while(true)
+			{
+				synchronized(mutex)
+				{
+					// Sleeps until the earliest deadline rather than waking on every tick. Scheduling an entry
+					// with an earlier deadline wakes the thread up.
+					while(true)
+					{
+						if(isShutdown)
+							return;
+						
+						if(entryCount == 0)
+						{
+							wakeTick = Long.MAX_VALUE;
+							mutex.wait();
+							continue;
+						}
+						
+						wakeTick = findEarliestDeadline();
+						long sleepMillis = startTime + wakeTick * tickMillis - SystemClock.milliSeconds();
+						if(sleepMillis <= 0)
+							break;
+						mutex.wait(sleepMillis);
+					}
+					
+					long targetTick = (SystemClock.milliSeconds() - startTime) / tickMillis;
+					long ticks = targetTick - currentTick;
+					if(ticks > WheelSize)
+						ticks = WheelSize;
+					
+					for(long i = 1; i <= ticks; i++)
+						collectExpired((int)((currentTick + i) & WheelMask), targetTick, expiredEntries);
+					
+					if(targetTick > currentTick)
+						currentTick = targetTick;
+				}
+				
+				for(TimerEntry entry: expiredEntries)
+				{
+					try
+					{
+						entry.action.run();
+					}
+					catch(RuntimeException ex)
+					{
+						Threads.reportException(ex);
+					}
+				}
+				expiredEntries.clear();
+			}
+		}
+		catch(InterruptedException ex) {}
+	}
+	
+	// Deadlines within one rotation are found in the bucket of their tick, so the scan stops at the first match.
+	// Only entries a rotation or more away require the whole wheel to be scanned.
+	private long findEarliestDeadline()
+	{
+		long earliestTick = Long.MAX_VALUE;
+		for(long tick = currentTick + 1; tick <= currentTick + WheelSize; tick++)
+		{
+			TimerEntry entry = buckets[(int)(tick & WheelMask)];
+			while(entry != null)
+			{
+				if(entry.deadlineTick <= tick)
+					return entry.deadlineTick;
+				if(entry.deadlineTick < earliestTick)
+					earliestTick = entry.deadlineTick;
+				entry = entry.next;
+			}
+		}
+		return earliestTick;
+	}
+	
+	private void collectExpired(int bucketIndex, long targetTick, ArrayList<TimerEntry> expiredEntries)
+	{
+		TimerEntry entry = buckets[bucketIndex];
+		while(entry != null)
+		{
+			TimerEntry next = entry.next;
+			if(entry.deadlineTick <= targetTick)
+			{
+				unlink(entry);
+				entryCount--;
+				expiredEntries.add(entry);
+			}
+			entry = next;
+		}
+	}
+	
+	private void link(TimerEntry entry, int bucketIndex)
+	{
+		TimerEntry head = buckets[bucketIndex];
+		entry.next = head;
+		entry.prev = null;
+		if(head != null)
+			head.prev = entry;
+		buckets[bucketIndex] = entry;
+		entry.bucketIndex = bucketIndex;
+	}
+	
+	private void unlink(TimerEntry entry)
+	{
+		if(entry.prev != null)
+			entry.prev.next = entry.next;
+		else
+			buckets[entry.bucketIndex] = entry.next;
+		
+		if(entry.next != null)
+			entry.next.prev = entry.prev;
+		
+		entry.prev = null;
+		entry.next = null;
+		entry.bucketIndex = -1;
+	}
+	
+	public class TimerEntry
+	{
+		private final Runnable action;
+		private TimerEntry prev = null;
+		private TimerEntry next = null;
+		private int bucketIndex = -1;
+		private long deadlineTick;
+		
+		private TimerEntry(Runnable action)
+		{
+			this.action = action;
+		}
+		
+		public void cancel()
+		{
+			TimingWheel.this.cancel(this);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WriteCoalescing
+{
+	private final Scheduler scheduler;
+	private volatile int maxBatchBytes = 65536;
+	private volatile int flushDelayMillis = 0;
+	private final AtomicLong writeCount = new AtomicLong();
+	private final AtomicLong messageCount = new AtomicLong();
+	
+	public WriteCoalescing(Scheduler scheduler)
+	{
+		this.scheduler = scheduler;
+	}
+	
+	public void setLimits(int maxBatchBytes, int flushDelayMillis)
+	{
+		if(maxBatchBytes < 1024 || maxBatchBytes > 4194304)
+			throw new IllegalArgumentException("The value of 'maxBatchBytes' must be in the range [1024, 4194304].");
+		if(flushDelayMillis < 0 || flushDelayMillis > 100)
+			throw new IllegalArgumentException("The value of 'flushDelayMillis' must be in the range [0, 100].");
+		this.maxBatchBytes = maxBatchBytes;
+		this.flushDelayMillis = flushDelayMillis;
+	}
+	
+	public int getMaxBatchBytes()
+	{
+		return maxBatchBytes;
+	}
+	
+	public int getFlushDelayMillis()
+	{
+		return flushDelayMillis;
+	}
+	
+	public long getWriteCount()
+	{
+		return writeCount.get();
+	}
+	
+	public long getMessageCount()
+	{
+		return messageCount.get();
+	}
+	
+	void scheduleFlush(final Runnable flushTask, int delayMillis)
+	{
+		Acceptor<Object> acceptor = new Acceptor<Object>()
+		{
+			public void accept(Object noData) { flushTask.run(); }
+		};
+		scheduler.addMillis(new ScheduledTask(acceptor, null), delayMillis);
+	}
+	
+	void onWritten(int messages)
+	{
+		writeCount.incrementAndGet();
+		messageCount.addAndGet(messages);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package softnet.service;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import softnet.MembershipUser;
+
+class AccessDecisionCache
+{
+	public AccessDecisionCache(Membership membership)
+	{
+		this.membership = membership;
+		decisions = new ConcurrentHashMap<Object, ConcurrentHashMap<Long, Boolean>>();
+		generation = 0;
+	}
+	
+	private static final long GuestKey = -1;
+	private static final long StatelessGuestKey = -2;
+	
+	private Membership membership;
+	private ConcurrentHashMap<Object, ConcurrentHashMap<Long, Boolean>> decisions;
+	private volatile long generation;
+	
+	public boolean isAllowed(Object resource, BitSet roleSet, GuestAccess guestAccess, MembershipUser user)
+	{
+		long userKey = user.isStatelessGuest() ? StatelessGuestKey : (user.isGuest() ? GuestKey : user.getId());
+		
+		ConcurrentHashMap<Long, Boolean> resourceDecisions = decisions.get(resource);
+		if(resourceDecisions != null)
+		{
+			Boolean decision = resourceDecisions.get(userKey);
+			if(decision != null)
+				return decision;
+		}
+		else
+		{
+			resourceDecisions = new ConcurrentHashMap<Long, Boolean>();
+			ConcurrentHashMap<Long, Boolean> existing = decisions.putIfAbsent(resource, resourceDecisions);
+			if(existing != null)
+				resourceDecisions = existing;
+		}
+		
+		long currentGeneration = generation;
+		boolean allowed = evaluate(roleSet, guestAccess, user);
+		resourceDecisions.put(userKey, allowed);
+		if(currentGeneration != generation)
+			resourceDecisions.remove(userKey);
+		return allowed;
+	}
+	
+	public void invalidateUser(long userId)
+	{
+		generation++;
+		for(ConcurrentHashMap<Long, Boolean> resourceDecisions: decisions.values())
+			resourceDecisions.remove(userId);
+	}
+	
+	public void invalidateGuests()
+	{
+		generation++;
+		for(ConcurrentHashMap<Long, Boolean> resourceDecisions: decisions.values())
+		{
+			resourceDecisions.remove(GuestKey);
+			resourceDecisions.remove(StatelessGuestKey);
+		}
+	}
+	
+	public void invalidateResource(Object resource)
+	{
+		decisions.remove(resource);
+	}
+	
+	public void clear()
+	{
+		generation++;
+		decisions.clear();
+	}
+	
+	private boolean evaluate(BitSet roleSet, GuestAccess guestAccess, MembershipUser user)
+	{
+		if(roleSet != null)
+		{
+			if(user.isGuest())
+				return false;
+			return membership.isInRoles(user, roleSet);
+		}
+		else if(guestAccess != null)
+		{
+			if(guestAccess == GuestAccess.GuestDenied)
+				return user.isGuest() == false;
+			return user.isStatelessGuest() == false;
+		}
+		return true;
+	}
+}
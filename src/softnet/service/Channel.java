@@ -23,5 +23,6 @@ interface Channel
 	void registerComponent(int componentId, MsgAcceptor<Channel> MessageReceivedHandler);
 	void removeComponent(int componentId);
 	void send(SoftnetMessage message);
+	void send(SoftnetMessage[] messages);
 	boolean isClosed();
 }
\ No newline at end of file
@@ -43,6 +43,7 @@ class EndpointConnector
         this.mutex = endpoint_mutex;
         this.threadPool = softnetService.threadPool;
         this.scheduler = softnetService.scheduler;
+        this.writeCoalescing = softnetService.writeCoalescing;
         channelMonitor = new ChannelMonitor();
     }
         
@@ -138,6 +139,7 @@ class EndpointConnector
     private String password;    
     private ThreadPool threadPool;
     private Scheduler scheduler;
+    private WriteCoalescing writeCoalescing;
 
     private Object mutex = new Object();    
     private boolean isClosed = false;
@@ -425,6 +427,7 @@ class EndpointConnector
 				public void accept(Object data) { executePing(data); }
 			};    	    		
 			ScheduledContextTask task = new ScheduledContextTask(acceptor, pingContext, pingContext);    		
+			pingContext.task = task;
 			scheduler.add(task, ping_period);    	
     	}
 
@@ -477,6 +480,7 @@ class EndpointConnector
 				public void accept(Object data) { executePing(data); }
 			};    	    		
 			ScheduledContextTask task = new ScheduledContextTask(acceptor, pingContext, pingContext); 
+			pingContext.task = task;
     		
 			if(isPingSent)
 			{
@@ -587,6 +591,7 @@ class EndpointConnector
 					public void accept(Object data) { executePing(data); }
 				};    	    		
 				ScheduledContextTask task = new ScheduledContextTask(acceptor, pingContext, pingContext);    					
+				pingContext.task = task;
     			
     			if(isPingSent)
     			{
@@ -682,6 +687,7 @@ class EndpointConnector
 	            					public void accept(Object data) { executeKeepAlive(data); }
 	            				};    	    		
 	            				ScheduledContextTask task2 = new ScheduledContextTask(acceptor2, keepAliveContext, keepAliveContext);	            				
+	            				keepAliveContext.task = task2;
 	            				scheduler.add(task2, 300 - last_output_message_age);           
             				}
             			}
@@ -733,7 +739,8 @@ class EndpointConnector
     	
     	private class PingContext implements STaskContext
     	{
-    		private boolean is_closed = false;    		
+    		private boolean is_closed = false;
+    		public ScheduledContextTask task = null;
     		public boolean isClosed()
     		{
     			return is_closed;
@@ -741,12 +748,15 @@ class EndpointConnector
     		public void close()
     		{
     			is_closed = true;
+    			if(task != null)
+    				task.cancel();
     		}
     	}
     	
     	private class KeepAliveContext implements STaskContext
     	{
-    		private boolean is_closed = false;    		
+    		private boolean is_closed = false;
+    		public ScheduledContextTask task = null;
     		public boolean isClosed()
     		{
     			return is_closed;
@@ -754,6 +764,8 @@ class EndpointConnector
     		public void close()
     		{
     			is_closed = true;
+    			if(task != null)
+    				task.cancel();
     		}
     	}
     }
@@ -826,6 +838,7 @@ class EndpointConnector
 			};		
 			msgSocket.minLength = 2;
 			msgSocket.maxLength = 256;	
+			msgSocket.setWriteCoalescing(writeCoalescing);
 			msgSocket.start();
 			
 			startHandshake();
@@ -854,6 +867,12 @@ class EndpointConnector
     		last_output_message_time = SystemClock.seconds();
     	}
 
+    	public void send(SoftnetMessage[] messages)
+    	{
+    		msgSocket.send(messages);
+    		last_output_message_time = SystemClock.seconds();
+    	}
+
     	public void registerComponent(int componentId, MsgAcceptor<Channel> MessageReceivedCallback)
     	{
     		components[componentId] = MessageReceivedCallback;
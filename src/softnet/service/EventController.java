@@ -18,6 +18,7 @@ package softnet.service;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.UUID;
 
 import softnet.asn.*;
@@ -35,6 +36,7 @@ class EventController
 	}
 	
 	private Object mutex = new Object();
+	private static final long EventDeliveryMillis = Constants.EventDeliverySeconds * 1000L;
 
 	private enum StatusEnum { 
 		Disconnected, Connected, Online
@@ -48,11 +50,16 @@ class EventController
 	private UUID lastStorageUid = null;
 	private Channel channel;
 	private Scheduler scheduler;
-	private ArrayList<String> regularEvents;
+	private EventNameIndex eventNameIndex;
 	private ArrayList<DeliveryAgent> deliveryAgents; 
 	private SuccessiveDeliveryAgent successiveDeliveryAgent;
 	private ServicePersistence servicePersistence;
 	private HashSet<ServiceEventListener> eventListeners;
+	private LinkedList<PendingEvents> pendingEvents = new LinkedList<PendingEvents>();
+	private Runnable commitListener = new Runnable()
+	{
+		public void run() { onCommitCompleted(); }
+	};
 	private long memoryBasedStorageCapacity = 16384;
 	private static final long fileBasedStorageCapacity = 1048576;
 	
@@ -61,47 +68,12 @@ class EventController
 		status = StatusEnum.Disconnected;		
 		eventListeners = new HashSet<ServiceEventListener>(1);
 		
-		regularEvents = new ArrayList<String>();	
+		eventNameIndex = siteStructure.getEventNameIndex();
 		successiveDeliveryAgent = new SuccessiveDeliveryAgent();		
 		
-		int eventIndex = 0;
-		deliveryAgents = new ArrayList<DeliveryAgent>();
-		
-		if(siteStructure.containsReplacingEvents())
-		{
-			ArrayList<SiteStructureAdapter.REvent> rEvents = siteStructure.getReplacingEvents();
-			for(SiteStructureAdapter.REvent rEvent: rEvents)
-			{
-				regularEvents.add(rEvent.name);
-				DeliveryAgent agent = new DeliveryAgent(rEvent.name, eventIndex, 1); 
-				deliveryAgents.add(agent);
-				eventIndex++;
-			}
-		}
-
-		if(siteStructure.containsQueueingEvents())
-		{
-			ArrayList<SiteStructureAdapter.QEvent> qEvents = siteStructure.getQueueingEvents();
-			for(SiteStructureAdapter.QEvent qEvent: qEvents)
-			{
-				regularEvents.add(qEvent.name);
-				DeliveryAgent agent = new DeliveryAgent(qEvent.name, eventIndex, 2); 
-				deliveryAgents.add(agent);
-				eventIndex++;
-			}
-		}
-
-		if(siteStructure.containsPrivateEvents())
-		{
-			ArrayList<SiteStructureAdapter.PEvent> pEvents = siteStructure.getPrivateEvents();
-			for(SiteStructureAdapter.PEvent pEvent: pEvents)
-			{
-				regularEvents.add(pEvent.name);
-				DeliveryAgent agent = new DeliveryAgent(pEvent.name, eventIndex, 4); 
-				deliveryAgents.add(agent);
-				eventIndex++;
-			}
-		}
+		deliveryAgents = new ArrayList<DeliveryAgent>(eventNameIndex.size());
+		for(int id = 0; id < eventNameIndex.size(); id++)
+			deliveryAgents.add(new DeliveryAgent(eventNameIndex.getName(id), id, eventNameIndex.getKind(id)));
 	}
 
 	public void setPersistenceL1()
@@ -223,6 +195,47 @@ class EventController
 
 			this.servicePersistence = servicePersistence;
 			this.servicePersistence.setStorageMode();			
+			if(servicePersistence instanceof ServiceLogPersistence)
+				((ServiceLogPersistence)servicePersistence).startSync(scheduler);
+		}
+	}
+	
+	public void setDeliveryWindow(int windowSize)
+	{
+		if(windowSize < 1 || windowSize > 1024)
+			throw new IllegalArgumentException("The value of 'windowSize' must be in the range [1, 1024].");
+		
+		synchronized(mutex)
+		{
+			if(status != StatusEnum.Disconnected)
+				throw new IllegalStateException("The delivery window cannot be changed while the endpoint is connected.");
+			
+			for(DeliveryAgent agent: deliveryAgents)
+			{
+				if(agent.kind != 1)
+					agent.windowSize = windowSize;
+			}
+		}
+	}
+	
+	public void setDeliveryWindow(String eventName, int windowSize)
+	{
+		if(windowSize < 1 || windowSize > 1024)
+			throw new IllegalArgumentException("The value of 'windowSize' must be in the range [1, 1024].");
+		
+		synchronized(mutex)
+		{
+			if(status != StatusEnum.Disconnected)
+				throw new IllegalStateException("The delivery window cannot be changed while the endpoint is connected.");
+			
+			int id = eventNameIndex.getId(eventName);
+			if(id < 0)
+				throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", eventName));
+			
+			DeliveryAgent agent = deliveryAgents.get(id);
+			if(agent.kind == 1)
+				throw new IllegalArgumentException(String.format("The event '%s' is a replacing event. Replacing events are delivered one at a time.", eventName));
+			agent.windowSize = windowSize;
 		}
 	}
 	
@@ -299,11 +312,11 @@ class EventController
 							};
 							
 							successiveDeliveryAgent.task = new ScheduledTask(acceptor, null);
-							successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
+							successiveDeliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
 							successiveDeliveryAgent.instanceUid = sep.instanceUid;
 
-							channel.send(encodeMessage_RegularEvent(sep, 0));
-							scheduler.add(successiveDeliveryAgent.task, Constants.EventDeliverySeconds);
+							sendEvent(encodeMessage_RegularEvent(sep, 0));
+							scheduler.addMillis(successiveDeliveryAgent.task, EventDeliveryMillis);
 							
 							return;
 						}
@@ -373,6 +386,8 @@ class EventController
 	
 	public void raiseEvent(ReplacingEvent replacingEvent)
 	{
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
 		{
 			if(isClosed) return;
@@ -405,18 +420,9 @@ class EventController
 							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 						}
 						
-						if(deliveryAgent.instanceUid == null)
+						if(deliveryAgent.instances.size() < deliveryAgent.windowSize)
 						{
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = replacingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_ReplacingEvent(replacingEvent, deliveryAgent.index));
+							sendInstance(deliveryAgent, replacingEvent.uid, encodeMessage_ReplacingEvent(replacingEvent, deliveryAgent.index));
 						}
 					}
 					catch(PersistenceStorageFullSoftnetException ex)
@@ -442,16 +448,7 @@ class EventController
 							((ServiceMemoryPersistence)servicePersistence).cache(replacingEvent);
 							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 							
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = replacingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_ReplacingEvent(replacingEvent, deliveryAgent.index));
+							sendInstance(deliveryAgent, replacingEvent.uid, encodeMessage_ReplacingEvent(replacingEvent, deliveryAgent.index));
 						}
 					}
 					catch(PersistenceStorageFullSoftnetException ex)
@@ -486,11 +483,20 @@ class EventController
 					raisePersistenceFailedEvent(ex);
 				}
 			}
+			
+			groupCommit = getGroupCommit();
+			if(groupCommit != null)
+				commitTicket = groupCommit.getTicket();
 		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket);
 	}
 	
 	public void raiseEvent(QueueingEvent queueingEvent)
 	{
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
 		{
 			if(isClosed) return;			
@@ -523,18 +529,9 @@ class EventController
 							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 						}
 						
-						if(deliveryAgent.instanceUid == null)
+						if(deliveryAgent.instances.size() < deliveryAgent.windowSize)
 						{
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = queueingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);
-							channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
+							sendInstance(deliveryAgent, queueingEvent.uid, encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
 						}
 					}
 					catch(PersistenceStorageFullSoftnetException ex)
@@ -560,16 +557,7 @@ class EventController
 							((ServiceMemoryPersistence)servicePersistence).cache(queueingEvent);
 							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 							
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = queueingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
+							sendInstance(deliveryAgent, queueingEvent.uid, encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
 						}
 					}
 					catch(PersistenceStorageFullSoftnetException ex)
@@ -604,11 +592,20 @@ class EventController
 					raisePersistenceFailedEvent(ex);
 				}
 			}
+			
+			groupCommit = getGroupCommit();
+			if(groupCommit != null)
+				commitTicket = groupCommit.getTicket();
 		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket);
 	}
 
 	public void raiseEvent(PrivateEvent privateEvent)
 	{
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
 		synchronized(mutex)
 		{
 			if(isClosed) return;
@@ -641,18 +638,9 @@ class EventController
 							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 						}
 						
-						if(deliveryAgent.instanceUid == null)
+						if(deliveryAgent.instances.size() < deliveryAgent.windowSize)
 						{
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = privateEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
+							sendInstance(deliveryAgent, privateEvent.uid, encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
 						}						
 					}
 					catch(PersistenceStorageFullSoftnetException ex)
@@ -678,16 +666,7 @@ class EventController
 							((ServiceMemoryPersistence)servicePersistence).cache(privateEvent);
 							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 							
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = privateEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
+							sendInstance(deliveryAgent, privateEvent.uid, encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
 						}
 					}
 					catch(PersistenceStorageFullSoftnetException ex)
@@ -722,9 +701,168 @@ class EventController
 					raisePersistenceFailedEvent(ex);
 				}
 			}
+			
+			groupCommit = getGroupCommit();
+			if(groupCommit != null)
+				commitTicket = groupCommit.getTicket();
 		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket);
 	}
 
+	public void raiseEvents(final ReplacingEvent[] replacingEvents)
+	{
+		raiseEventBatch(new EventBatch(1)
+		{
+			public int size() { return replacingEvents.length; }
+			public String getName(int index) { return replacingEvents[index].name; }
+			public UUID getUid(int index) { return replacingEvents[index].uid; }
+			public SoftnetMessage encodeMessage(int index, int agentIndex) { return encodeMessage_ReplacingEvent(replacingEvents[index], agentIndex); }
+			public void cache(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException { persistence.cache(replacingEvents); }
+			public void save(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException { persistence.save(replacingEvents); }
+			public void cache(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException { persistence.cache(replacingEvents); }
+			public void save(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException { persistence.save(replacingEvents); }
+		});
+	}
+
+	public void raiseEvents(final QueueingEvent[] queueingEvents)
+	{
+		raiseEventBatch(new EventBatch(2)
+		{
+			public int size() { return queueingEvents.length; }
+			public String getName(int index) { return queueingEvents[index].name; }
+			public UUID getUid(int index) { return queueingEvents[index].uid; }
+			public SoftnetMessage encodeMessage(int index, int agentIndex) { return encodeMessage_QueueingEvent(queueingEvents[index], agentIndex); }
+			public void cache(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException { persistence.cache(queueingEvents); }
+			public void save(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException { persistence.save(queueingEvents); }
+			public void cache(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException { persistence.cache(queueingEvents); }
+			public void save(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException { persistence.save(queueingEvents); }
+		});
+	}
+
+	public void raiseEvents(final PrivateEvent[] privateEvents)
+	{
+		raiseEventBatch(new EventBatch(4)
+		{
+			public int size() { return privateEvents.length; }
+			public String getName(int index) { return privateEvents[index].name; }
+			public UUID getUid(int index) { return privateEvents[index].uid; }
+			public SoftnetMessage encodeMessage(int index, int agentIndex) { return encodeMessage_PrivateEvent(privateEvents[index], agentIndex); }
+			public void cache(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException { persistence.cache(privateEvents); }
+			public void save(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException { persistence.save(privateEvents); }
+			public void cache(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException { persistence.cache(privateEvents); }
+			public void save(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException { persistence.save(privateEvents); }
+		});
+	}
+
+	private void raiseEventBatch(EventBatch eventBatch)
+	{
+		GroupCommit groupCommit = null;
+		long commitTicket = 0;
+		synchronized(mutex)
+		{
+			if(isClosed) return;			
+			
+			if(isInitialized == false)
+				throw new IllegalStateException("The persistence is not set.");
+			
+			for(int i = 0; i < eventBatch.size(); i++)
+			{
+				if(findDeliveryAgent(eventBatch.kind, eventBatch.getName(i)) == null)
+					throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", eventBatch.getName(i)));
+			}
+			
+			if(eventBatch.size() == 0)
+				return;
+
+			if(status == StatusEnum.Online)
+			{				
+				if(servicePersistence.isInCacheMode())
+				{
+					try
+					{
+						try
+						{
+							eventBatch.cache(servicePersistence);
+						}		
+						catch(PersistenceIOSoftnetException ex)
+						{
+							servicePersistence.close();
+							resetDeliveryAgents();
+							raisePersistenceFailedEvent(ex);
+							
+							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+							eventBatch.cache((ServiceMemoryPersistence)servicePersistence);
+							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
+						}
+						
+						sendBatch(eventBatch);
+					}
+					catch(PersistenceStorageFullSoftnetException ex)
+					{
+						raisePersistenceFailedEvent(ex);
+					}					
+				}
+				else
+				{
+					try
+					{
+						try
+						{
+							eventBatch.save(servicePersistence);
+						}		
+						catch(PersistenceIOSoftnetException ex)
+						{
+							servicePersistence.close();
+							resetSuccessiveDeliveryAgent();							
+							raisePersistenceFailedEvent(ex);
+
+							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+							eventBatch.cache((ServiceMemoryPersistence)servicePersistence);
+							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
+							
+							sendBatch(eventBatch);
+						}
+					}
+					catch(PersistenceStorageFullSoftnetException ex)
+					{
+						raisePersistenceFailedEvent(ex);
+					}
+				}
+			}
+			else
+			{
+				try
+				{
+					try
+					{
+						eventBatch.save(servicePersistence);
+					}		
+					catch(PersistenceIOSoftnetException ex)
+					{
+						servicePersistence.close();
+						raisePersistenceFailedEvent(ex);
+						
+						servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+						servicePersistence.setStorageMode();
+						eventBatch.save((ServiceMemoryPersistence)servicePersistence);
+					}
+				}
+				catch(PersistenceStorageFullSoftnetException ex)
+				{
+					raisePersistenceFailedEvent(ex);
+				}
+			}
+			
+			groupCommit = getGroupCommit();
+			if(groupCommit != null)
+				commitTicket = groupCommit.getTicket();
+		}
+		
+		if(groupCommit != null)
+			awaitCommit(groupCommit, commitTicket);
+	}
 	private void verifyEventDelivery()
 	{
 		synchronized(mutex)
@@ -738,7 +876,7 @@ class EventController
 			{
 				try
 				{
-					long currentTime = SystemClock.seconds();
+					long currentTime = SystemClock.milliSeconds();
 					
 					if(successiveDeliveryAgent.expirationTime <= currentTime)
 					{
@@ -751,10 +889,10 @@ class EventController
 							public void accept(Object noData) { verifyEventDelivery(); }
 						};
 						successiveDeliveryAgent.task = new ScheduledTask(acceptor, null);
-						successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						scheduler.add(successiveDeliveryAgent.task, Constants.EventDeliverySeconds);
+						successiveDeliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
+						scheduler.addMillis(successiveDeliveryAgent.task, EventDeliveryMillis);
 						
-						channel.send(encodeMessage_RegularEvent(sep, 0));
+						sendEvent(encodeMessage_RegularEvent(sep, 0));
 					}
 					else
 					{
@@ -763,7 +901,7 @@ class EventController
 							public void accept(Object noData) { verifyEventDelivery(); }
 						};
 						successiveDeliveryAgent.task = new ScheduledTask(acceptor, null);						
-						scheduler.add(successiveDeliveryAgent.task, successiveDeliveryAgent.expirationTime - currentTime);
+						scheduler.addMillis(successiveDeliveryAgent.task, successiveDeliveryAgent.expirationTime - currentTime);
 					}
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
@@ -791,30 +929,33 @@ class EventController
 		{
 			if(status != StatusEnum.Online)
 				return;
-			if(deliveryAgent.instanceUid == null || servicePersistence.isInStorageMode())
+			if(deliveryAgent.instances.isEmpty() || servicePersistence.isInStorageMode())
 				return;
 
 			try
 			{
 				try
 				{
-					long currentTime = SystemClock.seconds();
+					long currentTime = SystemClock.milliSeconds();
 					
 					if(deliveryAgent.expirationTime <= currentTime)
 					{
-						ServiceEventPersistable sep = servicePersistence.peek(deliveryAgent.kind, deliveryAgent.name);							
-						if(sep == null || deliveryAgent.instanceUid.equals(sep.instanceUid) == false)
-							throw new PersistenceIllegalStateSoftnetException();
-						
 						Acceptor<Object> acceptor = new Acceptor<Object>()
 						{
 							public void accept(Object state) { verifyEventDelivery(state); }
 						};
 						deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-						deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);
+						deliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
+						scheduler.addMillis(deliveryAgent.task, EventDeliveryMillis);
 						
-						channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index));
+						ServiceEventCursor cursor = servicePersistence.peek(deliveryAgent.kind, deliveryAgent.name, 0);
+						for(UUID instanceUid: deliveryAgent.instances)
+						{
+							ServiceEventPersistable sep = cursor.next();
+							if(sep == null || instanceUid.equals(sep.instanceUid) == false)
+								throw new PersistenceIllegalStateSoftnetException();
+							sendEvent(encodeMessage_RegularEvent(sep, deliveryAgent.index));
+						}
 					}
 					else
 					{
@@ -823,7 +964,7 @@ class EventController
 							public void accept(Object state) { verifyEventDelivery(state); }
 						};
 						deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);						
-						scheduler.add(deliveryAgent.task, deliveryAgent.expirationTime - currentTime);
+						scheduler.addMillis(deliveryAgent.task, deliveryAgent.expirationTime - currentTime);
 					}
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
@@ -857,28 +998,29 @@ class EventController
 				throw new InputDataFormatSoftnetException();
 			
 			DeliveryAgent deliveryAgent = deliveryAgents.get(index);
-			if(deliveryAgent.instanceUid == null)
-				return;
-			if(instanceUid.equals(deliveryAgent.instanceUid) == false)
+			int ackCount = deliveryAgent.instances.indexOf(instanceUid) + 1;
+			if(ackCount == 0)
 				return;
 						
 			try
 			{
 				try
 				{
-					ServiceEventPersistable sep = servicePersistence.setAcknowledment(deliveryAgent.kind, deliveryAgent.name);
-					if(sep != null)
+					for(int i = 0; i < ackCount; i++)
 					{
-						deliveryAgent.instanceUid = sep.instanceUid;
-						deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						
-						channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index));					
+						servicePersistence.setAcknowledment(deliveryAgent.kind, deliveryAgent.name);
+						deliveryAgent.instances.removeFirst();
 					}
-					else
+					fillDeliveryWindow(deliveryAgent);
+					
+					if(deliveryAgent.instances.isEmpty())
 					{
-						deliveryAgent.instanceUid = null;
 						deliveryAgent.task.cancel();
-						deliveryAgent.task = null;						
+						deliveryAgent.task = null;
+					}
+					else
+					{
+						deliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
 					}
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
@@ -920,9 +1062,9 @@ class EventController
 						if(validateEventName(sep.name))
 						{
 							successiveDeliveryAgent.instanceUid = sep.instanceUid;
-							successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
+							successiveDeliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
 							
-							channel.send(encodeMessage_RegularEvent(sep, 0));
+							sendEvent(encodeMessage_RegularEvent(sep, 0));
 							return;
 						}
 						else
@@ -968,29 +1110,30 @@ class EventController
 				throw new InputDataFormatSoftnetException();
 			
 			DeliveryAgent deliveryAgent = deliveryAgents.get(index);
-			if(deliveryAgent.instanceUid == null)
-				return;
-			if(instanceUid.equals(deliveryAgent.instanceUid) == false)
+			int ackCount = deliveryAgent.instances.indexOf(instanceUid) + 1;
+			if(ackCount == 0)
 				return;
 			
 			try
 			{
 				try
 				{
-					ServiceEventPersistable sep = servicePersistence.setAcknowledment(deliveryAgent.kind, deliveryAgent.name);
-					if(sep != null)
+					for(int i = 0; i < ackCount; i++)
 					{
-						deliveryAgent.instanceUid = sep.instanceUid;
-						deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						
-						channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index));					
+						servicePersistence.setAcknowledment(deliveryAgent.kind, deliveryAgent.name);
+						deliveryAgent.instances.removeFirst();
 					}
-					else
+					fillDeliveryWindow(deliveryAgent);
+					
+					if(deliveryAgent.instances.isEmpty())
 					{
-						deliveryAgent.instanceUid = null;
 						deliveryAgent.task.cancel();
 						deliveryAgent.task = null;
 					}
+					else
+					{
+						deliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
+					}
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
 				{
@@ -1031,9 +1174,9 @@ class EventController
 						if(validateEventName(sep.name))
 						{
 							successiveDeliveryAgent.instanceUid = sep.instanceUid;
-							successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
+							successiveDeliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
 							
-							channel.send(encodeMessage_RegularEvent(sep, 0));
+							sendEvent(encodeMessage_RegularEvent(sep, 0));
 							return;
 						}
 						else
@@ -1209,11 +1352,13 @@ class EventController
 			{	
 				if(messageTag == Constants.Service.EventController.EVENT_ACK)
 				{
-					processMessage_EventAck(message, channel);	
+					processMessage_EventAck(message, channel);
+					commitLater();
 				}								
 				else if(messageTag == Constants.Service.EventController.ILLEGAL_EVENT_NAME)
 				{
 					processMessage_IllegalEventName(message);
+					commitLater();
 				}
 				else
 					throw new FormatException();
@@ -1257,7 +1402,8 @@ class EventController
 		public final String name;
 		public final int index;
 		public final int kind;
-		public UUID instanceUid;
+		public final LinkedList<UUID> instances;
+		public int windowSize;
 		public long expirationTime;
 		public ScheduledTask task;
 		
@@ -1266,10 +1412,146 @@ class EventController
 			this.name = name;
 			this.index = index;
 			this.kind = kind;
-			instanceUid = null;
+			instances = new LinkedList<UUID>();
+			windowSize = 1;
 		}		
 	}
 	
+	private void sendInstance(DeliveryAgent deliveryAgent, UUID instanceUid, SoftnetMessage message)
+	{
+		addInstance(deliveryAgent, instanceUid);
+		sendEvent(message);
+	}
+	
+	private void sendEvent(SoftnetMessage message)
+	{
+		sendEvents(new SoftnetMessage[] { message });
+	}
+	
+	// Event instances read from or written to a file storage are held back until the group commit
+	// covering them has completed, so that the server never acknowledges an instance that could be lost.
+	private void sendEvents(SoftnetMessage[] messages)
+	{
+		GroupCommit groupCommit = getGroupCommit();
+		if(groupCommit == null || (pendingEvents.isEmpty() && groupCommit.getCommittedTicket() >= groupCommit.getTicket()))
+		{
+			transmit(messages);
+			return;
+		}
+		pendingEvents.add(new PendingEvents(groupCommit, groupCommit.getTicket(), channel, messages));
+		groupCommit.commitLater(commitListener, serviceEndpoint.threadPool);
+	}
+	
+	private void sendCommittedEvents()
+	{
+		while(pendingEvents.isEmpty() == false)
+		{
+			PendingEvents pending = pendingEvents.getFirst();
+			if(pending.channel == channel && channel.isClosed() == false)
+			{
+				if(pending.groupCommit.getCommittedTicket() >= pending.commitTicket)
+					transmit(pending.messages);
+				else if(pending.groupCommit.isClosed() == false && pending.groupCommit.getFailure() == null)
+				{
+					pending.groupCommit.commitLater(commitListener, serviceEndpoint.threadPool);
+					return;
+				}
+			}
+			pendingEvents.removeFirst();
+		}
+	}
+	
+	private void transmit(SoftnetMessage[] messages)
+	{
+		if(messages.length == 1)
+			channel.send(messages[0]);
+		else
+			channel.send(messages);
+	}
+	
+	private class PendingEvents
+	{
+		public final GroupCommit groupCommit;
+		public final long commitTicket;
+		public final Channel channel;
+		public final SoftnetMessage[] messages;
+		
+		public PendingEvents(GroupCommit groupCommit, long commitTicket, Channel channel, SoftnetMessage[] messages)
+		{
+			this.groupCommit = groupCommit;
+			this.commitTicket = commitTicket;
+			this.channel = channel;
+			this.messages = messages;
+		}
+	}
+	
+	private void addInstance(DeliveryAgent deliveryAgent, UUID instanceUid)
+	{
+		if(deliveryAgent.task == null)
+		{
+			Acceptor<Object> acceptor = new Acceptor<Object>()
+			{
+				public void accept(Object state) { verifyEventDelivery(state); }
+			};
+			deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
+			scheduler.addMillis(deliveryAgent.task, EventDeliveryMillis);
+		}
+		if(deliveryAgent.instances.isEmpty())
+			deliveryAgent.expirationTime = SystemClock.milliSeconds() + EventDeliveryMillis;
+		
+		deliveryAgent.instances.add(instanceUid);
+	}
+	
+	private void sendBatch(EventBatch eventBatch)
+	{
+		ArrayList<SoftnetMessage> messages = new ArrayList<SoftnetMessage>(eventBatch.size());
+		for(int i = 0; i < eventBatch.size(); i++)
+		{
+			DeliveryAgent deliveryAgent = findDeliveryAgent(eventBatch.kind, eventBatch.getName(i));
+			if(deliveryAgent.instances.size() < deliveryAgent.windowSize)
+			{
+				addInstance(deliveryAgent, eventBatch.getUid(i));
+				messages.add(eventBatch.encodeMessage(i, deliveryAgent.index));
+			}
+		}
+		if(messages.size() > 0)
+			sendEvents(messages.toArray(new SoftnetMessage[messages.size()]));
+	}
+	
+	private abstract class EventBatch
+	{
+		public final int kind;
+		
+		public EventBatch(int kind)
+		{
+			this.kind = kind;
+		}
+		
+		public abstract int size();
+		public abstract String getName(int index);
+		public abstract UUID getUid(int index);
+		public abstract SoftnetMessage encodeMessage(int index, int agentIndex);
+		public abstract void cache(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+		public abstract void save(ServicePersistence persistence) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+		public abstract void cache(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException;
+		public abstract void save(ServiceMemoryPersistence persistence) throws PersistenceStorageFullSoftnetException;
+	}
+	
+	private void fillDeliveryWindow(DeliveryAgent deliveryAgent) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		if(deliveryAgent.instances.size() >= deliveryAgent.windowSize)
+			return;
+		
+		ServiceEventCursor cursor = servicePersistence.peek(deliveryAgent.kind, deliveryAgent.name, deliveryAgent.instances.size());
+		while(deliveryAgent.instances.size() < deliveryAgent.windowSize)
+		{
+			ServiceEventPersistable sep = cursor.next();
+			if(sep == null)
+				return;
+			sendInstance(deliveryAgent, sep.instanceUid, encodeMessage_RegularEvent(sep, deliveryAgent.index));
+		}
+	}
+	
 	private class SuccessiveDeliveryAgent
 	{
 		public UUID instanceUid;
@@ -1277,11 +1559,77 @@ class EventController
 		public ScheduledTask task;
 	}
 	
+	private GroupCommit getGroupCommit()
+	{
+		if(servicePersistence instanceof ServiceFilePersistence)
+			return ((ServiceFilePersistence)servicePersistence).getGroupCommit();
+		return null;
+	}
+	
+	private void commitLater()
+	{
+		GroupCommit groupCommit = getGroupCommit();
+		if(groupCommit != null)
+			groupCommit.commitLater(commitListener, serviceEndpoint.threadPool);
+	}
+	
+	private void awaitCommit(GroupCommit groupCommit, long commitTicket)
+	{
+		try
+		{
+			groupCommit.await(commitTicket);
+			synchronized(mutex)
+			{
+				if(isClosed == false)
+					sendCommittedEvents();
+			}
+		}
+		catch(java.io.IOException ex)
+		{
+			onCommitFailed(groupCommit, ex);
+		}
+	}
+	
+	private void onCommitCompleted()
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				return;
+			GroupCommit groupCommit = getGroupCommit();
+			if(groupCommit != null && groupCommit.getFailure() != null)
+				onCommitFailed(groupCommit, groupCommit.getFailure());
+			else
+				sendCommittedEvents();
+		}
+	}
+	
+	private void onCommitFailed(GroupCommit groupCommit, java.io.IOException e)
+	{
+		synchronized(mutex)
+		{
+			if(isClosed || getGroupCommit() != groupCommit)
+				return;
+			
+			servicePersistence.close();
+			resetDeliveryAgents();
+			resetSuccessiveDeliveryAgent();
+			raisePersistenceFailedEvent(new PersistenceIOSoftnetException(e.getMessage()));
+			
+			servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity);
+			if(status == StatusEnum.Online)
+				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
+			else
+				servicePersistence.setStorageMode();
+		}
+	}
+	
 	private void resetDeliveryAgents()
 	{
+		pendingEvents.clear();
 		for(DeliveryAgent agent: deliveryAgents)
 		{
-			agent.instanceUid = null;
+			agent.instances.clear();
 			if(agent.task != null)
 			{
 				agent.task.cancel();
@@ -1292,6 +1640,7 @@ class EventController
 	
 	private void resetSuccessiveDeliveryAgent()
 	{
+		pendingEvents.clear();
 		successiveDeliveryAgent.instanceUid = null;
 		if(successiveDeliveryAgent.task != null)
 		{
@@ -1302,18 +1651,15 @@ class EventController
 	
 	private boolean validateEventName(String name)
 	{
-		for(String eventName: regularEvents)
-			if(eventName.equals(name))
-				return true;
-		return false;		
+		return eventNameIndex.contains(name);
 	}
 	
 	private DeliveryAgent findDeliveryAgent(int kind, String name)
 	{
-		for(DeliveryAgent aEvent: deliveryAgents)
-			if(aEvent.kind == kind && aEvent.name.equals(name))
-				return aEvent;
-		return null;
+		int id = eventNameIndex.getId(kind, name);
+		if(id < 0)
+			return null;
+		return deliveryAgents.get(id);
 	}
 }
 
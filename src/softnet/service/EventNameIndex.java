@@ -0,0 +1,84 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.service;
+
+import java.util.HashMap;
+
+class EventNameIndex
+{
+	private HashMap<String, Integer> ids;
+	private String[] names;
+	private int[] kinds;
+	private int size;
+	
+	public EventNameIndex(int capacity)
+	{
+		ids = new HashMap<String, Integer>(capacity * 2);
+		names = new String[capacity];
+		kinds = new int[capacity];
+		size = 0;
+	}
+	
+	public int add(String name, int kind)
+	{
+		Integer id = ids.get(name);
+		if(id != null)
+			return id;
+		
+		names[size] = name;
+		kinds[size] = kind;
+		ids.put(name, size);
+		size++;
+		return size - 1;
+	}
+	
+	public int getId(String name)
+	{
+		if(name == null)
+			return -1;
+		Integer id = ids.get(name);
+		return id != null ? id : -1;
+	}
+	
+	public int getId(int kind, String name)
+	{
+		int id = getId(name);
+		if(id >= 0 && kinds[id] == kind)
+			return id;
+		return -1;
+	}
+	
+	public boolean contains(String name)
+	{
+		return getId(name) >= 0;
+	}
+	
+	public String getName(int id)
+	{
+		return names[id];
+	}
+	
+	public int getKind(int id)
+	{
+		return kinds[id];
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+}
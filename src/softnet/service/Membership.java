@@ -16,7 +16,10 @@
 
 package softnet.service;
 
+import java.util.BitSet;
+
 import softnet.MembershipUser;
+import softnet.core.SnapshotFile;
 import softnet.exceptions.*;
 
 interface Membership
@@ -29,12 +32,16 @@ interface Membership
 	boolean isStatelessGuestSupported();
 	boolean isRbacSupported();
 	boolean containsRole(String role);
+	BitSet getRoleSet(String[] roles);
+	boolean isInRoles(MembershipUser user, BitSet roleSet);
+	AccessDecisionCache getAccessCache();
 	MembershipUser[] getUsers();
 
 	void onEndpointConnected(Channel channel);
 	void onEndpointDisconnected();
 	void onServiceOnline();
 	byte[] getHash() throws HostErrorSoftnetException;
+	void setSnapshotFile(SnapshotFile snapshotFile);
 	void addEventListener(ServiceEventListener listener);
 	void removeEventListener(ServiceEventListener listener);
 }
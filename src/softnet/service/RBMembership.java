@@ -16,6 +16,8 @@
 
 package softnet.service;
 
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -39,6 +41,10 @@ class RBMembership implements Membership
 		
 		mRoles = new ArrayList<MRole>();
 		mUsers = new ArrayList<MUser>();
+		rolesById = new HashMap<Long, MRole>();
+		usersById = new HashMap<Long, MUser>();
+		usersByName = new HashMap<String, MUser>();
+		accessCache = new AccessDecisionCache(this);
 		eventListeners = new HashSet<ServiceEventListener>(2);		
 		
 		guest = siteStructure.isGuestSupported() ? new Guest() : null;
@@ -95,12 +101,7 @@ class RBMembership implements Membership
 	{
 		synchronized(endpoint_mutex)
 		{
-			for(MUser mUser: mUsers)
-			{
-				if(mUser.userId == userId)
-					return mUser;
-			}
-			return null;
+			return usersById.get(userId);
 		}
 	}
 	
@@ -108,12 +109,7 @@ class RBMembership implements Membership
 	{
 		synchronized(endpoint_mutex)
 		{
-			for(MUser mUser: mUsers)
-			{
-				if(mUser.userName.equals(userName))
-					return mUser;
-			}
-			return null;
+			return usersByName.get(userName);
 		}
 	}
 	
@@ -170,6 +166,30 @@ class RBMembership implements Membership
 		return siteStructure.containsRole(role);
 	}
 	
+	public BitSet getRoleSet(String[] roles)
+	{
+		BitSet roleSet = new BitSet();
+		for(String role: roles)
+		{
+			int roleIndex = siteStructure.getRoleIndex(role);
+			if(roleIndex >= 0)
+				roleSet.set(roleIndex);
+		}
+		return roleSet;
+	}
+	
+	public AccessDecisionCache getAccessCache()
+	{
+		return accessCache;
+	}
+	
+	public boolean isInRoles(MembershipUser user, BitSet roleSet)
+	{
+		if(user instanceof MUser)
+			return ((MUser)user).roleSet.intersects(roleSet);
+		return false;
+	}
+	
 	public void addEventListener(ServiceEventListener listener)
 	{
 		synchronized(eventListeners)
@@ -199,6 +219,12 @@ class RBMembership implements Membership
 	private SiteStructureAdapter siteStructure;
 	private ArrayList<MRole> mRoles;
 	private ArrayList<MUser> mUsers;
+	private HashMap<Long, MRole> rolesById;
+	private HashMap<Long, MUser> usersById;
+	private HashMap<String, MUser> usersByName;
+	private AccessDecisionCache accessCache;
+	private byte[] membershipHash;
+	private SnapshotFile snapshotFile;
 	private Guest guest;
 	private StatelessGuest statelessGuest;
 	private boolean is_guest_allowed;
@@ -227,12 +253,103 @@ class RBMembership implements Membership
 		connectivity_status = StatusEnum.Disconnected;
 	}
 	
+	public void setSnapshotFile(SnapshotFile snapshotFile)
+	{
+		synchronized(endpoint_mutex)
+		{
+			if(this.snapshotFile != null)
+				throw new IllegalStateException("The membership snapshot has already been set.");
+			if(connectivity_status != StatusEnum.Disconnected)
+				throw new IllegalStateException("The membership snapshot must be set before the endpoint is connected.");
+			this.snapshotFile = snapshotFile;
+			
+			try
+			{
+				byte[] snapshot = snapshotFile.read();
+				if(snapshot == null)
+					return;
+				
+				SequenceDecoder asnRootSequence = ASNDecoder.Sequence(snapshot);
+				SequenceDecoder asnRoles = asnRootSequence.Sequence();
+				SequenceDecoder asnUsers = asnRootSequence.Sequence();
+				boolean guestAllowed = asnRootSequence.Boolean();
+				asnRootSequence.end();
+				
+				loadUserList(asnRoles, asnUsers);
+				is_guest_allowed = guestAllowed && siteStructure.isGuestSupported();
+			}
+			catch(AsnException ex)
+			{
+				clearUserList();
+				snapshotFile.delete();
+			}
+			catch(SoftnetException ex)
+			{
+				clearUserList();
+				snapshotFile.delete();
+			}
+		}
+	}
+	
+	private void saveSnapshot()
+	{
+		if(snapshotFile == null)
+			return;
+		
+		snapshotFile.writeLater(snapshotEncoder, serviceEndpoint.threadPool);
+	}
+	
+	private final SnapshotFile.Encoder snapshotEncoder = new SnapshotFile.Encoder()
+	{
+		public byte[] encode()
+		{
+			synchronized(endpoint_mutex)
+			{
+				ASNEncoder asnEncoder = new ASNEncoder();
+				SequenceEncoder asnRootSequence = asnEncoder.Sequence();
+				SequenceEncoder asnRoles = asnRootSequence.Sequence();
+				for(MRole mRole: mRoles)
+				{
+					SequenceEncoder asnRole = asnRoles.Sequence();
+					asnRole.Int64(mRole.roleId);
+					asnRole.IA5String(mRole.name);
+				}
+				SequenceEncoder asnUsers = asnRootSequence.Sequence();
+				for(MUser mUser: mUsers)
+				{
+					SequenceEncoder asnUser = asnUsers.Sequence();
+					asnUser.Int64(mUser.userId);
+					asnUser.IA5String(mUser.userName);
+					SequenceEncoder asnUserRoles = asnUser.Sequence();
+					for(MRole mRole: mUser.userRoles)
+						asnUserRoles.Int64(mRole.roleId);
+				}
+				asnRootSequence.Boolean(is_guest_allowed);
+				return asnEncoder.getEncoding();
+			}
+		}
+	};
+	
+	private void clearUserList()
+	{
+		mRoles.clear();
+		rolesById.clear();
+		mUsers = new ArrayList<MUser>();
+		usersById = new HashMap<Long, MUser>();
+		usersByName = new HashMap<String, MUser>();
+		is_guest_allowed = false;
+		membershipHash = null;
+		accessCache.clear();
+	}
+	
 	public byte[] getHash() throws HostErrorSoftnetException
 	{
 		synchronized(endpoint_mutex)
 		{
 			if(mRoles.isEmpty())
 				return null;
+			if(membershipHash != null)
+				return membershipHash;
 			
 			ASNEncoder asnEncoder = new ASNEncoder();
             SequenceEncoder asnRootSequence = asnEncoder.Sequence();
@@ -294,7 +411,8 @@ class RBMembership implements Membership
                 }
             }
             
-            return Sha1Hash.compute(asnEncoder.getEncoding());
+            membershipHash = Sha1Hash.compute(asnEncoder.getEncoding());
+            return membershipHash;
 		}
 	}	
 
@@ -305,16 +423,27 @@ class RBMembership implements Membership
 		SequenceDecoder asnUsers = asnRootSequence.Sequence();
 		asnRootSequence.end();		
 		
+		loadUserList(asnRoles, asnUsers);
+		saveSnapshot();
+		
+		fireUsersUpdatedEvent();
+	}
+	
+	private void loadUserList(SequenceDecoder asnRoles, SequenceDecoder asnUsers) throws AsnException, SoftnetException
+	{
 		mRoles.clear();		
+		rolesById.clear();
 		while(asnRoles.hasNext())
 		{
 			SequenceDecoder asnRole = asnRoles.Sequence();
 			MRole mRole = new MRole(asnRole.Int64(), asnRole.IA5String(1, 256));	
 			
-			if(siteStructure.containsRole(mRole.name) == false)
+			mRole.roleIndex = siteStructure.getRoleIndex(mRole.name);
+			if(mRole.roleIndex < 0)
 				throw new InputDataInconsistentSoftnetException();
 			
 			mRoles.add(mRole);
+			rolesById.put(mRole.roleId, mRole);
 		}
 		asnRoles.end();		
 		
@@ -337,43 +466,28 @@ class RBMembership implements Membership
 		}
 		
 		ArrayList<MUser> users = new ArrayList<MUser>();
+		HashMap<Long, MUser> receivedUsersById = new HashMap<Long, MUser>();
+		HashMap<String, MUser> receivedUsersByName = new HashMap<String, MUser>();
 		while(asnUsers.hasNext())
 		{
 			SequenceDecoder asnUser = asnUsers.Sequence();
 			long userId = asnUser.Int64();
 			String userName = asnUser.IA5String(1, 256);
 			
-			MUser user = null;
-			for(MUser mUser: mUsers)
-			{
-				if(userId == mUser.userId)
-				{
-					user = mUser;					
-					break;
-				}
-			}
-			
+			MUser user = usersById.get(userId);
 			if(user != null)
 				user.setName(userName);
 			else
 				user = new MUser(userId, userName);			
 			users.add(user);
+			receivedUsersById.put(userId, user);
+			receivedUsersByName.put(userName, user);
 			
 			ArrayList<MRole> userRoles = new ArrayList<MRole>();			
 			SequenceDecoder asnUserRoles = asnUser.Sequence();
 			while(asnUserRoles.hasNext())
 			{
-				long roleId = asnUserRoles.Int64();
-				
-				MRole userRole = null;
-				for(MRole mRole: mRoles)
-				{
-					if(mRole.roleId == roleId)
-					{
-						userRole = mRole;
-						break;
-					}
-				}				
+				MRole userRole = rolesById.get(asnUserRoles.Int64());
 				if(userRole == null)
 					throw new InputDataInconsistentSoftnetException();
 				
@@ -386,22 +500,14 @@ class RBMembership implements Membership
 				
 		for(MUser mUser: mUsers)
 		{
-			boolean userRemoved = true;
-			for(MUser receivedUser: users)
-			{
-				if(receivedUser.userId == mUser.userId)
-				{					
-					userRemoved = false;
-					break;
-				}
-			}
-			
-			if(userRemoved)
+			if(receivedUsersById.containsKey(mUser.userId) == false)
 				mUser.setRemoved();			
 		}				
 		mUsers = users;		
-		
-		fireUsersUpdatedEvent();
+		usersById = receivedUsersById;
+		usersByName = receivedUsersByName;
+		accessCache.clear();
+		membershipHash = null;
 	}
 	
 	private void ProcessMessage_UserIncluded(byte[] message) throws AsnException, SoftnetException
@@ -412,28 +518,15 @@ class RBMembership implements Membership
         SequenceDecoder asnUserRoles = asnRootSequence.Sequence();
         asnRootSequence.end();
 
-        for(MUser user: mUsers)
-        {
-        	if(user.userId == userId)
-        		throw new InputDataInconsistentSoftnetException();
-        }
+        if(usersById.containsKey(userId))
+        	throw new InputDataInconsistentSoftnetException();
         
         MUser newUser = new MUser(userId, userName);
         
         ArrayList<MRole> userRoles = new ArrayList<MRole>();			
 		while(asnUserRoles.hasNext())
 		{
-			long roleId = asnUserRoles.Int64();
-			
-			MRole userRole = null;
-			for(MRole mRole: mRoles)
-			{
-				if(mRole.roleId == roleId)
-				{
-					userRole = mRole;
-					break;
-				}
-			}				
+			MRole userRole = rolesById.get(asnUserRoles.Int64());
 			if(userRole == null)
 				throw new InputDataInconsistentSoftnetException();
 			
@@ -442,6 +535,10 @@ class RBMembership implements Membership
 		asnUserRoles.end();
 		newUser.setRoles(userRoles);
 		mUsers.add(newUser);
+		usersById.put(userId, newUser);
+		usersByName.put(userName, newUser);
+		membershipHash = null;
+		saveSnapshot();
         
         fireUserIncludedEvent(newUser);
 	}
@@ -454,32 +551,14 @@ class RBMembership implements Membership
         SequenceDecoder asnUserRoles = asnRootSequence.Sequence();
         asnRootSequence.end();
 
-        MUser updatedUser = null;
-        for(MUser user: mUsers)
-        {
-        	if(user.userId == userId)
-        	{
-        		updatedUser = user;
-        		break;
-        	}
-        }
+        MUser updatedUser = usersById.get(userId);
     	if(updatedUser == null)
     		throw new InputDataInconsistentSoftnetException();
         
         ArrayList<MRole> userRoles = new ArrayList<MRole>();			
 		while(asnUserRoles.hasNext())
 		{
-			long roleId = asnUserRoles.Int64();
-			
-			MRole userRole = null;
-			for(MRole mRole: mRoles)
-			{
-				if(mRole.roleId == roleId)
-				{
-					userRole = mRole;
-					break;
-				}
-			}				
+			MRole userRole = rolesById.get(asnUserRoles.Int64());
 			if(userRole == null)
 				throw new InputDataInconsistentSoftnetException();
 			
@@ -487,8 +566,17 @@ class RBMembership implements Membership
 		}
 		asnUserRoles.end();
 
+    	if(updatedUser.userName.equals(userName) == false)
+    	{
+    		if(usersByName.get(updatedUser.userName) == updatedUser)
+    			usersByName.remove(updatedUser.userName);
+    		usersByName.put(userName, updatedUser);
+    	}
     	updatedUser.setName(userName);
     	updatedUser.setRoles(userRoles);
+    	accessCache.invalidateUser(userId);
+    	membershipHash = null;
+    	saveSnapshot();
     	
         fireUserUpdatedEvent(updatedUser);
 	}
@@ -499,20 +587,17 @@ class RBMembership implements Membership
         long userId = asnRootSequence.Int64();
         asnRootSequence.end();
 
-        MUser removedUser = null;
-        for(MUser user: mUsers)
-        {
-        	if(user.userId == userId)
-        	{
-        		removedUser = user;
-        		break;
-        	}
-        }
+        MUser removedUser = usersById.remove(userId);
     	if(removedUser == null)
     		throw new InputDataInconsistentSoftnetException();
     	
     	mUsers.remove(removedUser);
+    	if(usersByName.get(removedUser.userName) == removedUser)
+    		usersByName.remove(removedUser.userName);
     	removedUser.setRemoved();
+    	accessCache.invalidateUser(userId);
+    	membershipHash = null;
+    	saveSnapshot();
         
         fireUserRemovedEvent(removedUser);
 	}
@@ -522,6 +607,8 @@ class RBMembership implements Membership
 		if(siteStructure.isGuestSupported() == false)
 			return;		
 		is_guest_allowed = true;
+		accessCache.invalidateGuests();
+		saveSnapshot();
 		fireGuestAccessChangedEvent();
 	}
 
@@ -530,6 +617,8 @@ class RBMembership implements Membership
 		if(siteStructure.isGuestSupported() == false)
 			return;	
 		is_guest_allowed = false;
+		accessCache.invalidateGuests();
+		saveSnapshot();
 		fireGuestAccessChangedEvent();
 	}
 
@@ -692,12 +781,7 @@ class RBMembership implements Membership
 	
 	private MUser findMembershipUser(long userId)
 	{
-		for(MUser mUser: mUsers)
-		{
-			if(mUser.userId == userId)
-				return mUser;
-		}
-		return null;
+		return usersById.get(userId);
 	}
 
 	private class MRole
@@ -710,6 +794,7 @@ class RBMembership implements Membership
 		public final long roleId;
 		public final String name;
 		public int orderNum;
+		public int roleIndex;
 	}
 	
  	private class MUser implements MembershipUser, Comparable<MUser>
@@ -719,9 +804,11 @@ class RBMembership implements Membership
 			this.userId = userId;
 			this.userName = name;
 			userRoles = null;
+			roleSet = new BitSet();
 		}
 		
 		private Object mutex = new Object();
+		private volatile BitSet roleSet;
 								
 	    public boolean isGuest() { return false; }
         public boolean isStatelessGuest() { return false; }
@@ -772,15 +859,8 @@ class RBMembership implements Membership
 	    
 	    public boolean isInRole(String role)
 	    {
-	    	synchronized(mutex)
-	    	{
-		    	for (MRole mRole: userRoles)
-	            {
-	                if (mRole.name.equals(role))
-	                    return true;
-	            }
-	            return false;
-	    	}
+	    	int roleIndex = siteStructure.getRoleIndex(role);
+	    	return roleIndex >= 0 && roleSet.get(roleIndex);
 	    }
 
 	    private boolean _isRemoved = false;
@@ -821,9 +901,14 @@ class RBMembership implements Membership
 
         public void setRoles(ArrayList<MRole> roles)
         {
+        	BitSet roleSet = new BitSet();
+        	for(MRole role: roles)
+        		roleSet.set(role.roleIndex);
+        	
         	synchronized(mutex)
         	{
         		userRoles = roles;
+        		this.roleSet = roleSet;
         	}
         }
         
@@ -0,0 +1,92 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package softnet.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import softnet.asn.*;
+
+public abstract class RPCCompletion
+{
+	private static final int Pending = 0;
+	private static final int Completed = 1;
+	private static final int Abandoned = 2;
+	
+	public final SequenceEncoder result;
+	public final SequenceEncoder error;
+	
+	private ASNEncoder asnResultEncoder;
+	private ASNEncoder asnErrorEncoder;
+	private AtomicInteger state;
+	
+	RPCCompletion()
+	{
+		asnResultEncoder = new ASNEncoder();
+		result = asnResultEncoder.Sequence();
+		asnErrorEncoder = new ASNEncoder();
+		error = asnErrorEncoder.Sequence();
+		state = new AtomicInteger(Pending);
+	}
+	
+	public boolean isCompleted()
+	{
+		return state.get() != Pending;
+	}
+	
+	// True once the request has passed its deadline or max hold time, or its channel has closed.
+	// Completing an abandoned request has no effect.
+	public boolean isAbandoned()
+	{
+		return state.get() == Abandoned;
+	}
+	
+	public void complete()
+	{
+		if(asnResultEncoder.getSize() > 65536)
+			throw new IllegalArgumentException("The size of the data in the 'result' parameter exceeds 64 kilobytes (65536 bytes).");
+		if(state.compareAndSet(Pending, Completed) == false)
+		{
+			if(state.get() == Abandoned)
+				return;
+			throw new IllegalStateException("The request has already been completed.");
+		}
+		onCompleted(0, asnResultEncoder);
+	}
+	
+	public void completeWithError(int errorCode)
+	{
+		if(errorCode == 0)
+			throw new IllegalArgumentException("The value of 'errorCode' must not be zero.");
+		if(asnErrorEncoder.getSize() > 4096)
+			throw new IllegalArgumentException("The size of the data in the 'error' parameter exceeds 4 kilobytes (4096 bytes).");
+		if(state.compareAndSet(Pending, Completed) == false)
+		{
+			if(state.get() == Abandoned)
+				return;
+			throw new IllegalStateException("The request has already been completed.");
+		}
+		onCompleted(errorCode, asnErrorEncoder);
+	}
+	
+	void abandon()
+	{
+		if(state.compareAndSet(Pending, Abandoned))
+			onAbandoned();
+	}
+	
+	abstract void onCompleted(int errorCode, ASNEncoder asnEncoder);
+	abstract void onAbandoned();
+}
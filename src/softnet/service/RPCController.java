@@ -16,7 +16,10 @@
 
 package softnet.service;
 
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedList;
 import java.util.regex.Pattern;
 
 import softnet.*;
@@ -32,7 +35,6 @@ class RPCController
 		this.membership = membership;
 		procedures = new Hashtable<String, AppProcedure>();
 		mutex = new Object();
-		concurrentRequests = 0;
 	}
 	 
 	public void register(String procedureName, RPCRequestHandler requestHandler, int concurrencyLimit)
@@ -90,6 +92,7 @@ class RPCController
 			if(procedures.containsKey(procedureName) == false)
 			{
 				AppProcedure appProcedure = new AppProcedure(requestHandler, concurrencyLimit, roleNames);
+				appProcedure.roleSet = membership.getRoleSet(roleNames);
 				procedures.put(procedureName, appProcedure);
 			}
 			else
@@ -126,11 +129,136 @@ class RPCController
 		}
 	}
 	
+	public void register(String procedureName, AsyncRPCRequestHandler requestHandler, int concurrencyLimit)
+	{
+		validateProcedureName(procedureName);
+
+		if(requestHandler == null)
+			throw new IllegalArgumentException("'requestHandler' is null.");			
+
+		if(concurrencyLimit <= 0)
+	        throw new IllegalArgumentException(String.format("The concurreny limit '%d' is illegal. A valid value is greater than or equal to 1.", concurrencyLimit));	
+
+		synchronized(mutex)
+		{
+			if(procedures.containsKey(procedureName) == false)
+			{
+				AppProcedure appProcedure = new AppProcedure(requestHandler, concurrencyLimit);
+				procedures.put(procedureName, appProcedure);
+			}
+			else
+			{
+				throw new IllegalArgumentException(String.format("The procedure '%s' has already been registered.", procedureName));
+			}
+		}
+	}
+		
+	public void register(String procedureName, AsyncRPCRequestHandler requestHandler, int concurrencyLimit, String roles)
+	{
+		validateProcedureName(procedureName);
+
+		if(requestHandler == null)
+			throw new IllegalArgumentException("'requestHandler' is null.");			
+
+		if(concurrencyLimit <= 0)
+	        throw new IllegalArgumentException(String.format("The concurreny limit '%d' is illegal. A valid value is greater than or equal to 1.", concurrencyLimit));	
+
+		if(membership.isRbacSupported() == false)
+			throw new IllegalArgumentException("A role-based access control is not supported.");
+		
+		if(roles == null || roles.length() == 0)
+			throw new IllegalArgumentException("The list of roles must not be null or empty");
+				
+		String[] roleNames = roles.split(";");
+		for(int i = 0; i < roleNames.length; i++)
+			roleNames[i] = roleNames[i].trim();
+		
+		for(String role: roleNames)
+		{
+			if(membership.containsRole(role) == false)
+				throw new IllegalArgumentException(String.format("Illegal role '%s'.", role));
+		}
+		
+		synchronized(mutex)
+		{
+			if(procedures.containsKey(procedureName) == false)
+			{
+				AppProcedure appProcedure = new AppProcedure(requestHandler, concurrencyLimit, roleNames);
+				appProcedure.roleSet = membership.getRoleSet(roleNames);
+				procedures.put(procedureName, appProcedure);
+			}
+			else
+			{
+				throw new IllegalArgumentException(String.format("The procedure '%s' has already been registered.", procedureName));
+			}
+		}
+	}
+	
+	public void register(String procedureName, AsyncRPCRequestHandler requestHandler, int concurrencyLimit, GuestAccess guestAccess)
+	{
+		validateProcedureName(procedureName);
+
+		if(requestHandler == null)
+			throw new IllegalArgumentException("'requestHandler' is null.");			
+
+		if(concurrencyLimit <= 0)
+	        throw new IllegalArgumentException(String.format("The concurreny limit '%d' is illegal. A valid value is greater than or equal to 1.", concurrencyLimit));	
+
+		if(guestAccess == null)
+			throw new IllegalArgumentException("'guestAccess' is null.");		
+
+		synchronized(mutex)
+		{
+			if(procedures.containsKey(procedureName) == false)
+			{				
+				AppProcedure appProcedure = new AppProcedure(requestHandler, concurrencyLimit, guestAccess);
+				procedures.put(procedureName, appProcedure);
+			}
+			else
+			{
+				throw new IllegalArgumentException(String.format("The procedure '%s' has already been registered.", procedureName));
+			}
+		}
+	}
+	
+	public void setWaitQueue(String procedureName, int queueCapacity, int queueTimeoutMillis)
+	{
+		if(queueCapacity < 0)
+			throw new IllegalArgumentException("The value of 'queueCapacity' must not be negative.");
+		if(queueTimeoutMillis <= 0)
+			throw new IllegalArgumentException("The value of 'queueTimeoutMillis' must be greater than zero.");
+		
+		synchronized(mutex)
+		{
+			AppProcedure appProcedure = procedures.get(procedureName);
+			if(appProcedure == null)
+				throw new IllegalArgumentException(String.format("The procedure '%s' has not been registered.", procedureName));
+			appProcedure.queueCapacity = queueCapacity;
+			appProcedure.queueTimeoutMillis = queueTimeoutMillis;
+		}
+	}
+	
+	public void setMaxHoldTime(String procedureName, int maxHoldMillis)
+	{
+		if(maxHoldMillis < 0)
+			throw new IllegalArgumentException("The value of 'maxHoldMillis' must not be negative.");
+		
+		synchronized(mutex)
+		{
+			AppProcedure appProcedure = procedures.get(procedureName);
+			if(appProcedure == null)
+				throw new IllegalArgumentException(String.format("The procedure '%s' has not been registered.", procedureName));
+			appProcedure.maxHoldMillis = maxHoldMillis;
+		}
+	}
+	
 	public void remove(String procedureName)
 	{
 		synchronized(mutex)
 		{
-			procedures.remove(procedureName);
+			AppProcedure appProcedure = procedures.remove(procedureName);
+			if(appProcedure != null)
+				membership.getAccessCache().invalidateResource(appProcedure);
 		}		
 	}
 	
@@ -150,8 +278,7 @@ class RPCController
 	private ServiceEndpoint serviceEndpoint;
  	private Membership membership;
 	private Hashtable<String, AppProcedure> procedures;
-	
-	private int concurrentRequests;
+	private HashSet<AsyncCompletion> heldCompletions = new HashSet<AsyncCompletion>();
 	
 	private void processMessage_Request(byte[] message, final Channel channel) throws AsnException, SoftnetException
 	{
@@ -165,7 +292,11 @@ class RPCController
 		byte[] sessionTagEncoding = null;
 		if(asnSequence.exists(1))
 			sessionTagEncoding = asnSequence.OctetString();
+		long waitMillis = 0;
+		if(asnSequence.exists(2))
+			waitMillis = asnSequence.Int64();
 		asnSequence.end();
+		final long deadline = waitMillis > 0 ? SystemClock.milliSeconds() + waitMillis : 0;
 		
 		SequenceDecoder arguments = null;
 		SequenceDecoder sessionTag = null;
@@ -196,55 +327,16 @@ class RPCController
 			return;
 		}
 		
-		if(appProcedure.roles != null)
+		if(membership.getAccessCache().isAllowed(appProcedure, appProcedure.roleSet, appProcedure.guestAccess, user) == false)
 		{
-			if(user.isGuest())
-			{
-				channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.ACCESS_DENIED));
-				return;				
-			}
-			
-			boolean userAllowed = false;
-			for(String role: appProcedure.roles)
-			{
-				if(user.isInRole(role))
-				{
-					userAllowed = true;
-					break;
-				}
-			}
-			
-			if(userAllowed == false)
-			{
-				channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.ACCESS_DENIED));
-				return;		
-			}			
-		}
-		else if(appProcedure.guestAccess != null) 
-		{
-			if(appProcedure.guestAccess == GuestAccess.GuestDenied)
-			{
-				if(user.isGuest())
-				{
-					channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.ACCESS_DENIED));
-					return;
-				}
-			}			
-			else if(user.isStatelessGuest()) // appProcedure.guestAccess == GuestAccess.StatelessGuestDenied
-			{
-				channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.ACCESS_DENIED));
-				return;
-			}			
+			channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.ACCESS_DENIED));
+			return;
 		}
 		
-		synchronized(mutex)
+		if(appProcedure.asyncRequestHandler != null)
 		{
-			if(concurrentRequests >= appProcedure.concurrencyLimit)
-			{
-				channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.SERVICE_BUSY));
-				return;
-			}				
-			concurrentRequests++;
+			admit(appProcedure, createAsyncRunnable(appProcedure, user, channel, transactionUid, userKind, clientId, arguments, sessionTag, deadline), channel, transactionUid, userKind, clientId, deadline);
+			return;
 		}
 		
 		final SequenceDecoder f_arguments = arguments;
@@ -258,6 +350,9 @@ class RPCController
 			{
 				try
 				{
+					if(isExpired(deadline))
+						return;
+					
 					ASNEncoder asnResultEncoder = new ASNEncoder();
 					SequenceEncoder result = asnResultEncoder.Sequence();
 					
@@ -266,7 +361,7 @@ class RPCController
 					
 					if(user.isStatelessGuest() == false)
 					{
-						int errorCode = f_appProcedure.requestHandler.execute(new RequestContext(serviceEndpoint, user, clientId, f_sessionTag), f_arguments, result, error);
+						int errorCode = f_appProcedure.requestHandler.execute(new RequestContext(serviceEndpoint, user, clientId, f_sessionTag, deadline), f_arguments, result, error);
 						if(errorCode == 0) {
 							if(asnResultEncoder.getSize() > 65536)
 								throw new IllegalArgumentException("The size of the data in the 'result' parameter exceeds 64 kilobytes (65536 bytes)."); 								
@@ -280,7 +375,7 @@ class RPCController
 					}
 					else
 					{
-						int errorCode = f_appProcedure.requestHandler.execute(new RequestContext(serviceEndpoint, user, 0, f_sessionTag), f_arguments, result, error);
+						int errorCode = f_appProcedure.requestHandler.execute(new RequestContext(serviceEndpoint, user, 0, f_sessionTag, deadline), f_arguments, result, error);
 						if(errorCode == 0) {
 							if(asnResultEncoder.getSize() > 65536)
 								throw new IllegalArgumentException("The size of the data in the 'result' parameter exceeds 64 kilobytes (65536 bytes)."); 								
@@ -295,25 +390,170 @@ class RPCController
 				}
 				finally
 				{
-					synchronized(mutex)
-					{
-						concurrentRequests--;
-					}
+					onRequestCompleted(f_appProcedure);
 				}
 			}
 		};
 		
+		admit(appProcedure, runnable, channel, transactionUid, userKind, clientId, deadline);
+	}
+	
+	private Runnable createAsyncRunnable(final AppProcedure appProcedure, final MembershipUser user, final Channel channel, final byte[] transactionUid, final int userKind, final long clientId, final SequenceDecoder arguments, final SequenceDecoder sessionTag, final long deadline)
+	{
+		final AsyncCompletion completion = new AsyncCompletion(appProcedure, channel, transactionUid, userKind, clientId);
+		
+		return new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(isExpired(deadline) || hold(completion, deadline) == false)
+				{
+					completion.abandon();
+					return;
+				}
+				
+				try
+				{
+					long contextClientId = user.isStatelessGuest() ? 0 : clientId;
+					appProcedure.asyncRequestHandler.execute(new RequestContext(serviceEndpoint, user, contextClientId, sessionTag, deadline), arguments, completion);
+				}
+				catch(RuntimeException e)
+				{
+					completion.abandon();
+					throw e;
+				}
+			}
+		};
+	}
+	
+	// An async request keeps its concurrency slot only until the request deadline or the procedure's max hold time
+	// passes, or the channel closes. After that the completion is abandoned and the slot goes to the next request.
+	private boolean hold(AsyncCompletion completion, long deadline)
+	{
+		long currentTime = SystemClock.milliSeconds();
+		synchronized(mutex)
+		{
+			if(completion.channel.isClosed())
+				return false;
+			
+			long holdDeadline = completion.appProcedure.maxHoldMillis > 0 ? currentTime + completion.appProcedure.maxHoldMillis : 0;
+			if(deadline != 0 && (holdDeadline == 0 || deadline < holdDeadline))
+				holdDeadline = deadline;
+			
+			if(holdDeadline != 0)
+			{
+				Acceptor<Object> acceptor = new Acceptor<Object>()
+				{
+					public void accept(Object state) { ((AsyncCompletion)state).abandon(); }
+				};
+				completion.holdControlTask = new ScheduledTask(acceptor, completion);
+				serviceEndpoint.scheduler.addMillis(completion.holdControlTask, Math.max(holdDeadline - currentTime, 1));
+			}
+			heldCompletions.add(completion);
+			return true;
+		}
+	}
+	
+	public void onEndpointDisconnected()
+	{
+		AsyncCompletion[] completions;
+		synchronized(mutex)
+		{
+			completions = heldCompletions.toArray(new AsyncCompletion[heldCompletions.size()]);
+			heldCompletions.clear();
+		}
+		for(AsyncCompletion completion: completions)
+			completion.abandon();
+	}
+	
+	private void admit(AppProcedure appProcedure, Runnable runnable, Channel channel, byte[] transactionUid, int userKind, long clientId, long deadline)
+	{
+		synchronized(mutex)
+		{
+			if(appProcedure.concurrentRequests >= appProcedure.concurrencyLimit)
+			{
+				if(appProcedure.waitQueue.size() >= appProcedure.queueCapacity)
+				{
+					channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.SERVICE_BUSY));
+					return;
+				}
+				
+				PendingRequest pendingRequest = new PendingRequest(appProcedure, runnable, channel, transactionUid, userKind, clientId, deadline);
+				Acceptor<Object> acceptor = new Acceptor<Object>()
+				{
+					public void accept(Object state) { onQueueTimeoutExpired(state); }
+				};
+				pendingRequest.timeoutControlTask = new ScheduledTask(acceptor, pendingRequest);
+				appProcedure.waitQueue.add(pendingRequest);
+				long queueTimeoutMillis = appProcedure.queueTimeoutMillis;
+				if(deadline != 0)
+					queueTimeoutMillis = Math.max(Math.min(queueTimeoutMillis, deadline - SystemClock.milliSeconds()), 1);
+				serviceEndpoint.scheduler.addMillis(pendingRequest.timeoutControlTask, queueTimeoutMillis);
+				return;
+			}
+			appProcedure.concurrentRequests++;
+		}
+		
+		if(execute(runnable, channel, transactionUid, userKind, clientId) == false)
+			onRequestCompleted(appProcedure);
+	}
+	
+	private boolean execute(Runnable runnable, Channel channel, byte[] transactionUid, int userKind, long clientId)
+	{
 		try
 		{
 			serviceEndpoint.threadPool.execute(runnable);
+			return true;
 		}
 		catch(java.util.concurrent.RejectedExecutionException e)
 		{
+			channel.send(EncodeMessage_SoftnetError(transactionUid, userKind, clientId, ErrorCodes.SERVICE_BUSY));
+			return false;
+		}		
+	}
+	
+	private void onRequestCompleted(AppProcedure appProcedure)
+	{
+		while(true)
+		{
+			PendingRequest pendingRequest = null;
 			synchronized(mutex)
 			{
-				concurrentRequests--;
+				appProcedure.concurrentRequests--;
+				while(appProcedure.waitQueue.size() > 0)
+				{
+					PendingRequest nextRequest = appProcedure.waitQueue.removeFirst();
+					if(nextRequest.timeoutControlTask.cancel() && nextRequest.channel.isClosed() == false && isExpired(nextRequest.deadline) == false)
+					{
+						pendingRequest = nextRequest;
+						appProcedure.concurrentRequests++;
+						break;
+					}
+				}
 			}
-		}		
+			
+			if(pendingRequest == null || execute(pendingRequest.runnable, pendingRequest.channel, pendingRequest.transactionUid, pendingRequest.userKind, pendingRequest.clientId))
+				return;
+		}
+	}
+	
+	private void onQueueTimeoutExpired(Object state)
+	{
+		PendingRequest pendingRequest = (PendingRequest)state;
+		synchronized(mutex)
+		{
+			if(pendingRequest.appProcedure.waitQueue.remove(pendingRequest) == false)
+				return;
+		}
+		if(isExpired(pendingRequest.deadline))
+			return;
+		pendingRequest.channel.send(EncodeMessage_SoftnetError(pendingRequest.transactionUid, pendingRequest.userKind, pendingRequest.clientId, ErrorCodes.SERVICE_BUSY));
+	}
+	
+	private boolean isExpired(long deadline)
+	{
+		return deadline != 0 && SystemClock.milliSeconds() >= deadline;
 	}
 	
 	private SoftnetMessage EncodeMessage_Result(byte[] transactionUid, int userKind, long clientId, ASNEncoder asnResultEncoder)
@@ -365,13 +605,21 @@ class RPCController
 	private class AppProcedure
 	{
 		public final RPCRequestHandler requestHandler;
+		public final AsyncRPCRequestHandler asyncRequestHandler;
 		public final GuestAccess guestAccess;
 		public final String[] roles;
+		public BitSet roleSet = null;
 		public final int concurrencyLimit;
+		public int concurrentRequests = 0;
+		public int queueCapacity = 0;
+		public int queueTimeoutMillis = 0;
+		public int maxHoldMillis = 0;
+		public LinkedList<PendingRequest> waitQueue = new LinkedList<PendingRequest>();
 		
 		public AppProcedure(RPCRequestHandler requestHandler, int concurrencyLimit)
 		{
 			this.requestHandler = requestHandler;
+			this.asyncRequestHandler = null;
 			this.concurrencyLimit = concurrencyLimit;
 			guestAccess = null;
 			roles = null;
@@ -380,6 +628,7 @@ class RPCController
 		public AppProcedure(RPCRequestHandler requestHandler, int concurrencyLimit, GuestAccess guestAccess)
 		{
 			this.requestHandler = requestHandler;
+			this.asyncRequestHandler = null;
 			this.concurrencyLimit = concurrencyLimit;
 			this.guestAccess = guestAccess;
 			roles = null;
@@ -388,10 +637,114 @@ class RPCController
 		public AppProcedure(RPCRequestHandler requestHandler, int concurrencyLimit, String[] roles)
 		{
 			this.requestHandler = requestHandler;
+			this.asyncRequestHandler = null;
 			this.concurrencyLimit = concurrencyLimit;
 			this.roles = roles;
 			guestAccess = null;
 		}
+
+		public AppProcedure(AsyncRPCRequestHandler requestHandler, int concurrencyLimit)
+		{
+			this.asyncRequestHandler = requestHandler;
+			this.requestHandler = null;
+			this.concurrencyLimit = concurrencyLimit;
+			guestAccess = null;
+			roles = null;
+		}
+
+		public AppProcedure(AsyncRPCRequestHandler requestHandler, int concurrencyLimit, GuestAccess guestAccess)
+		{
+			this.asyncRequestHandler = requestHandler;
+			this.requestHandler = null;
+			this.concurrencyLimit = concurrencyLimit;
+			this.guestAccess = guestAccess;
+			roles = null;
+		}
+
+		public AppProcedure(AsyncRPCRequestHandler requestHandler, int concurrencyLimit, String[] roles)
+		{
+			this.asyncRequestHandler = requestHandler;
+			this.requestHandler = null;
+			this.concurrencyLimit = concurrencyLimit;
+			this.roles = roles;
+			guestAccess = null;
+		}
+	}
+
+	private class AsyncCompletion extends RPCCompletion
+	{
+		public final AppProcedure appProcedure;
+		public final Channel channel;
+		public final byte[] transactionUid;
+		public final int userKind;
+		public final long clientId;
+		public ScheduledTask holdControlTask = null;
+		
+		public AsyncCompletion(AppProcedure appProcedure, Channel channel, byte[] transactionUid, int userKind, long clientId)
+		{
+			this.appProcedure = appProcedure;
+			this.channel = channel;
+			this.transactionUid = transactionUid;
+			this.userKind = userKind;
+			this.clientId = clientId;
+		}
+		
+		void onCompleted(int errorCode, ASNEncoder asnEncoder)
+		{
+			release();
+			try
+			{
+				if(errorCode == 0)
+					channel.send(EncodeMessage_Result(transactionUid, userKind, clientId, asnEncoder));
+				else
+					channel.send(EncodeMessage_AppError(transactionUid, userKind, clientId, errorCode, asnEncoder));
+			}
+			finally
+			{
+				onRequestCompleted(appProcedure);
+			}
+		}
+		
+		void onAbandoned()
+		{
+			release();
+			onRequestCompleted(appProcedure);
+		}
+		
+		private void release()
+		{
+			ScheduledTask task;
+			synchronized(mutex)
+			{
+				heldCompletions.remove(this);
+				task = holdControlTask;
+			}
+			if(task != null)
+				task.cancel();
+		}
+	}
+	
+	private class PendingRequest
+	{
+		public final AppProcedure appProcedure;
+		public final Runnable runnable;
+		public final Channel channel;
+		public final byte[] transactionUid;
+		public final int userKind;
+		public final long clientId;
+		public final long deadline;
+		public ScheduledTask timeoutControlTask;
+		
+		public PendingRequest(AppProcedure appProcedure, Runnable runnable, Channel channel, byte[] transactionUid, int userKind, long clientId, long deadline)
+		{
+			this.appProcedure = appProcedure;
+			this.runnable = runnable;
+			this.channel = channel;
+			this.transactionUid = transactionUid;
+			this.userKind = userKind;
+			this.clientId = clientId;
+			this.deadline = deadline;
+		}
 	}
 
 	private void validateProcedureName(String procedureName)
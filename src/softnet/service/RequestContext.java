@@ -18,12 +18,15 @@ package softnet.service;
 
 import softnet.MembershipUser;
 import softnet.asn.SequenceDecoder;
+import softnet.core.SystemClock;
 
 public class RequestContext {
 	public final ServiceEndpoint serviceEndpoint;
 	public final MembershipUser user;
 	public final long clientId;
 	public final SequenceDecoder sessionTag; 
+	// The deadline is measured by SystemClock.milliSeconds(), not by the wall clock.
+	public final long deadline;
 
 	public RequestContext(ServiceEndpoint serviceEndpoint, MembershipUser user, long clientId, SequenceDecoder sessionTag)
 	{
@@ -31,5 +34,27 @@ public class RequestContext {
 		this.user = user;
 		this.clientId = clientId;
 		this.sessionTag = sessionTag;
+		this.deadline = 0;
+	}
+
+	public RequestContext(ServiceEndpoint serviceEndpoint, MembershipUser user, long clientId, SequenceDecoder sessionTag, long deadline)
+	{
+		this.serviceEndpoint = serviceEndpoint;
+		this.user = user;
+		this.clientId = clientId;
+		this.sessionTag = sessionTag;
+		this.deadline = deadline;
+	}
+	
+	public boolean hasDeadline()
+	{
+		return deadline != 0;
+	}
+	
+	public long getRemainingMillis()
+	{
+		if(deadline == 0)
+			return Long.MAX_VALUE;
+		return Math.max(deadline - SystemClock.milliSeconds(), 0);
 	}
 }
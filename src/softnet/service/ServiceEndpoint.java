@@ -31,6 +31,11 @@ public class ServiceEndpoint
 	}
 	
 	public static ServiceEndpoint create(SiteStructure siteStructure, String version, ServiceURI serviceURI, String password) throws HostErrorSoftnetException
+	{
+		return create(siteStructure, version, serviceURI, password, null);
+	}
+	
+	public static ServiceEndpoint create(SiteStructure siteStructure, String version, ServiceURI serviceURI, String password, SoftnetRuntime softnetRuntime) throws HostErrorSoftnetException
 	{
 		if(siteStructure == null)
 			throw new IllegalArgumentException("'siteStructure' must not be null.");
@@ -52,20 +57,30 @@ public class ServiceEndpoint
 		if (password.length() > 256)
 			throw new IllegalArgumentException("The length of 'password' must not be greater than 256.");
 		
-		ServiceEndpoint service = new ServiceEndpoint();
+		ServiceEndpoint service = new ServiceEndpoint(softnetRuntime);
 		service.initialize((SiteStructureAdapter)siteStructure, version, serviceURI, password);
 		return service;
 	}
 		
-	private ServiceEndpoint()
+	private ServiceEndpoint(SoftnetRuntime softnetRuntime)
 	{
-		threadPool = new ThreadPool();
-		scheduler = new Scheduler(threadPool);
+		if(softnetRuntime != null)
+		{
+			threadPool = softnetRuntime.createThreadPool();
+			scheduler = softnetRuntime.createScheduler(threadPool);
+		}
+		else
+		{
+			threadPool = new ThreadPool();
+			scheduler = new Scheduler(threadPool);
+		}
+		writeCoalescing = new WriteCoalescing(scheduler);
 	}
 
 	private void initialize(SiteStructureAdapter siteStructure, String version, ServiceURI serviceURI, String password) throws HostErrorSoftnetException
 	{
 		siteStructure.commit();
+		this.serviceURI = serviceURI;
 		
 		threadPool.init();
 		scheduler.init();
@@ -206,6 +221,18 @@ public class ServiceEndpoint
 		endpointConnector.setLocalPingPeriod(seconds);
 	}
 	
+	// Applies to the connection with the Softnet server. With a non-zero flush delay, messages sent within the delay
+	// are written together in one gathering write of at most 'maxBatchBytes'.
+	public void setWriteCoalescing(int maxBatchBytes, int flushDelayMillis)
+	{
+		writeCoalescing.setLimits(maxBatchBytes, flushDelayMillis);
+	}
+	
+	public WriteStatistics getWriteStatistics()
+	{
+		return new WriteStatistics(writeCoalescing.getWriteCount(), writeCoalescing.getMessageCount());
+	}
+	
 	public boolean isGuestAllowed()
 	{
 		return membership.isGuestAllowed(); 
@@ -261,6 +288,29 @@ public class ServiceEndpoint
 		eventController.setPersistenceL2(servicePersistence, memoryStorageCapacity);
 	}
 	
+	public void setMembershipSnapshot(String snapshotDirectory)
+	{
+		if(snapshotDirectory == null || snapshotDirectory.length() == 0)
+			throw new IllegalArgumentException("'snapshotDirectory' must not be null or empty.");
+		
+		String fileName = "softnet.service.membership_" + serviceURI.serviceUid.toString() + ".ssm";
+		membership.setSnapshotFile(new SnapshotFile(snapshotDirectory + java.io.File.separator + fileName));
+	}
+	
+	public void setEventDeliveryWindow(int windowSize)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.setDeliveryWindow(windowSize);
+	}
+	
+	public void setEventDeliveryWindow(String eventName, int windowSize)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.setDeliveryWindow(eventName, windowSize);
+	}
+	
 	public void addEventListener(ServiceEventListener listener)
 	{
 		synchronized(eventListeners)
@@ -306,6 +356,27 @@ public class ServiceEndpoint
 		eventController.raiseEvent(event);
 	}
 	
+	public void raiseEvents(ReplacingEvent[] events)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvents(events);
+	}
+
+	public void raiseEvents(QueueingEvent[] events)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvents(events);
+	}
+
+	public void raiseEvents(PrivateEvent[] events)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvents(events);
+	}
+
 	public void registerProcedure(String procedureName, RPCRequestHandler requestHandler, int concurrencyLimit)
 	{
 		rpcController.register(procedureName, requestHandler, concurrencyLimit);
@@ -321,6 +392,32 @@ public class ServiceEndpoint
 		rpcController.register(procedureName, requestHandler, concurrencyLimit, roles);
 	}
 	
+	public void registerProcedure(String procedureName, AsyncRPCRequestHandler requestHandler, int concurrencyLimit)
+	{
+		rpcController.register(procedureName, requestHandler, concurrencyLimit);
+	}
+	
+	public void registerProcedure(String procedureName, AsyncRPCRequestHandler requestHandler, int concurrencyLimit, GuestAccess guestAccess)
+	{
+		rpcController.register(procedureName, requestHandler, concurrencyLimit, guestAccess);
+	}
+
+	public void registerProcedure(String procedureName, AsyncRPCRequestHandler requestHandler, int concurrencyLimit, String roles)
+	{
+		rpcController.register(procedureName, requestHandler, concurrencyLimit, roles);
+	}
+	
+	public void setProcedureWaitQueue(String procedureName, int queueCapacity, int queueTimeoutMillis)
+	{
+		rpcController.setWaitQueue(procedureName, queueCapacity, queueTimeoutMillis);
+	}
+	
+	// Zero, the default, lets an async request hold its concurrency slot until the request deadline or a disconnect.
+	public void setProcedureMaxHoldTime(String procedureName, int maxHoldMillis)
+	{
+		rpcController.setMaxHoldTime(procedureName, maxHoldMillis);
+	}
+	
 	public void tcpListen(int virtualPort, TCPOptions tcpOptions, int backlog)
 	{
 		tcpController.listen(virtualPort, tcpOptions, backlog);
@@ -374,8 +471,10 @@ public class ServiceEndpoint
 	protected Object endpoint_mutex = new Object();
 	protected ThreadPool threadPool;
 	protected Scheduler scheduler;
+	protected WriteCoalescing writeCoalescing;
 	private SyncController stateController;
 	private Membership membership;
+	private ServiceURI serviceURI;
 	private ServiceInstaller serviceInstaller;
 	private TCPController tcpController;
 	private UDPController udpController;
@@ -405,6 +504,7 @@ public class ServiceEndpoint
 		membership.onEndpointDisconnected();
 		tcpController.onEndpointDisconnected();
 		udpController.onEndpointDisconnected();
+		rpcController.onEndpointDisconnected();
 		if(eventController != null)
 			eventController.onEndpointDisconnected();
 	}	
@@ -16,31 +16,48 @@
 
 package softnet.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.zip.CRC32;
 
 import softnet.asn.*;
+import softnet.core.GroupCommit;
+import softnet.core.Threads;
 import softnet.exceptions.*;
 import softnet.utils.ByteConverter;
 
 class ServiceFilePersistence implements ServicePersistence
 {
+	private static final int CheckpointMagic = 0x53535043;
+	private static final int CompactionSliceBytes = 262144;
+	
 	private ServiceFilePersistence(UUID serviceUid, long storageCapacity)
 	{
 		this.serviceUid = serviceUid;
 		this.storageCapacity = storageCapacity;
-		replacingEvents = new LinkedList<REvent>();
-		queueingEvents = new LinkedList<QEvent>();
-		privateEvents = new LinkedList<PEvent>();
+		replacingEvents = new HashMap<String, REvent>();
+		queueingEvents = new HashMap<String, QEvent>();
+		privateEvents = new HashMap<String, PEvent>();
 		isInStorageMode = true;
 		storageUid = null;
+		checkpointInterval = Math.max(65536, storageCapacity / 64);
+		compactionThreshold = storageCapacity / 4;
+		compaction = null;
 	}
 	
 	private Object mutex = new Object();
@@ -49,17 +66,25 @@ class ServiceFilePersistence implements ServicePersistence
 	private UUID storageUid;
 	private String filePath;
 	private RandomAccessFile storageFile;	
+	private GroupCommit groupCommit;
 	private long storageCapacity;
 	private boolean isClosed = false;
 	
-	private LinkedList<REvent> replacingEvents;
-	private LinkedList<QEvent> queueingEvents;
-	private LinkedList<PEvent> privateEvents;
+	private HashMap<String, REvent> replacingEvents;
+	private HashMap<String, QEvent> queueingEvents;
+	private HashMap<String, PEvent> privateEvents;
 	
 	private boolean isInStorageMode;
 	private long tailPosition;
 	private long headPosition;
 	private long ancientDataTailPosition;
+	private long checkpointPosition;
+	private long checkpointInterval;
+	private boolean isCheckpointWriting = false;
+	private long storageGeneration = 0;
+	private long acknowledgedBytes;
+	private long compactionThreshold;
+	private Compaction compaction;
 	private PeekedRecord peekedRecord;
 	private int unacknowledgedEvents;	
 	
@@ -87,7 +112,7 @@ class ServiceFilePersistence implements ServicePersistence
 			String fileName = "softnet.service.persistence_" + serviceUid.toString() + ".ssp";			
 			String filePath = directory + File.separator + fileName;
 			
-			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rwd");
+			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rw");
 			
 			ServiceFilePersistence sfp = new ServiceFilePersistence(serviceUid, storageCapacity);
 			sfp.load(file, filePath);
@@ -117,7 +142,7 @@ class ServiceFilePersistence implements ServicePersistence
 		{			
 			String fileName = "softnet.service.persistence_" + serviceUid.toString() + ".ssp";			
 			String filePath = directory + File.separator + fileName;			
-			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rwd");
+			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rw");
 			ServiceFilePersistence sfp = new ServiceFilePersistence(serviceUid, storageCapacity);
 			sfp.load(file, filePath);
 			return sfp;
@@ -138,12 +163,15 @@ class ServiceFilePersistence implements ServicePersistence
 		{
 			this.storageFile = file;
 			this.filePath = filePath;									
+			this.groupCommit = new GroupCommit(file.getChannel());
+			new File(filePath + ".compact").delete();
 			peekedRecord = null;
 
 			long fileLength = storageFile.length();
 			
 			headPosition = 32;
 			tailPosition = 32;
+			onTruncated();
 			ancientDataTailPosition = 32;
 			
 			if(fileLength < 32)
@@ -177,7 +205,8 @@ class ServiceFilePersistence implements ServicePersistence
 				return;
 						
 			byte[] buffer = new byte[128];			
-			long currentPosition = 32;
+			long currentPosition = loadCheckpoint(fileLength);
+			checkpointPosition = currentPosition;
 			
 			try
 			{
@@ -239,51 +268,33 @@ class ServiceFilePersistence implements ServicePersistence
 					
 					if(messageKind == 1)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
+						REvent rEvent = replacingEvents.get(eventName);
 						
 						if(rEvent == null)
 						{
 							rEvent = new REvent(eventName);
-							replacingEvents.add(rEvent);						
+							replacingEvents.put(rEvent.name, rEvent);						
 							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, false);
 						}
 						else
 						{
-							storageFile.seek(rEvent.lastInstance.position + 2);
-							storageFile.writeByte(1);
+							setAcknowledged(rEvent.lastInstance.position, rEvent.lastInstance.size);
 							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, false);						
 						}
 					}
 					else if(messageKind == 5)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
+						REvent rEvent = replacingEvents.get(eventName);
 						
 						if(rEvent == null)
 						{
 							rEvent = new REvent(eventName);
-							replacingEvents.add(rEvent);						
+							replacingEvents.put(rEvent.name, rEvent);						
 							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, true);
 						}
 						else
 						{
-							storageFile.seek(rEvent.lastInstance.position + 2);
-							storageFile.writeByte(1);
+							setAcknowledged(rEvent.lastInstance.position, rEvent.lastInstance.size);
 							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, true);						
 						}
 					}
@@ -302,10 +313,518 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
+	private long loadCheckpoint(long fileLength)
+	{
+		File checkpointFile = new File(filePath + ".ckp");
+		if(checkpointFile.exists() == false)
+			return 32;
+		
+		try
+		{
+			byte[] data = java.nio.file.Files.readAllBytes(checkpointFile.toPath());
+			if(data.length < 8)
+				return 32;
+			
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, data.length - 4);
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+			input.skip(data.length - 4);
+			if((int)crc.getValue() != input.readInt())
+				return 32;
+			
+			input = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+			if(input.readInt() != CheckpointMagic)
+				return 32;
+			if(serviceUid.equals(new UUID(input.readLong(), input.readLong())) == false)
+				return 32;
+			if(storageUid.equals(new UUID(input.readLong(), input.readLong())) == false)
+				return 32;
+			
+			long checkpointTail = input.readLong();
+			long firstLivePosition = input.readLong();
+			if(checkpointTail <= 32 || checkpointTail > fileLength || firstLivePosition < 32 || firstLivePosition > checkpointTail)
+				return 32;
+			
+			int firstRecordSize = input.readInt();
+			if(getRecordChecksum(storageFile.getChannel(), 32, firstRecordSize, checkpointTail) != input.readInt())
+				return 32;
+			
+			HashMap<String, REvent> events = new HashMap<String, REvent>();
+			ArrayList<Long> supersededRecords = new ArrayList<Long>();
+			int count = input.readInt();
+			for(int i = 0; i < count; i++)
+			{
+				String eventName = input.readUTF();
+				long position = input.readLong();
+				int size = input.readInt();
+				int headerSize = input.readInt();
+				boolean isNull = input.readBoolean();
+				int checksum = input.readInt();
+				long supersededPosition = input.readLong();
+				int supersededSize = input.readInt();
+				int supersededChecksum = input.readInt();
+				
+				if(position < 32 || getRecordChecksum(storageFile.getChannel(), position, size, checkpointTail) != checksum)
+					return 32;
+				if(supersededPosition != 0 && getRecordChecksum(storageFile.getChannel(), supersededPosition, supersededSize, checkpointTail) != supersededChecksum)
+					return 32;
+				
+				if(supersededPosition != 0)
+					supersededRecords.add(supersededPosition);
+				
+				storageFile.seek(position + 2);
+				if(storageFile.readByte() != 0)
+					continue;
+				
+				REvent rEvent = new REvent(eventName);
+				rEvent.lastInstance = new RERecord(position, size, headerSize, isNull);
+				events.put(eventName, rEvent);
+			}
+			
+			for(long position: supersededRecords)
+			{
+				storageFile.seek(position + 2);
+				storageFile.writeByte(1);
+				groupCommit.register();
+			}
+			
+			replacingEvents.putAll(events);
+			headPosition = firstLivePosition;
+			return checkpointTail;
+		}
+		catch(IOException ex)
+		{
+			return 32;
+		}
+	}
+	
+	private void saveCheckpoint()
+	{
+		if(tailPosition <= 32)
+		{
+			new File(filePath + ".ckp").delete();
+			checkpointPosition = tailPosition;
+			return;
+		}
+		
+		if(isCheckpointWriting)
+			return;
+		
+		final CheckpointSnapshot snapshot = takeCheckpointSnapshot();
+		isCheckpointWriting = true;
+		checkpointPosition = tailPosition;
+		Threads.start(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				writeCheckpoint(snapshot);
+			}
+		});
+	}
+	
+	// The checkpoint is written without holding the mutex. It replaces the previous one only if the storage
+	// has not been truncated, compacted or closed in the meantime.
+	private void writeCheckpoint(CheckpointSnapshot snapshot)
+	{
+		File tempFile = new File(filePath + ".ckp.tmp");
+		try
+		{
+			writeCheckpointFile(snapshot, tempFile);
+			synchronized(mutex)
+			{
+				if(isClosed == false && snapshot.storageGeneration == storageGeneration)
+					replaceCheckpointFile(tempFile);
+				else
+					tempFile.delete();
+			}
+		}
+		catch(IOException ex)
+		{
+			tempFile.delete();
+		}
+		finally
+		{
+			synchronized(mutex)
+			{
+				isCheckpointWriting = false;
+				mutex.notifyAll();
+			}
+		}
+	}
+	
+	private void saveCheckpointOnClose()
+	{
+		while(isCheckpointWriting)
+		{
+			try
+			{
+				mutex.wait();
+			}
+			catch(InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		
+		File tempFile = new File(filePath + ".ckp.tmp");
+		try
+		{
+			writeCheckpointFile(takeCheckpointSnapshot(), tempFile);
+			replaceCheckpointFile(tempFile);
+			checkpointPosition = tailPosition;
+		}
+		catch(IOException ex)
+		{
+			tempFile.delete();
+		}
+	}
+	
+	private CheckpointSnapshot takeCheckpointSnapshot()
+	{
+		long firstLivePosition = tailPosition;
+		if(isInStorageMode)
+		{
+			firstLivePosition = headPosition;
+		}
+		else
+		{
+			for(REvent rEvent: replacingEvents.values())
+			{
+				if(rEvent.currentInstance != null)
+					firstLivePosition = Math.min(firstLivePosition, rEvent.currentInstance.position);
+				if(rEvent.lastInstance != null)
+					firstLivePosition = Math.min(firstLivePosition, rEvent.lastInstance.position);
+			}
+			for(QEvent qEvent: queueingEvents.values())
+			{
+				if(qEvent.instanceQueue.isEmpty() == false)
+					firstLivePosition = Math.min(firstLivePosition, qEvent.instanceQueue.element().position);
+			}
+			for(PEvent pEvent: privateEvents.values())
+			{
+				if(pEvent.instanceQueue.isEmpty() == false)
+					firstLivePosition = Math.min(firstLivePosition, pEvent.instanceQueue.element().position);
+			}
+		}
+		
+		CheckpointSnapshot snapshot = new CheckpointSnapshot(storageFile.getChannel(), storageGeneration, storageUid, tailPosition, firstLivePosition);
+		for(REvent rEvent: replacingEvents.values())
+		{
+			if(rEvent.lastInstance == null && rEvent.currentInstance == null)
+				continue;
+			
+			RERecord record = rEvent.lastInstance != null ? rEvent.lastInstance : rEvent.currentInstance;
+			CheckpointEntry entry = new CheckpointEntry(rEvent.name, record);
+			if(rEvent.lastInstance != null && rEvent.currentInstance != null)
+			{
+				entry.supersededPosition = rEvent.currentInstance.position;
+				entry.supersededSize = rEvent.currentInstance.size;
+			}
+			snapshot.entries.add(entry);
+		}
+		return snapshot;
+	}
+	
+	private void writeCheckpointFile(CheckpointSnapshot snapshot, File tempFile) throws IOException
+	{
+		snapshot.channel.force(false);
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(CheckpointMagic);
+		output.writeLong(serviceUid.getMostSignificantBits());
+		output.writeLong(serviceUid.getLeastSignificantBits());
+		output.writeLong(snapshot.storageUid.getMostSignificantBits());
+		output.writeLong(snapshot.storageUid.getLeastSignificantBits());
+		output.writeLong(snapshot.tailPosition);
+		output.writeLong(snapshot.firstLivePosition);
+		
+		java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(2);
+		snapshot.channel.read(buffer, 32);
+		int firstRecordSize = ByteConverter.toInt32FromInt16(buffer.array(), 0);
+		output.writeInt(firstRecordSize);
+		output.writeInt(getRecordChecksum(snapshot.channel, 32, firstRecordSize, snapshot.tailPosition));
+		
+		output.writeInt(snapshot.entries.size());
+		for(CheckpointEntry entry: snapshot.entries)
+		{
+			output.writeUTF(entry.eventName);
+			output.writeLong(entry.position);
+			output.writeInt(entry.size);
+			output.writeInt(entry.headerSize);
+			output.writeBoolean(entry.isNull);
+			output.writeInt(getRecordChecksum(snapshot.channel, entry.position, entry.size, snapshot.tailPosition));
+			output.writeLong(entry.supersededPosition);
+			output.writeInt(entry.supersededSize);
+			if(entry.supersededPosition != 0)
+				output.writeInt(getRecordChecksum(snapshot.channel, entry.supersededPosition, entry.supersededSize, snapshot.tailPosition));
+			else
+				output.writeInt(0);
+		}
+		output.flush();
+		
+		CRC32 crc = new CRC32();
+		byte[] data = bytes.toByteArray();
+		crc.update(data, 0, data.length);
+		output.writeInt((int)crc.getValue());
+		output.flush();
+		
+		FileOutputStream fileOutput = new FileOutputStream(tempFile);
+		try
+		{
+			fileOutput.write(bytes.toByteArray());
+			fileOutput.getFD().sync();
+		}
+		finally
+		{
+			fileOutput.close();
+		}
+	}
+	
+	private void replaceCheckpointFile(File tempFile) throws IOException
+	{
+		File checkpointFile = new File(filePath + ".ckp");
+		try
+		{
+			java.nio.file.Files.move(tempFile.toPath(), checkpointFile.toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(java.nio.file.AtomicMoveNotSupportedException ex)
+		{
+			java.nio.file.Files.move(tempFile.toPath(), checkpointFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	// Uses positional reads so that it can run outside the mutex without moving the file pointer.
+	private static int getRecordChecksum(java.nio.channels.FileChannel channel, long position, int size, long limit) throws IOException
+	{
+		if(size < 6 || position + size > limit)
+			return 0;
+		
+		java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(size);
+		while(buffer.hasRemaining())
+		{
+			if(channel.read(buffer, position + buffer.position()) < 0)
+				return 0;
+		}
+		byte[] record = buffer.array();
+		record[2] = 0;
+		
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, size);
+		return (int)crc.getValue();
+	}
+
+	private void setAcknowledged(long position, int size) throws IOException
+	{
+		storageFile.seek(position + 2);
+		storageFile.writeByte(1);
+		groupCommit.register();
+		acknowledgedBytes += size;
+		
+		if(compaction != null && position < compaction.scanPosition)
+		{
+			Long targetPosition = compaction.positions.remove(position);
+			if(targetPosition != null)
+			{
+				try
+				{
+					compaction.file.seek(targetPosition + 2);
+					compaction.file.writeByte(1);
+					compaction.acknowledgedBytes += size;
+				}
+				catch(IOException ex)
+				{
+					abortCompaction();
+				}
+			}
+		}
+	}
+	
+	private void onTruncated()
+	{
+		storageGeneration++;
+		checkpointPosition = 32;
+		acknowledgedBytes = 0;
+		abortCompaction();
+	}
+	
+	private void checkCompaction(long requiredBytes)
+	{
+		if(compaction != null || isInStorageMode || acknowledgedBytes == 0)
+			return;
+		
+		long usedBytes = tailPosition - 32;
+		if(tailPosition + requiredBytes > storageCapacity || (usedBytes >= compactionThreshold && acknowledgedBytes * 2 >= usedBytes))
+			startCompaction();
+	}
+	
+	private void startCompaction()
+	{
+		String compactionFilePath = filePath + ".compact";
+		try
+		{
+			File file = new File(compactionFilePath);
+			file.delete();
+			RandomAccessFile compactionFile = new RandomAccessFile(file, "rw");
+			compactionFile.seek(0);
+			compactionFile.write(ByteConverter.getBytes(serviceUid));
+			compactionFile.seek(16);
+			compactionFile.write(ByteConverter.getBytes(storageUid));
+			compaction = new Compaction(compactionFilePath, compactionFile);
+		}
+		catch(IOException ex)
+		{
+			new File(compactionFilePath).delete();
+			return;
+		}
+		
+		final Compaction currentCompaction = compaction;
+		Threads.start(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runCompaction(currentCompaction);
+			}
+		});
+	}
+	
+	private void runCompaction(Compaction currentCompaction)
+	{
+		while(true)
+		{
+			synchronized(mutex)
+			{
+				if(compaction != currentCompaction)
+					return;
+				
+				try
+				{
+					if(compactSlice(currentCompaction))
+						return;
+				}
+				catch(IOException ex)
+				{
+					abortCompaction();
+					return;
+				}
+			}
+			Thread.yield();
+		}
+	}
+	
+	private boolean compactSlice(Compaction currentCompaction) throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		long sliceEnd = Math.min(tailPosition, currentCompaction.scanPosition + CompactionSliceBytes);
+		byte[] buffer = new byte[3];
+		
+		while(currentCompaction.scanPosition < sliceEnd)
+		{
+			storageFile.seek(currentCompaction.scanPosition);
+			storageFile.readFully(buffer, 0, 3);
+			int recordSize = ByteConverter.toInt32FromInt16(buffer, 0);
+			if(recordSize < 6 || currentCompaction.scanPosition + recordSize > tailPosition)
+				throw new IOException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+			
+			if(buffer[2] == 0)
+			{
+				byte[] record = new byte[recordSize];
+				storageFile.seek(currentCompaction.scanPosition);
+				storageFile.readFully(record);
+				currentCompaction.positions.put(currentCompaction.scanPosition, currentCompaction.targetTail + output.size());
+				output.write(record, 0, recordSize);
+			}
+			currentCompaction.scanPosition += recordSize;
+		}
+		
+		if(output.size() > 0)
+		{
+			currentCompaction.file.seek(currentCompaction.targetTail);
+			currentCompaction.file.write(output.toByteArray());
+			currentCompaction.targetTail += output.size();
+		}
+		
+		if(currentCompaction.scanPosition < tailPosition)
+			return false;
+		
+		swapCompaction(currentCompaction);
+		return true;
+	}
+	
+	private void swapCompaction(Compaction currentCompaction) throws IOException
+	{
+		currentCompaction.file.setLength(currentCompaction.targetTail);
+		currentCompaction.file.getChannel().force(false);
+		currentCompaction.file.close();
+		
+		new File(filePath + ".ckp").delete();
+		groupCommit.close();
+		storageFile.close();
+		try
+		{
+			java.nio.file.Files.move(java.nio.file.Paths.get(currentCompaction.filePath), java.nio.file.Paths.get(filePath), java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			storageFile = new RandomAccessFile(new File(filePath), "rw");
+			groupCommit = new GroupCommit(storageFile.getChannel());
+		}
+		
+		for(REvent rEvent: replacingEvents.values())
+		{
+			if(rEvent.currentInstance != null)
+				rEvent.currentInstance.position = currentCompaction.getPosition(rEvent.currentInstance.position);
+			if(rEvent.lastInstance != null)
+				rEvent.lastInstance.position = currentCompaction.getPosition(rEvent.lastInstance.position);
+		}
+		for(QEvent qEvent: queueingEvents.values())
+		{
+			for(QERecord qeRecord: qEvent.instanceQueue)
+				qeRecord.position = currentCompaction.getPosition(qeRecord.position);
+		}
+		for(PEvent pEvent: privateEvents.values())
+		{
+			for(PERecord peRecord: pEvent.instanceQueue)
+				peRecord.position = currentCompaction.getPosition(peRecord.position);
+		}
+		
+		headPosition = 32;
+		ancientDataTailPosition = 32;
+		tailPosition = currentCompaction.targetTail;
+		acknowledgedBytes = currentCompaction.acknowledgedBytes;
+		compaction = null;
+		
+		storageGeneration++;
+		checkpointPosition = 32;
+		saveCheckpoint();
+	}
+	
+	private void abortCompaction()
+	{
+		if(compaction == null)
+			return;
+		
+		try
+		{
+			compaction.file.close();
+		}
+		catch(IOException ex) {}
+		new File(compaction.filePath).delete();
+		compaction = null;
+	}
+	
 	public UUID getUid()
 	{
 		return storageUid;
 	}
+	
+	GroupCommit getGroupCommit()
+	{
+		return groupCommit;
+	}
 
 	public void invalidateAncientData() throws PersistenceIOSoftnetException
 	{
@@ -328,6 +847,7 @@ class ServiceFilePersistence implements ServicePersistence
 				
 					headPosition = 32;
 					tailPosition = 32;
+					onTruncated();
 					ancientDataTailPosition = 32;
 					
 					replacingEvents.clear();
@@ -346,12 +866,14 @@ class ServiceFilePersistence implements ServicePersistence
 						int recordSize = ByteConverter.toInt32FromInt16(buffer, 0);
 						storageFile.seek(currentPosition + 2);
 						storageFile.writeByte(1);
+						groupCommit.register();
 						currentPosition += recordSize;
 					}
 						
 					headPosition = ancientDataTailPosition;
 					ancientDataTailPosition = 32;
 				}
+				groupCommit.commit();
 			}
 			catch(IOException ex)
 			{
@@ -369,10 +891,12 @@ class ServiceFilePersistence implements ServicePersistence
 				storageFile.setLength(32);
 				headPosition = 32;
 				tailPosition = 32;
+				onTruncated();
 				ancientDataTailPosition = 32;
 				replacingEvents.clear();
 				queueingEvents.clear();
 				privateEvents.clear();
+				groupCommit.commit();
 			}
 		}
 		catch(IOException ex)
@@ -401,11 +925,13 @@ class ServiceFilePersistence implements ServicePersistence
 				
 				headPosition = 32;
 				tailPosition = 32;
+				onTruncated();
 				ancientDataTailPosition = 32;
 				
 				replacingEvents.clear();
 				queueingEvents.clear();
-				privateEvents.clear();				
+				privateEvents.clear();
+				groupCommit.commit();
 			}
 		}
 		catch(IOException ex)
@@ -422,6 +948,7 @@ class ServiceFilePersistence implements ServicePersistence
 				return;			
 			isInStorageMode = true;
 			headPosition = 32;
+			abortCompaction();
 						
 			queueingEvents.clear();
 			privateEvents.clear();
@@ -439,6 +966,21 @@ class ServiceFilePersistence implements ServicePersistence
 	}
 
 	public void cache(ReplacingEvent replacingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		cache(new ReplacingEvent[] { replacingEvent });
+	}
+
+	public void cache(QueueingEvent queueingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		cache(new QueueingEvent[] { queueingEvent });
+	}
+
+	public void cache(PrivateEvent privateEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		cache(new PrivateEvent[] { privateEvent });
+	}
+
+	public void cache(ReplacingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
@@ -450,96 +992,41 @@ class ServiceFilePersistence implements ServicePersistence
 				
 			try
 			{
-				byte[] nameBytes = replacingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
-				
-				byte[] bodyEncoding = null;				
-				if(replacingEvent.isNull == false)
-				{
-					ASNEncoder asnEncoder = new ASNEncoder();
-					SequenceEncoder asnSequence = asnEncoder.Sequence();
-					asnSequence.OctetString(replacingEvent.uid);
-					byte[] argumentsEncoding = replacingEvent.getEncoding();
-					if(argumentsEncoding != null)
-						asnSequence.OctetString(1, argumentsEncoding);
-					bodyEncoding = asnEncoder.getEncoding();
-				}
-				else
-				{
-					ASNEncoder asnEncoder = new ASNEncoder();
-					SequenceEncoder asnSequence = asnEncoder.Sequence();
-					asnSequence.OctetString(replacingEvent.uid);
-					bodyEncoding = asnEncoder.getEncoding();
-				}
-				
-				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
-					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
-				
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(replacingEvent.isNull == false ? 1 : 5);
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(events[i].isNull == false ? 1 : 5, events[i].name, encodeBody(events[i]));
 				
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
+				long recordPosition = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
 				{
-					if(listElement.name.equals(replacingEvent.name))
+					ReplacingEvent replacingEvent = events[i];
+					RERecord reRecord = new RERecord(recordPosition, records[i].length, getHeaderSize(records[i]), replacingEvent.isNull);
+					recordPosition += records[i].length;
+					
+					REvent rEvent = replacingEvents.get(replacingEvent.name);
+					
+					if(rEvent == null)
 					{
-						rEvent = listElement;
-						break;
+						rEvent = new REvent(replacingEvent.name);
+						replacingEvents.put(rEvent.name, rEvent);
+						
+						rEvent.currentInstance = reRecord;
+						unacknowledgedEvents++;
+					}
+					else if(rEvent.currentInstance == null)
+					{
+						rEvent.currentInstance = reRecord;
+						unacknowledgedEvents++; 						
+					}
+					else if(rEvent.lastInstance == null)
+					{
+						rEvent.lastInstance = reRecord;
+					}
+					else
+					{
+						setAcknowledged(rEvent.lastInstance.position, rEvent.lastInstance.size);
+						rEvent.lastInstance = reRecord;
 					}
-				}		
-				
-				if(rEvent == null)
-				{
-					rEvent = new REvent(replacingEvent.name);
-					replacingEvents.add(rEvent);
-					
-					rEvent.currentInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);						
-					unacknowledgedEvents++;
-				}
-				else if(rEvent.currentInstance == null)
-				{
-					rEvent.currentInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);						
-					unacknowledgedEvents++; 						
-				}
-				else if(rEvent.lastInstance == null)
-				{
-					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
-				}
-				else
-				{
-					storageFile.seek(rEvent.lastInstance.position + 2);
-					storageFile.writeByte(1);
-					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
 				}
 			}
 			catch(IOException ex)
@@ -549,7 +1036,7 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
-	public void cache(QueueingEvent queueingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	public void cache(QueueingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
@@ -561,79 +1048,28 @@ class ServiceFilePersistence implements ServicePersistence
 			
 			try
 			{
-				byte[] nameBytes = queueingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
-				
-				ASNEncoder asnEncoder = new ASNEncoder();
-				SequenceEncoder asnSequence = asnEncoder.Sequence();
-				asnSequence.OctetString(queueingEvent.uid);
-				byte[] argumentsEncoding = queueingEvent.getEncoding();
-				if(argumentsEncoding != null)
-					asnSequence.OctetString(1, argumentsEncoding);
-				byte[] bodyEncoding = asnEncoder.getEncoding();
-				
-				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
-					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
-
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(2, events[i].name, encodeBody(events[i])); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
 				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(2); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
-							
-				QEvent qEvent = null;
-				for(QEvent listElement: queueingEvents)
+				long recordPosition = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
 				{
-					if(listElement.name.equals(queueingEvent.name))
+					QueueingEvent queueingEvent = events[i];
+					QERecord qeRecord = new QERecord(recordPosition, records[i].length, getHeaderSize(records[i]));
+					recordPosition += records[i].length;
+					
+					QEvent qEvent = queueingEvents.get(queueingEvent.name);
+					
+					if(qEvent == null)
 					{
-						qEvent = listElement;
-						break;
+						qEvent = new QEvent(queueingEvent.name);
+						queueingEvents.put(qEvent.name, qEvent);
 					}
-				}		
-				
-				if(qEvent == null)
-				{
-					qEvent = new QEvent(queueingEvent.name);
-					queueingEvents.add(qEvent);
 					
-					qEvent.instanceQueue.add(new QERecord(recordPosition, recordSize, headerSize));						
-					unacknowledgedEvents++;						
-				}
-				else if(qEvent.instanceQueue.isEmpty())
-				{
-					qEvent.instanceQueue.add(new QERecord(recordPosition, recordSize, headerSize));						
-					unacknowledgedEvents++; 						
-				}					
-				else
-				{
-					qEvent.instanceQueue.add(new QERecord(recordPosition, recordSize, headerSize));
+					if(qEvent.instanceQueue.isEmpty())
+						unacknowledgedEvents++;
+					qEvent.instanceQueue.add(qeRecord);
 				}
 			}
 			catch(IOException ex)
@@ -643,7 +1079,7 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
-	public void cache(PrivateEvent privateEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	public void cache(PrivateEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
@@ -655,80 +1091,28 @@ class ServiceFilePersistence implements ServicePersistence
 			
 			try
 			{
-				byte[] nameBytes = privateEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(4, events[i].name, encodeBody(events[i])); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
 				
-				ASNEncoder asnEncoder = new ASNEncoder();
-				SequenceEncoder asnSequence = asnEncoder.Sequence();
-				asnSequence.OctetString(privateEvent.uid);
-				asnSequence.Int64(privateEvent.clientId);
-				byte[] argumentsEncoding = privateEvent.getEncoding();
-				if(argumentsEncoding != null)
-					asnSequence.OctetString(1, argumentsEncoding);
-				byte[] bodyEncoding = asnEncoder.getEncoding();
-				
-				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
-					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
-
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(4); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
-								
-				PEvent pEvent = null;
-				for(PEvent listElement: privateEvents)
+				long recordPosition = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
 				{
-					if(listElement.name.equals(privateEvent.name))
+					PrivateEvent privateEvent = events[i];
+					PERecord peRecord = new PERecord(recordPosition, records[i].length, getHeaderSize(records[i]));
+					recordPosition += records[i].length;
+					
+					PEvent pEvent = privateEvents.get(privateEvent.name);
+	
+					if(pEvent == null)
 					{
-						pEvent = listElement;
-						break;
+						pEvent = new PEvent(privateEvent.name);
+						privateEvents.put(pEvent.name, pEvent);
 					}
-				}		
-
-				if(pEvent == null)
-				{
-					pEvent = new PEvent(privateEvent.name);
-					privateEvents.add(pEvent);
 					
-					pEvent.instanceQueue.add(new PERecord(recordPosition, recordSize, headerSize));						
-					unacknowledgedEvents++;						
-				}
-				else if(pEvent.instanceQueue.isEmpty())
-				{
-					pEvent.instanceQueue.add(new PERecord(recordPosition, recordSize, headerSize));						
-					unacknowledgedEvents++; 						
-				}					
-				else
-				{
-					pEvent.instanceQueue.add(new PERecord(recordPosition, recordSize, headerSize));
+					if(pEvent.instanceQueue.isEmpty())
+						unacknowledgedEvents++;
+					pEvent.instanceQueue.add(peRecord);
 				}
 			}
 			catch(IOException ex)
@@ -757,15 +1141,7 @@ class ServiceFilePersistence implements ServicePersistence
 				{
 					if(eventKind == 1)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
+						REvent rEvent = replacingEvents.get(eventName);
 						
 						if(rEvent == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
@@ -773,8 +1149,7 @@ class ServiceFilePersistence implements ServicePersistence
 						if(rEvent.currentInstance == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
 						
-						storageFile.seek(rEvent.currentInstance.position + 2);
-						storageFile.writeByte(1);
+						setAcknowledged(rEvent.currentInstance.position, rEvent.currentInstance.size);
 						rEvent.currentInstance = null;
 						
 						if(rEvent.lastInstance == null)
@@ -783,8 +1158,10 @@ class ServiceFilePersistence implements ServicePersistence
 							if(unacknowledgedEvents == 0)
 							{							
 								storageFile.setLength(32);
+								groupCommit.register();
 								headPosition = 32;
 								tailPosition = 32;
+								onTruncated();
 							}
 							return null;
 						}
@@ -817,15 +1194,7 @@ class ServiceFilePersistence implements ServicePersistence
 					}
 					else if(eventKind == 2)
 					{
-						QEvent qEvent = null;
-						for(QEvent listElement: queueingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								qEvent = listElement;
-								break;
-							}
-						}		
+						QEvent qEvent = queueingEvents.get(eventName);
 						
 						if(qEvent == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
@@ -834,8 +1203,7 @@ class ServiceFilePersistence implements ServicePersistence
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
 						
 						QERecord qeRecord = qEvent.instanceQueue.remove();
-						storageFile.seek(qeRecord.position + 2);
-						storageFile.writeByte(1);
+						setAcknowledged(qeRecord.position, qeRecord.size);
 						
 						if(qEvent.instanceQueue.isEmpty())
 						{
@@ -843,8 +1211,10 @@ class ServiceFilePersistence implements ServicePersistence
 							if(unacknowledgedEvents == 0)
 							{							
 								storageFile.setLength(32);
+								groupCommit.register();
 								headPosition = 32;
 								tailPosition = 32;
+								onTruncated();
 							}
 							return null;
 						}
@@ -866,15 +1236,7 @@ class ServiceFilePersistence implements ServicePersistence
 					}
 					else if(eventKind == 4)
 					{
-						PEvent pEvent = null;
-						for(PEvent listElement: privateEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								pEvent = listElement;
-								break;
-							}
-						}		
+						PEvent pEvent = privateEvents.get(eventName);
 						
 						if(pEvent == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
@@ -883,8 +1245,7 @@ class ServiceFilePersistence implements ServicePersistence
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
 						
 						PERecord peRecord = pEvent.instanceQueue.remove();
-						storageFile.seek(peRecord.position + 2);
-						storageFile.writeByte(1);
+						setAcknowledged(peRecord.position, peRecord.size);
 						
 						if(pEvent.instanceQueue.isEmpty())
 						{
@@ -892,8 +1253,10 @@ class ServiceFilePersistence implements ServicePersistence
 							if(unacknowledgedEvents == 0)
 							{							
 								storageFile.setLength(32);
+								groupCommit.register();
 								headPosition = 32;
 								tailPosition = 32;
+								onTruncated();
 							}
 							return null;
 						}
@@ -948,15 +1311,7 @@ class ServiceFilePersistence implements ServicePersistence
 				{
 					if(eventKind == 1)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
+						REvent rEvent = replacingEvents.get(eventName);
 						
 						if(rEvent == null)
 							return null;
@@ -989,15 +1344,7 @@ class ServiceFilePersistence implements ServicePersistence
 					}
 					else if(eventKind == 2)
 					{
-						QEvent qEvent = null;
-						for(QEvent listElement: queueingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								qEvent = listElement;
-								break;
-							}
-						}		
+						QEvent qEvent = queueingEvents.get(eventName);
 						
 						if(qEvent == null)
 							return null;
@@ -1005,32 +1352,11 @@ class ServiceFilePersistence implements ServicePersistence
 						if(qEvent.instanceQueue.isEmpty())
 							return null;
 											
-						QERecord qeRecord = qEvent.instanceQueue.element();
-						
-						int bodySize = qeRecord.size - qeRecord.headerSize;
-						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(qeRecord.position + qeRecord.headerSize);
-						storageFile.read(bodyBuffer);
-						
-						SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-						UUID instanceUid = asnSequence.OctetStringToUUID();
-						byte[] argumentsEncoding = null;
-						if(asnSequence.exists(1))
-							argumentsEncoding = asnSequence.OctetString();
-						
-						return ServiceEventPersistable.createQueueingEvent(eventName, instanceUid, argumentsEncoding);
+						return readQueueingEvent(eventName, qEvent.instanceQueue.element());
 					}
 					else if(eventKind == 4)
 					{
-						PEvent pEvent = null;
-						for(PEvent listElement: privateEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								pEvent = listElement;
-								break;
-							}
-						}		
+						PEvent pEvent = privateEvents.get(eventName);
 						
 						if(pEvent == null)
 							return null;
@@ -1038,21 +1364,7 @@ class ServiceFilePersistence implements ServicePersistence
 						if(pEvent.instanceQueue.isEmpty())
 							return null;
 											
-						PERecord peRecord = pEvent.instanceQueue.element();
-						
-						int bodySize = peRecord.size - peRecord.headerSize;
-						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(peRecord.position + peRecord.headerSize);
-						storageFile.read(bodyBuffer);
-						
-						SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-						UUID instanceUid = asnSequence.OctetStringToUUID();
-						long clientId = asnSequence.Int64();
-						byte[] argumentsEncoding = null;
-						if(asnSequence.exists(1))
-							argumentsEncoding = asnSequence.OctetString();
-						
-						return ServiceEventPersistable.createPrivateEvent(eventName, instanceUid, clientId, argumentsEncoding);
+						return readPrivateEvent(eventName, pEvent.instanceQueue.element());
 					}
 					else 
 						throw new IllegalArgumentException("The value of eventKind is illegal.");
@@ -1069,101 +1381,138 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
-	public void save(ReplacingEvent replacingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	public ServiceEventCursor peek(int eventKind, String eventName, int offset) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
 	{
 		synchronized(mutex)
 		{
 			if(isClosed) 
 				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");			
+
+			if(eventName == null)
+				throw new NullPointerException("The value of eventName is null.");
 			
-			if(isInStorageMode == false) 
-				throw new IllegalStateException("The storage is in asynchronous mode.");
-			
-			try
+			if(offset < 0)
+				throw new IllegalArgumentException("The value of 'offset' must not be negative.");
+
+			if(eventKind == 1)
 			{
-				byte[] nameBytes = replacingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
-				
-				byte[] bodyEncoding = null;				
-				if(replacingEvent.isNull == false)
-				{
-					ASNEncoder asnEncoder = new ASNEncoder();
-					SequenceEncoder asnSequence = asnEncoder.Sequence();
-					asnSequence.OctetString(replacingEvent.uid);
-					byte[] argumentsEncoding = replacingEvent.getEncoding();
-					if(argumentsEncoding != null)
-						asnSequence.OctetString(1, argumentsEncoding);
-					bodyEncoding = asnEncoder.getEncoding();
-				}
-				else
-				{
-					ASNEncoder asnEncoder = new ASNEncoder();
-					SequenceEncoder asnSequence = asnEncoder.Sequence();
-					asnSequence.OctetString(replacingEvent.uid);
-					bodyEncoding = asnEncoder.getEncoding();
-				}
-				
-				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
-					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
+				if(offset > 0)
+					return new SingleEventCursor(null);
+				return new SingleEventCursor(peek(eventKind, eventName));
+			}
+			else if(eventKind == 2)
+			{
+				QEvent listElement = queueingEvents.get(eventName);
+				if(listElement == null || listElement.instanceQueue.size() <= offset)
+					return new SingleEventCursor(null);
 				
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
+				Iterator<QERecord> iterator = listElement.instanceQueue.iterator();
+				for(int i = 0; i < offset; i++)
+					iterator.next();
+				return new QueueingEventCursor(eventName, iterator);
+			}
+			else if(eventKind == 4)
+			{
+				PEvent listElement = privateEvents.get(eventName);
+				if(listElement == null || listElement.instanceQueue.size() <= offset)
+					return new SingleEventCursor(null);
 				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
+				Iterator<PERecord> iterator = listElement.instanceQueue.iterator();
+				for(int i = 0; i < offset; i++)
+					iterator.next();
+				return new PrivateEventCursor(eventName, iterator);
+			}
+			else 
+				throw new IllegalArgumentException("The value of eventKind is illegal.");
+		}
+	}
 
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(replacingEvent.isNull == false ? 1 : 5);
+	private ServiceEventPersistable readQueueingEvent(String eventName, QERecord qeRecord) throws IOException, AsnException
+	{
+		int bodySize = qeRecord.size - qeRecord.headerSize;
+		byte[] bodyBuffer = new byte[bodySize];
+		storageFile.seek(qeRecord.position + qeRecord.headerSize);
+		storageFile.read(bodyBuffer);
+		
+		SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
+		UUID instanceUid = asnSequence.OctetStringToUUID();
+		byte[] argumentsEncoding = null;
+		if(asnSequence.exists(1))
+			argumentsEncoding = asnSequence.OctetString();
+		
+		return ServiceEventPersistable.createQueueingEvent(eventName, instanceUid, argumentsEncoding);
+	}
 
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
+	private ServiceEventPersistable readPrivateEvent(String eventName, PERecord peRecord) throws IOException, AsnException
+	{
+		int bodySize = peRecord.size - peRecord.headerSize;
+		byte[] bodyBuffer = new byte[bodySize];
+		storageFile.seek(peRecord.position + peRecord.headerSize);
+		storageFile.read(bodyBuffer);
+		
+		SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
+		UUID instanceUid = asnSequence.OctetStringToUUID();
+		long clientId = asnSequence.Int64();
+		byte[] argumentsEncoding = null;
+		if(asnSequence.exists(1))
+			argumentsEncoding = asnSequence.OctetString();
+		
+		return ServiceEventPersistable.createPrivateEvent(eventName, instanceUid, clientId, argumentsEncoding);
+	}
 
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
+	public void save(ReplacingEvent replacingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		save(new ReplacingEvent[] { replacingEvent });
+	}
 
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
+	public void save(QueueingEvent queueingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		save(new QueueingEvent[] { queueingEvent });
+	}
 
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
+	public void save(PrivateEvent privateEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		save(new PrivateEvent[] { privateEvent });
+	}
 
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
+	public void save(ReplacingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			try
+			{
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(events[i].isNull == false ? 1 : 5, events[i].name, encodeBody(events[i]));
 				
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
+				long recordPosition = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
 				{
-					if(listElement.name.equals(replacingEvent.name))
+					ReplacingEvent replacingEvent = events[i];
+					RERecord reRecord = new RERecord(recordPosition, records[i].length, getHeaderSize(records[i]), replacingEvent.isNull);
+					recordPosition += records[i].length;
+					
+					REvent rEvent = replacingEvents.get(replacingEvent.name);
+					
+					if(rEvent == null)
 					{
-						rEvent = listElement;
-						break;
+						rEvent = new REvent(replacingEvent.name);
+						replacingEvents.put(rEvent.name, rEvent);						
 					}
-				}		
-				
-				if(rEvent == null)
-				{
-					rEvent = new REvent(replacingEvent.name);
-					replacingEvents.add(rEvent);						
-					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
-				}
-				else if(rEvent.lastInstance != null)
-				{
-					storageFile.seek(rEvent.lastInstance.position + 2);
-					storageFile.writeByte(1);
-					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
-				}
-				else
-				{
-					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
+					else if(rEvent.lastInstance != null)
+					{
+						setAcknowledged(rEvent.lastInstance.position, rEvent.lastInstance.size);
+					}
+					rEvent.lastInstance = reRecord;
 				}
 			}
 			catch(IOException ex)
@@ -1173,7 +1522,7 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
-	public void save(QueueingEvent queueingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	public void save(QueueingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
@@ -1185,51 +1534,10 @@ class ServiceFilePersistence implements ServicePersistence
 			
 			try
 			{
-				byte[] nameBytes = queueingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
-				
-				ASNEncoder asnEncoder = new ASNEncoder();
-				SequenceEncoder asnSequence = asnEncoder.Sequence();
-				asnSequence.OctetString(queueingEvent.uid);
-				byte[] argumentsEncoding = queueingEvent.getEncoding();
-				if(argumentsEncoding != null)
-					asnSequence.OctetString(1, argumentsEncoding);
-				byte[] bodyEncoding = asnEncoder.getEncoding();
-				
-				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
-					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
-
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(2); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}							
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(2, events[i].name, encodeBody(events[i])); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
+				appendRecords(records);
 			}
 			catch(IOException ex)
 			{
@@ -1238,7 +1546,7 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
-	public void save(PrivateEvent privateEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	public void save(PrivateEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
@@ -1250,58 +1558,115 @@ class ServiceFilePersistence implements ServicePersistence
 			
 			try
 			{
-				byte[] nameBytes = privateEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
-				
-				ASNEncoder asnEncoder = new ASNEncoder();
-				SequenceEncoder asnSequence = asnEncoder.Sequence();
-				asnSequence.OctetString(privateEvent.uid);
-				asnSequence.Int64(privateEvent.clientId);
-				byte[] argumentsEncoding = privateEvent.getEncoding();
-				if(argumentsEncoding != null)
-					asnSequence.OctetString(1, argumentsEncoding);
-				byte[] bodyEncoding = asnEncoder.getEncoding();
-				
-				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
-					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
-
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(4); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(4, events[i].name, encodeBody(events[i])); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
+				appendRecords(records);
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
 
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
+	private byte[] encodeBody(ReplacingEvent replacingEvent)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder asnSequence = asnEncoder.Sequence();
+		asnSequence.OctetString(replacingEvent.uid);
+		if(replacingEvent.isNull == false)
+		{
+			byte[] argumentsEncoding = replacingEvent.getEncoding();
+			if(argumentsEncoding != null)
+				asnSequence.OctetString(1, argumentsEncoding);
+		}
+		return asnEncoder.getEncoding();
+	}
 
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
+	private byte[] encodeBody(QueueingEvent queueingEvent)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder asnSequence = asnEncoder.Sequence();
+		asnSequence.OctetString(queueingEvent.uid);
+		byte[] argumentsEncoding = queueingEvent.getEncoding();
+		if(argumentsEncoding != null)
+			asnSequence.OctetString(1, argumentsEncoding);
+		return asnEncoder.getEncoding();
+	}
 
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
+	private byte[] encodeBody(PrivateEvent privateEvent)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder asnSequence = asnEncoder.Sequence();
+		asnSequence.OctetString(privateEvent.uid);
+		asnSequence.Int64(privateEvent.clientId);
+		byte[] argumentsEncoding = privateEvent.getEncoding();
+		if(argumentsEncoding != null)
+			asnSequence.OctetString(1, argumentsEncoding);
+		return asnEncoder.getEncoding();
+	}
 
-				tailPosition += recordSize;				
+	private byte[] encodeRecord(int recordKind, String eventName, byte[] bodyEncoding)
+	{
+		byte[] nameBytes = eventName.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+		int headerSize = 6 + nameBytes.length;
+		int recordSize = headerSize + bodyEncoding.length;
+		
+		byte[] record = new byte[recordSize];
+		ByteConverter.writeAsInt16(recordSize, record, 0);
+		record[2] = 0;
+		record[3] = (byte)recordKind;
+		ByteConverter.writeAsInt16(nameBytes.length, record, 4);
+		System.arraycopy(nameBytes, 0, record, 6, nameBytes.length);
+		System.arraycopy(bodyEncoding, 0, record, headerSize, bodyEncoding.length);
+		return record;
+	}
+	
+	private static int getHeaderSize(byte[] record)
+	{
+		return 6 + ByteConverter.toInt32FromInt16(record, 4);
+	}
 
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}								
-			}
-			catch(IOException ex)
+	private long appendRecords(byte[][] records) throws IOException, PersistenceStorageFullSoftnetException
+	{
+		int totalSize = 0;
+		for(byte[] record: records)
+			totalSize += record.length;
+		
+		if(tailPosition + totalSize > storageCapacity)
+		{
+			checkCompaction(totalSize);
+			throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
+		}
+		
+		byte[] buffer = records.length == 1 ? records[0] : new byte[totalSize];
+		if(records.length > 1)
+		{
+			int offset = 0;
+			for(byte[] record: records)
 			{
-				throw new PersistenceIOSoftnetException(ex.getMessage());
+				System.arraycopy(record, 0, buffer, offset, record.length);
+				offset += record.length;
 			}
 		}
+		
+		long recordPosition = tailPosition;
+		storageFile.seek(tailPosition);
+		storageFile.write(buffer);
+		tailPosition += totalSize;
+		
+		if(storageFile.length() > tailPosition)
+		{
+			storageFile.seek(tailPosition);
+			storageFile.write(new byte[2]);
+		}
+		groupCommit.register();
+		
+		if(tailPosition - checkpointPosition >= checkpointInterval)
+			saveCheckpoint();
+		checkCompaction(0);
+		return recordPosition;
 	}
 
 	public void setAcknowledment() throws PersistenceIOSoftnetException
@@ -1319,8 +1684,7 @@ class ServiceFilePersistence implements ServicePersistence
 			
 			try
 			{
-				storageFile.seek(peekedRecord.position + 2);
-				storageFile.writeByte(1);
+				setAcknowledged(peekedRecord.position, peekedRecord.size);
 				
 				headPosition += peekedRecord.size;
 				peekedRecord = null;
@@ -1400,8 +1764,10 @@ class ServiceFilePersistence implements ServicePersistence
 							if(fileLength - headPosition < 2)
 							{
 								storageFile.setLength(32);
+								groupCommit.commit();
 								headPosition = 32;
 								tailPosition = 32;
+								onTruncated();
 								ancientDataTailPosition = 32;
 								replacingEvents.clear();
 								peekedRecord = null;
@@ -1415,8 +1781,10 @@ class ServiceFilePersistence implements ServicePersistence
 							if(recordSize == 0)
 							{
 								storageFile.setLength(32);
+								groupCommit.commit();
 								headPosition = 32;
 								tailPosition = 32;
+								onTruncated();
 								ancientDataTailPosition = 32;
 								replacingEvents.clear();
 								peekedRecord = null;
@@ -1532,6 +1900,10 @@ class ServiceFilePersistence implements ServicePersistence
 				return;
 			
 			isClosed = true;			
+			abortCompaction();
+			if(tailPosition > 32 && tailPosition != checkpointPosition)
+				saveCheckpointOnClose();
+			groupCommit.close();
 			try
 			{
 				storageFile.close();
@@ -1540,6 +1912,96 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}	
 	
+	private class QueueingEventCursor implements ServiceEventCursor
+	{
+		private final String eventName;
+		private final Iterator<QERecord> iterator;
+		public QueueingEventCursor(String eventName, Iterator<QERecord> iterator)
+		{
+			this.eventName = eventName;
+			this.iterator = iterator;
+		}
+		public ServiceEventPersistable next() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+		{
+			synchronized(mutex)
+			{
+				if(isClosed) 
+					throw new IllegalStateException("The storage has been closed.");
+				if(iterator.hasNext() == false)
+					return null;
+				try
+				{
+					return readQueueingEvent(eventName, iterator.next());
+				}
+				catch(AsnException ex)
+				{					
+					throw new PersistenceDataFormatSoftnetException(ex.getMessage());
+				}
+				catch(IOException ex)
+				{
+					throw new PersistenceIOSoftnetException(ex.getMessage());
+				}
+			}
+		}
+	}
+
+	private class PrivateEventCursor implements ServiceEventCursor
+	{
+		private final String eventName;
+		private final Iterator<PERecord> iterator;
+		public PrivateEventCursor(String eventName, Iterator<PERecord> iterator)
+		{
+			this.eventName = eventName;
+			this.iterator = iterator;
+		}
+		public ServiceEventPersistable next() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+		{
+			synchronized(mutex)
+			{
+				if(isClosed) 
+					throw new IllegalStateException("The storage has been closed.");
+				if(iterator.hasNext() == false)
+					return null;
+				try
+				{
+					return readPrivateEvent(eventName, iterator.next());
+				}
+				catch(AsnException ex)
+				{					
+					throw new PersistenceDataFormatSoftnetException(ex.getMessage());
+				}
+				catch(IOException ex)
+				{
+					throw new PersistenceIOSoftnetException(ex.getMessage());
+				}
+			}
+		}
+	}
+	
+	private class Compaction
+	{
+		public final String filePath;
+		public final RandomAccessFile file;
+		public long scanPosition;
+		public long targetTail;
+		public long acknowledgedBytes;
+		public HashMap<Long, Long> positions;
+		public Compaction(String filePath, RandomAccessFile file)
+		{
+			this.filePath = filePath;
+			this.file = file;
+			scanPosition = 32;
+			targetTail = 32;
+			acknowledgedBytes = 0;
+			positions = new HashMap<Long, Long>();
+		}
+		public long getPosition(long position)
+		{
+			Long targetPosition = positions.get(position);
+			return targetPosition != null ? targetPosition : position;
+		}
+	}
+	
 	private class PeekedRecord
 	{
 		public final long position;
@@ -1557,10 +2019,50 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 		
-	private class RERecord
+	private static class CheckpointSnapshot
+	{
+		public final java.nio.channels.FileChannel channel;
+		public final long storageGeneration;
+		public final UUID storageUid;
+		public final long tailPosition;
+		public final long firstLivePosition;
+		public final ArrayList<CheckpointEntry> entries;
+		public CheckpointSnapshot(java.nio.channels.FileChannel channel, long storageGeneration, UUID storageUid, long tailPosition, long firstLivePosition)
+		{
+			this.channel = channel;
+			this.storageGeneration = storageGeneration;
+			this.storageUid = storageUid;
+			this.tailPosition = tailPosition;
+			this.firstLivePosition = firstLivePosition;
+			entries = new ArrayList<CheckpointEntry>();
+		}
+	}
+	
+	private static class CheckpointEntry
 	{
+		public final String eventName;
 		public final long position;
 		public final int size;
+		public final int headerSize;
+		public final boolean isNull;
+		public long supersededPosition;
+		public int supersededSize;
+		public CheckpointEntry(String eventName, RERecord record)
+		{
+			this.eventName = eventName;
+			position = record.position;
+			size = record.size;
+			headerSize = record.headerSize;
+			isNull = record.isNull;
+			supersededPosition = 0;
+			supersededSize = 0;
+		}
+	}
+	
+	private class RERecord
+	{
+		public long position;
+		public final int size;
 		public final int headerSize;		
 		public final boolean isNull;
 		public RERecord(long position, int size, int headerSize, boolean isNull)
@@ -1587,7 +2089,7 @@ class ServiceFilePersistence implements ServicePersistence
 	
 	private class QERecord
 	{
-		public final long position;
+		public long position;
 		public final int size;
 		public final int headerSize;
 		public QERecord(long position, int size, int headerSize)
@@ -1611,7 +2113,7 @@ class ServiceFilePersistence implements ServicePersistence
 
 	private class PERecord
 	{
-		public final long position;
+		public long position;
 		public final int size;
 		public final int headerSize;
 		public PERecord(long position, int size, int headerSize)
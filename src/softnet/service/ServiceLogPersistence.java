@@ -0,0 +1,1314 @@
+/*
+*	Copyright 2023 Robert Koifman
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package softnet.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import softnet.PersistenceDurability;
+import softnet.asn.*;
+import softnet.core.Acceptor;
+import softnet.core.ScheduledTask;
+import softnet.core.Scheduler;
+import softnet.exceptions.*;
+
+public class ServiceLogPersistence implements ServicePersistence
+{
+	private static final int SegmentMagic = 0x53534C31;
+	private static final int SegmentHeaderSize = 64;
+	private static final int RecordHeaderSize = 12;
+	private static final int MinSegmentSize = 65536;
+	private static final int MaxSegmentSize = 4194304;
+
+	private ServiceLogPersistence(UUID serviceUid, long storageCapacity, PersistenceDurability durability)
+	{
+		this.serviceUid = serviceUid;
+		this.durability = durability;
+		
+		long segmentSize = storageCapacity / 8;
+		if(segmentSize < MinSegmentSize)
+			segmentSize = MinSegmentSize;
+		else if(segmentSize > MaxSegmentSize)
+			segmentSize = MaxSegmentSize;
+		this.segmentSize = (int)segmentSize;
+		
+		long maxSegments = storageCapacity / segmentSize;
+		this.maxSegments = maxSegments < 2 ? 2 : (int)Math.min(maxSegments, Integer.MAX_VALUE);
+		
+		segments = new ArrayList<Segment>();
+		dirtySegments = new HashSet<Segment>();
+		discardedFiles = new ArrayList<File>();
+		replacingEvents = new HashMap<String, REvent>();
+		queueingEvents = new HashMap<String, QEvent>();
+		privateEvents = new HashMap<String, PEvent>();
+		isInStorageMode = true;
+	}
+	
+	private Object mutex = new Object();
+	
+	private final UUID serviceUid;
+	private UUID storageUid;
+	private File directory;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final PersistenceDurability durability;
+	private long syncIntervalMillis;
+	private Scheduler scheduler = null;
+	private ScheduledTask syncTask = null;
+	private boolean isClosed = false;
+	
+	private ArrayList<Segment> segments;
+	private HashSet<Segment> dirtySegments;
+	private ArrayList<File> discardedFiles;
+	private long nextSegmentSequence;
+	
+	private HashMap<String, REvent> replacingEvents;
+	private HashMap<String, QEvent> queueingEvents;
+	private HashMap<String, PEvent> privateEvents;
+	
+	private boolean isInStorageMode;
+	private Segment headSegment;
+	private int headPosition;
+	private Segment ancientDataTailSegment;
+	private int ancientDataTailPosition;
+	private LogRecord peekedRecord;
+	private int unacknowledgedEvents;
+
+	public static ServiceLogPersistence create(UUID serviceUid, long storageCapacity, String directory) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		return create(serviceUid, storageCapacity, directory, PersistenceDurability.PerBatch, 0);
+	}
+	
+	public static ServiceLogPersistence create(UUID serviceUid, long storageCapacity, String directory, PersistenceDurability durability, long syncIntervalMillis) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		if(durability == PersistenceDurability.Interval && syncIntervalMillis <= 0)
+			throw new IllegalArgumentException("The value of 'syncIntervalMillis' must be greater than zero.");
+		
+		ServiceLogPersistence slp = new ServiceLogPersistence(serviceUid, storageCapacity, durability);
+		try
+		{
+			slp.load(new File(directory + File.separator + "softnet.service.log_" + serviceUid.toString()));
+		}
+		catch(SecurityException ex)
+		{
+			slp.closeSegments();
+			throw new PersistenceIOSoftnetException(ex.getMessage());
+		}
+		catch(PersistenceIOSoftnetException | PersistenceDataFormatSoftnetException ex)
+		{
+			slp.closeSegments();
+			throw ex;
+		}
+		
+		slp.syncIntervalMillis = syncIntervalMillis;
+		return slp;
+	}
+
+	private void load(File directory) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		this.directory = directory;
+		if(directory.exists() == false && directory.mkdirs() == false)
+			throw new PersistenceIOSoftnetException(String.format("Failed to create the persistence directory '%s'.", directory.getPath()));
+		
+		try
+		{
+			File[] files = directory.listFiles();
+			if(files == null)
+				throw new PersistenceIOSoftnetException(String.format("Failed to read the persistence directory '%s'.", directory.getPath()));
+			
+			ArrayList<Long> sequences = new ArrayList<Long>();
+			for(File file: files)
+			{
+				String name = file.getName();
+				if(name.endsWith(".seg") && name.length() == 20)
+				{
+					try
+					{
+						sequences.add(Long.parseLong(name.substring(0, 16), 16));
+					}
+					catch(NumberFormatException ex) {}
+				}
+			}
+			
+			Long[] sortedSequences = sequences.toArray(new Long[sequences.size()]);
+			Arrays.sort(sortedSequences);
+			
+			for(Long sequence: sortedSequences)
+			{
+				Segment segment = openSegment(sequence);
+				nextSegmentSequence = sequence + 1;
+				if(segment.buffer.getInt(0) == 0)
+				{
+					discardSegmentFile(segment);
+					continue;
+				}
+				UUID segmentStorageUid = readSegmentHeader(segment);
+				if(storageUid == null)
+					storageUid = segmentStorageUid;
+				else if(storageUid.equals(segmentStorageUid) == false)
+					throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", directory.getPath()));
+				segments.add(segment);
+				scanSegment(segment);
+			}
+			
+			if(segments.isEmpty())
+			{
+				storageUid = UUID.randomUUID();
+				appendSegment();
+			}
+			
+			headSegment = segments.get(0);
+			headPosition = SegmentHeaderSize;
+			Segment tailSegment = segments.get(segments.size() - 1);
+			ancientDataTailSegment = tailSegment;
+			ancientDataTailPosition = tailSegment.writePosition;
+			commit();
+		}
+		catch(IOException ex)
+		{
+			throw new PersistenceIOSoftnetException(ex.getMessage());
+		}
+	}
+	
+	private void scanSegment(Segment segment) throws PersistenceDataFormatSoftnetException
+	{
+		ByteBuffer buffer = segment.buffer;
+		int position = SegmentHeaderSize;
+		while(true)
+		{
+			LogRecord record = readRecordHeader(segment, position);
+			if(record == null)
+				break;
+			
+			if(buffer.get(position + 8) == 0)
+			{
+				segment.liveRecords++;
+				if(record.kind == 1 || record.kind == 5)
+				{
+					REvent rEvent = findREvent(record.eventName);
+					if(rEvent == null)
+					{
+						rEvent = new REvent(record.eventName);
+						replacingEvents.put(rEvent.name, rEvent);
+					}
+					else
+					{
+						releaseRecord(rEvent.lastInstance);
+					}
+					rEvent.lastInstance = record;
+				}
+			}
+			position += record.size;
+		}
+		segment.writePosition = position;
+		if(position + 4 <= segmentSize)
+			buffer.putInt(position, 0);
+	}
+	
+	private LogRecord readRecordHeader(Segment segment, int position) throws PersistenceDataFormatSoftnetException
+	{
+		ByteBuffer buffer = segment.buffer;
+		if(position + RecordHeaderSize > segmentSize)
+			return null;
+		
+		int recordSize = buffer.getInt(position);
+		if(recordSize == 0)
+			return null;
+		if(recordSize < RecordHeaderSize + 2 || position + recordSize > segmentSize)
+			return null;
+		
+		int flags = buffer.get(position + 8);
+		int kind = buffer.get(position + 9);
+		int nameBytesCount = buffer.getShort(position + 10) & 0xFFFF;
+		if((flags != 0 && flags != 1) || !(kind == 1 || kind == 5 || kind == 2 || kind == 4) || nameBytesCount < 1 || nameBytesCount > 512 || RecordHeaderSize + nameBytesCount > recordSize)
+			return null;
+		
+		byte[] data = new byte[recordSize - 9];
+		ByteBuffer view = buffer.duplicate();
+		((java.nio.Buffer)view).position(position + 9);
+		view.get(data);
+		
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		if((int)crc.getValue() != buffer.getInt(position + 4))
+			return null;
+		
+		String eventName = new String(data, 3, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
+		return new LogRecord(segment, position, recordSize, RecordHeaderSize + nameBytesCount, kind, eventName);
+	}
+	
+	private Segment openSegment(long sequence) throws IOException
+	{
+		File file = new File(directory, String.format("%016x.seg", sequence));
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try
+		{
+			if(randomAccessFile.length() < segmentSize)
+				randomAccessFile.setLength(segmentSize);
+			FileChannel channel = randomAccessFile.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			return new Segment(sequence, file, randomAccessFile, buffer);
+		}
+		catch(IOException ex)
+		{
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+	
+	private UUID readSegmentHeader(Segment segment) throws PersistenceDataFormatSoftnetException
+	{
+		ByteBuffer buffer = segment.buffer;
+		if(buffer.getInt(0) != SegmentMagic || buffer.getLong(24) != segment.sequence)
+			throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", segment.file.getPath()));
+		
+		UUID segmentServiceUid = new UUID(buffer.getLong(32), buffer.getLong(40));
+		if(segmentServiceUid.equals(serviceUid) == false)
+			throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", segment.file.getPath()));
+		
+		return new UUID(buffer.getLong(8), buffer.getLong(16));
+	}
+	
+	private Segment appendSegment() throws IOException
+	{
+		retryDiscardedFiles();
+		Segment segment = openSegment(nextSegmentSequence);
+		nextSegmentSequence++;
+		
+		ByteBuffer buffer = segment.buffer;
+		buffer.putInt(0, SegmentMagic);
+		buffer.putLong(8, storageUid.getMostSignificantBits());
+		buffer.putLong(16, storageUid.getLeastSignificantBits());
+		buffer.putLong(24, segment.sequence);
+		buffer.putLong(32, serviceUid.getMostSignificantBits());
+		buffer.putLong(40, serviceUid.getLeastSignificantBits());
+		buffer.putInt(SegmentHeaderSize, 0);
+		segment.writePosition = SegmentHeaderSize;
+		
+		segments.add(segment);
+		markDirty(segment);
+		return segment;
+	}
+	
+	private void deleteSegment(Segment segment)
+	{
+		segments.remove(segment);
+		dirtySegments.remove(segment);
+		discardSegmentFile(segment);
+	}
+	
+	// A file that is still mapped cannot be deleted on some platforms. Such a segment gets a zeroed magic,
+	// so that load() skips it, and its deletion is retried when the next segment is appended.
+	private void discardSegmentFile(Segment segment)
+	{
+		segment.close();
+		if(segment.file.delete())
+			return;
+		segment.buffer.putInt(0, 0);
+		segment.buffer.force();
+		discardedFiles.add(segment.file);
+	}
+	
+	private void retryDiscardedFiles()
+	{
+		Iterator<File> iterator = discardedFiles.iterator();
+		while(iterator.hasNext())
+		{
+			File file = iterator.next();
+			if(file.delete() || file.exists() == false)
+				iterator.remove();
+		}
+	}
+	
+	private void truncate() throws IOException
+	{
+		for(Segment segment: segments)
+		{
+			dirtySegments.remove(segment);
+			discardSegmentFile(segment);
+		}
+		segments.clear();
+		
+		appendSegment();
+		headSegment = segments.get(0);
+		headPosition = SegmentHeaderSize;
+		ancientDataTailSegment = headSegment;
+		ancientDataTailPosition = SegmentHeaderSize;
+		peekedRecord = null;
+	}
+	
+	private void markDirty(Segment segment)
+	{
+		if(durability == PersistenceDurability.PerEvent)
+			segment.buffer.force();
+		else
+			dirtySegments.add(segment);
+	}
+	
+	private void commit()
+	{
+		if(durability == PersistenceDurability.Interval)
+			return;
+		flushDirtySegments();
+	}
+	
+	private void flushDirtySegments()
+	{
+		for(Segment segment: dirtySegments)
+			segment.buffer.force();
+		dirtySegments.clear();
+	}
+	
+	// With the Interval durability, dirty segments are forced on the scheduler of the endpoint the storage is attached to.
+	void startSync(Scheduler scheduler)
+	{
+		synchronized(mutex)
+		{
+			if(isClosed || durability != PersistenceDurability.Interval || this.scheduler != null)
+				return;
+			this.scheduler = scheduler;
+			scheduleSync();
+		}
+	}
+	
+	private void scheduleSync()
+	{
+		Acceptor<Object> acceptor = new Acceptor<Object>()
+		{
+			public void accept(Object noData) { onSyncTimerExpired(); }
+		};
+		syncTask = new ScheduledTask(acceptor, null);
+		scheduler.addMillis(syncTask, syncIntervalMillis);
+	}
+	
+	private void onSyncTimerExpired()
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				return;
+			flushDirtySegments();
+			scheduleSync();
+		}
+	}
+	
+	private LogRecord[] appendRecords(byte[][] records) throws IOException, PersistenceStorageFullSoftnetException
+	{
+		int maxRecordSize = segmentSize - SegmentHeaderSize - 4;
+		int newSegments = 0;
+		int position = segments.get(segments.size() - 1).writePosition;
+		for(byte[] record: records)
+		{
+			if(record.length > maxRecordSize)
+				throw new PersistenceStorageFullSoftnetException(String.format("The size of the event exceeds the segment size of the persistance storage '%s'.", directory.getPath()));
+			if(position + record.length > segmentSize)
+			{
+				newSegments++;
+				position = SegmentHeaderSize;
+			}
+			position += record.length;
+		}
+		if(segments.size() + newSegments > maxSegments)
+			throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", directory.getPath()));
+		
+		LogRecord[] logRecords = new LogRecord[records.length];
+		for(int i = 0; i < records.length; i++)
+		{
+			Segment segment = segments.get(segments.size() - 1);
+			if(segment.writePosition + records[i].length > segmentSize)
+				segment = appendSegment();
+			
+			int recordPosition = segment.writePosition;
+			ByteBuffer view = segment.buffer.duplicate();
+			((java.nio.Buffer)view).position(recordPosition);
+			view.put(records[i]);
+			
+			segment.writePosition += records[i].length;
+			if(segment.writePosition + 4 <= segmentSize)
+				segment.buffer.putInt(segment.writePosition, 0);
+			segment.liveRecords++;
+			markDirty(segment);
+			
+			int nameBytesCount = ((records[i][10] & 0xFF) << 8) | (records[i][11] & 0xFF);
+			String eventName = new String(records[i], RecordHeaderSize, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
+			logRecords[i] = new LogRecord(segment, recordPosition, records[i].length, RecordHeaderSize + nameBytesCount, records[i][9], eventName);
+		}
+		return logRecords;
+	}
+	
+	private byte[] encodeRecord(int recordKind, String eventName, byte[] bodyEncoding)
+	{
+		byte[] nameBytes = eventName.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+		int headerSize = RecordHeaderSize + nameBytes.length;
+		int recordSize = headerSize + bodyEncoding.length;
+		
+		byte[] record = new byte[recordSize];
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		buffer.putInt(0, recordSize);
+		record[8] = 0;
+		record[9] = (byte)recordKind;
+		buffer.putShort(10, (short)nameBytes.length);
+		System.arraycopy(nameBytes, 0, record, RecordHeaderSize, nameBytes.length);
+		System.arraycopy(bodyEncoding, 0, record, headerSize, bodyEncoding.length);
+		
+		CRC32 crc = new CRC32();
+		crc.update(record, 9, recordSize - 9);
+		buffer.putInt(4, (int)crc.getValue());
+		return record;
+	}
+
+	private byte[] encodeBody(ReplacingEvent replacingEvent)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder asnSequence = asnEncoder.Sequence();
+		asnSequence.OctetString(replacingEvent.uid);
+		if(replacingEvent.isNull == false)
+		{
+			byte[] argumentsEncoding = replacingEvent.getEncoding();
+			if(argumentsEncoding != null)
+				asnSequence.OctetString(1, argumentsEncoding);
+		}
+		return asnEncoder.getEncoding();
+	}
+
+	private byte[] encodeBody(QueueingEvent queueingEvent)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder asnSequence = asnEncoder.Sequence();
+		asnSequence.OctetString(queueingEvent.uid);
+		byte[] argumentsEncoding = queueingEvent.getEncoding();
+		if(argumentsEncoding != null)
+			asnSequence.OctetString(1, argumentsEncoding);
+		return asnEncoder.getEncoding();
+	}
+
+	private byte[] encodeBody(PrivateEvent privateEvent)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder asnSequence = asnEncoder.Sequence();
+		asnSequence.OctetString(privateEvent.uid);
+		asnSequence.Int64(privateEvent.clientId);
+		byte[] argumentsEncoding = privateEvent.getEncoding();
+		if(argumentsEncoding != null)
+			asnSequence.OctetString(1, argumentsEncoding);
+		return asnEncoder.getEncoding();
+	}
+	
+	private ServiceEventPersistable readRecord(LogRecord record) throws PersistenceDataFormatSoftnetException
+	{
+		byte[] bodyBuffer = new byte[record.size - record.headerSize];
+		ByteBuffer view = record.segment.buffer.duplicate();
+		((java.nio.Buffer)view).position(record.position + record.headerSize);
+		view.get(bodyBuffer);
+		
+		try
+		{
+			SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
+			UUID instanceUid = asnSequence.OctetStringToUUID();
+			if(record.kind == 5)
+				return ServiceEventPersistable.createReplacingNullEvent(record.eventName, instanceUid);
+			
+			long clientId = 0;
+			if(record.kind == 4)
+				clientId = asnSequence.Int64();
+			
+			byte[] argumentsEncoding = null;
+			if(asnSequence.exists(1))
+				argumentsEncoding = asnSequence.OctetString();
+			
+			if(record.kind == 1)
+				return ServiceEventPersistable.createReplacingEvent(record.eventName, instanceUid, argumentsEncoding);
+			if(record.kind == 2)
+				return ServiceEventPersistable.createQueueingEvent(record.eventName, instanceUid, argumentsEncoding);
+			return ServiceEventPersistable.createPrivateEvent(record.eventName, instanceUid, clientId, argumentsEncoding);
+		}
+		catch(AsnException ex)
+		{
+			throw new PersistenceDataFormatSoftnetException(ex.getMessage());
+		}
+	}
+	
+	private void releaseRecord(LogRecord record)
+	{
+		Segment segment = record.segment;
+		if(segment.isClosed || segment.buffer.get(record.position + 8) != 0)
+			return;
+		
+		segment.buffer.put(record.position + 8, (byte)1);
+		segment.liveRecords--;
+		markDirty(segment);
+		
+		if(segment.liveRecords == 0 && isInStorageMode == false && segment != segments.get(segments.size() - 1))
+			deleteSegment(segment);
+	}
+
+	public UUID getUid()
+	{
+		return storageUid;
+	}
+
+	public void invalidateAncientData() throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			if(ancientDataTailSegment == segments.get(0) && ancientDataTailPosition == SegmentHeaderSize)
+				return;
+			
+			try
+			{
+				Segment tailSegment = segments.get(segments.size() - 1);
+				if(ancientDataTailSegment == tailSegment && ancientDataTailPosition == tailSegment.writePosition)
+				{
+					truncate();
+					replacingEvents.clear();
+					queueingEvents.clear();
+					privateEvents.clear();
+				}
+				else
+				{
+					for(Segment segment: new ArrayList<Segment>(segments))
+					{
+						int endPosition = segment == ancientDataTailSegment ? ancientDataTailPosition : segment.writePosition;
+						int position = SegmentHeaderSize;
+						while(position < endPosition)
+						{
+							int recordSize = segment.buffer.getInt(position);
+							if(segment.buffer.get(position + 8) == 0)
+							{
+								segment.buffer.put(position + 8, (byte)1);
+								segment.liveRecords--;
+							}
+							position += recordSize;
+						}
+						markDirty(segment);
+						
+						if(segment == ancientDataTailSegment)
+							break;
+						deleteSegment(segment);
+					}
+					
+					headSegment = ancientDataTailSegment;
+					headPosition = ancientDataTailPosition;
+					ancientDataTailSegment = segments.get(0);
+					ancientDataTailPosition = SegmentHeaderSize;
+				}
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}	
+	
+	public void clear() throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			try			
+			{
+				truncate();
+				replacingEvents.clear();
+				queueingEvents.clear();
+				privateEvents.clear();
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public void reset() throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			try
+			{
+				if(storageUid == null)
+					storageUid = UUID.randomUUID();
+				truncate();
+				replacingEvents.clear();
+				queueingEvents.clear();
+				privateEvents.clear();
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public void setStorageMode()
+	{
+		synchronized(mutex)
+		{
+			if(isInStorageMode)
+				return;			
+			isInStorageMode = true;
+			headSegment = segments.get(0);
+			headPosition = SegmentHeaderSize;
+			peekedRecord = null;
+						
+			queueingEvents.clear();
+			privateEvents.clear();
+		}
+	}
+
+	public boolean isInCacheMode()
+	{
+		return isInStorageMode == false;
+	}
+	
+	public boolean isInStorageMode()
+	{
+		return isInStorageMode;		
+	}
+	
+	public void cache(ReplacingEvent replacingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		cache(new ReplacingEvent[] { replacingEvent });
+	}
+
+	public void cache(QueueingEvent queueingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		cache(new QueueingEvent[] { queueingEvent });
+	}
+
+	public void cache(PrivateEvent privateEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		cache(new PrivateEvent[] { privateEvent });
+	}
+
+	public void cache(ReplacingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");
+				
+			try
+			{
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(events[i].isNull == false ? 1 : 5, events[i].name, encodeBody(events[i]));
+				
+				LogRecord[] logRecords = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
+				{
+					LogRecord record = logRecords[i];
+					REvent rEvent = findREvent(events[i].name);
+					if(rEvent == null)
+					{
+						rEvent = new REvent(events[i].name);
+						replacingEvents.put(rEvent.name, rEvent);
+					}
+					
+					if(rEvent.currentInstance == null)
+					{
+						rEvent.currentInstance = record;
+						unacknowledgedEvents++;
+					}
+					else
+					{
+						if(rEvent.lastInstance != null)
+							releaseRecord(rEvent.lastInstance);
+						rEvent.lastInstance = record;
+					}
+				}
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public void cache(QueueingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");
+			
+			try
+			{
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(2, events[i].name, encodeBody(events[i]));
+				
+				LogRecord[] logRecords = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
+				{
+					QEvent qEvent = findQEvent(events[i].name);
+					if(qEvent == null)
+					{
+						qEvent = new QEvent(events[i].name);
+						queueingEvents.put(qEvent.name, qEvent);
+					}
+					
+					if(qEvent.instanceQueue.isEmpty())
+						unacknowledgedEvents++;
+					qEvent.instanceQueue.add(logRecords[i]);
+				}
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public void cache(PrivateEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");
+			
+			try
+			{
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(4, events[i].name, encodeBody(events[i]));
+				
+				LogRecord[] logRecords = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
+				{
+					PEvent pEvent = findPEvent(events[i].name);
+					if(pEvent == null)
+					{
+						pEvent = new PEvent(events[i].name);
+						privateEvents.put(pEvent.name, pEvent);
+					}
+					
+					if(pEvent.instanceQueue.isEmpty())
+						unacknowledgedEvents++;
+					pEvent.instanceQueue.add(logRecords[i]);
+				}
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public ServiceEventPersistable setAcknowledment(int eventKind, String eventName) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");			
+
+			if(eventName == null)
+				throw new NullPointerException("The value of eventName is null.");
+			
+			try
+			{
+				LogRecord nextRecord = null;
+				if(eventKind == 1)
+				{
+					REvent rEvent = findREvent(eventName);
+					if(rEvent == null || rEvent.currentInstance == null)
+						throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
+					
+					releaseRecord(rEvent.currentInstance);
+					rEvent.currentInstance = rEvent.lastInstance;
+					rEvent.lastInstance = null;
+					nextRecord = rEvent.currentInstance;
+				}
+				else if(eventKind == 2 || eventKind == 4)
+				{
+					Queue<LogRecord> instanceQueue = findInstanceQueue(eventKind, eventName);
+					if(instanceQueue == null || instanceQueue.isEmpty())
+						throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
+					
+					releaseRecord(instanceQueue.remove());
+					nextRecord = instanceQueue.peek();
+				}
+				else 
+					throw new IllegalArgumentException("The value of 'eventKind' is illegal.");
+				
+				if(nextRecord == null)
+				{
+					unacknowledgedEvents--;
+					if(unacknowledgedEvents == 0)
+						truncate();
+					commit();
+					return null;
+				}
+				
+				commit();
+				return readRecord(nextRecord);
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public ServiceEventPersistable peek(int eventKind, String eventName) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");			
+
+			if(eventName == null)
+				throw new NullPointerException("The value of eventName is null.");
+			
+			if(eventKind == 1)
+			{
+				REvent rEvent = findREvent(eventName);
+				if(rEvent == null || rEvent.currentInstance == null)
+					return null;
+				return readRecord(rEvent.currentInstance);
+			}
+			else if(eventKind == 2 || eventKind == 4)
+			{
+				Queue<LogRecord> instanceQueue = findInstanceQueue(eventKind, eventName);
+				if(instanceQueue == null || instanceQueue.isEmpty())
+					return null;
+				return readRecord(instanceQueue.element());
+			}
+			else 
+				throw new IllegalArgumentException("The value of eventKind is illegal.");
+		}
+	}
+
+	public ServiceEventCursor peek(int eventKind, String eventName, int offset) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");			
+
+			if(eventName == null)
+				throw new NullPointerException("The value of eventName is null.");
+			
+			if(offset < 0)
+				throw new IllegalArgumentException("The value of 'offset' must not be negative.");
+
+			if(eventKind == 1)
+			{
+				if(offset > 0)
+					return new SingleEventCursor(null);
+				return new SingleEventCursor(peek(eventKind, eventName));
+			}
+			else if(eventKind == 2 || eventKind == 4)
+			{
+				Queue<LogRecord> instanceQueue = findInstanceQueue(eventKind, eventName);
+				if(instanceQueue == null || instanceQueue.size() <= offset)
+					return new SingleEventCursor(null);
+				
+				Iterator<LogRecord> iterator = instanceQueue.iterator();
+				for(int i = 0; i < offset; i++)
+					iterator.next();
+				return new RecordCursor(iterator);
+			}
+			else 
+				throw new IllegalArgumentException("The value of eventKind is illegal.");
+		}
+	}
+
+	public void save(ReplacingEvent replacingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		save(new ReplacingEvent[] { replacingEvent });
+	}
+
+	public void save(QueueingEvent queueingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		save(new QueueingEvent[] { queueingEvent });
+	}
+
+	public void save(PrivateEvent privateEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		save(new PrivateEvent[] { privateEvent });
+	}
+
+	public void save(ReplacingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			try
+			{
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(events[i].isNull == false ? 1 : 5, events[i].name, encodeBody(events[i]));
+				
+				LogRecord[] logRecords = appendRecords(records);
+				for(int i = 0; i < events.length; i++)
+				{
+					REvent rEvent = findREvent(events[i].name);
+					if(rEvent == null)
+					{
+						rEvent = new REvent(events[i].name);
+						replacingEvents.put(rEvent.name, rEvent);						
+					}
+					else if(rEvent.lastInstance != null)
+					{
+						releaseRecord(rEvent.lastInstance);
+					}
+					rEvent.lastInstance = logRecords[i];
+				}
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public void save(QueueingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			try
+			{
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(2, events[i].name, encodeBody(events[i]));
+				appendRecords(records);
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public void save(PrivateEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			try
+			{
+				byte[][] records = new byte[events.length][];
+				for(int i = 0; i < events.length; i++)
+					records[i] = encodeRecord(4, events[i].name, encodeBody(events[i]));
+				appendRecords(records);
+				commit();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	public void setAcknowledment() throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			if(peekedRecord == null)
+				throw new IllegalStateException("No event has been peeked up to be acknowledged.");
+			
+			releaseRecord(peekedRecord);
+			headSegment = peekedRecord.segment;
+			headPosition = peekedRecord.position + peekedRecord.size;
+			peekedRecord = null;
+			commit();
+		}
+	}
+
+	public ServiceEventPersistable peek() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			if(peekedRecord != null)
+				return readRecord(peekedRecord);
+			
+			try
+			{
+				while(true)
+				{
+					if(headPosition >= headSegment.writePosition)
+					{
+						int index = segments.indexOf(headSegment);
+						if(index == segments.size() - 1)
+						{
+							truncate();
+							replacingEvents.clear();
+							isInStorageMode = false;
+							commit();
+							return null;
+						}
+						
+						Segment nextSegment = segments.get(index + 1);
+						if(headSegment.liveRecords == 0)
+							deleteSegment(headSegment);
+						headSegment = nextSegment;
+						headPosition = SegmentHeaderSize;
+						continue;
+					}
+					
+					LogRecord record = readRecordHeader(headSegment, headPosition);
+					if(record == null)
+						throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", headSegment.file.getPath()));
+					
+					if(headSegment.buffer.get(headPosition + 8) != 0)
+					{
+						headPosition += record.size;
+						continue;
+					}
+					
+					peekedRecord = record;
+					return readRecord(record);
+				}
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+	
+	public void close()
+	{		
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				return;
+			isClosed = true;
+			
+			closeSegments();
+			replacingEvents.clear();
+			queueingEvents.clear();
+			privateEvents.clear();
+			
+			if(syncTask != null)
+				syncTask.cancel();
+		}
+	}
+	
+	private void closeSegments()
+	{
+		for(Segment segment: segments)
+		{
+			segment.buffer.force();
+			segment.close();
+		}
+		segments.clear();
+		dirtySegments.clear();
+	}
+	
+	private REvent findREvent(String eventName)
+	{
+		return replacingEvents.get(eventName);
+	}
+
+	private QEvent findQEvent(String eventName)
+	{
+		return queueingEvents.get(eventName);
+	}
+
+	private PEvent findPEvent(String eventName)
+	{
+		return privateEvents.get(eventName);
+	}
+	
+	private Queue<LogRecord> findInstanceQueue(int eventKind, String eventName)
+	{
+		if(eventKind == 2)
+		{
+			QEvent qEvent = findQEvent(eventName);
+			return qEvent != null ? qEvent.instanceQueue : null;
+		}
+		PEvent pEvent = findPEvent(eventName);
+		return pEvent != null ? pEvent.instanceQueue : null;
+	}
+	
+	private class RecordCursor implements ServiceEventCursor
+	{
+		private final Iterator<LogRecord> iterator;
+		public RecordCursor(Iterator<LogRecord> iterator)
+		{
+			this.iterator = iterator;
+		}
+		public ServiceEventPersistable next() throws PersistenceDataFormatSoftnetException
+		{
+			synchronized(mutex)
+			{
+				if(isClosed) 
+					throw new IllegalStateException("The storage has been closed.");
+				if(iterator.hasNext() == false)
+					return null;
+				return readRecord(iterator.next());
+			}
+		}
+	}
+	
+	private class Segment
+	{
+		public final long sequence;
+		public final File file;
+		public final RandomAccessFile randomAccessFile;
+		public final MappedByteBuffer buffer;
+		public int writePosition;
+		public int liveRecords;
+		public boolean isClosed;
+		public Segment(long sequence, File file, RandomAccessFile randomAccessFile, MappedByteBuffer buffer)
+		{
+			this.sequence = sequence;
+			this.file = file;
+			this.randomAccessFile = randomAccessFile;
+			this.buffer = buffer;
+			writePosition = SegmentHeaderSize;
+			liveRecords = 0;
+			isClosed = false;
+		}
+		public void close()
+		{
+			isClosed = true;
+			try
+			{
+				randomAccessFile.close();
+			}
+			catch(IOException ex) {}
+		}
+	}
+	
+	private class LogRecord
+	{
+		public final Segment segment;
+		public final int position;
+		public final int size;
+		public final int headerSize;
+		public final int kind;
+		public final String eventName;
+		public LogRecord(Segment segment, int position, int size, int headerSize, int kind, String eventName)
+		{
+			this.segment = segment;
+			this.position = position;
+			this.size = size;
+			this.headerSize = headerSize;
+			this.kind = kind;
+			this.eventName = eventName;
+		}
+	}
+	
+	private class REvent
+	{
+		public final String name;
+		public LogRecord currentInstance;
+		public LogRecord lastInstance;
+		public REvent(String name)
+		{
+			this.name = name;
+			currentInstance = null;
+			lastInstance = null;
+		}
+	}
+
+	private class QEvent
+	{
+		public final String name;
+		public Queue<LogRecord> instanceQueue;
+		public QEvent(String name)
+		{
+			this.name = name;
+			this.instanceQueue = new LinkedList<LogRecord>();
+		}
+	}
+
+	private class PEvent
+	{
+		public final String name;
+		public Queue<LogRecord> instanceQueue;
+		public PEvent(String name)
+		{
+			this.name = name;
+			this.instanceQueue = new LinkedList<LogRecord>();
+		}
+	}
+}
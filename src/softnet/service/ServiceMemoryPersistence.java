@@ -16,6 +16,8 @@
 
 package softnet.service;
 
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.UUID;
@@ -30,9 +32,9 @@ class ServiceMemoryPersistence implements ServicePersistence
 		storageUid = UUID.randomUUID();
 		storageMode = false;
 		sepEvents = new LinkedList<ServiceEventPersistable>();
-		replacingEvents = new LinkedList<REvent>();
-		queueingEvents = new LinkedList<QEvent>();
-		privateEvents = new LinkedList<PEvent>();
+		replacingEvents = new HashMap<String, REvent>();
+		queueingEvents = new HashMap<String, QEvent>();
+		privateEvents = new HashMap<String, PEvent>();
 		isClosed = false;
 	}
 	
@@ -41,9 +43,9 @@ class ServiceMemoryPersistence implements ServicePersistence
 	private boolean storageMode;
 	//private long storageCapacity;
 	private LinkedList<ServiceEventPersistable> sepEvents;
-	private LinkedList<REvent> replacingEvents;
-	private LinkedList<QEvent> queueingEvents;
-	private LinkedList<PEvent> privateEvents;
+	private HashMap<String, REvent> replacingEvents;
+	private HashMap<String, QEvent> queueingEvents;
+	private HashMap<String, PEvent> privateEvents;
 	private boolean isClosed;
 	
 	public UUID getUid()
@@ -108,42 +110,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			if(storageMode) 
 				throw new IllegalStateException("The storage is in synchronous mode.");
 			
-			ServiceEventPersistable sepEvent = null;
-			if(replacingEvent.isNull == false)
-				sepEvent = ServiceEventPersistable.createReplacingEvent(replacingEvent.name, replacingEvent.uid, replacingEvent.getEncoding());
-			else
-				sepEvent = ServiceEventPersistable.createReplacingNullEvent(replacingEvent.name, replacingEvent.uid);
-			sepEvents.add(sepEvent);
-			
-			REvent rEvent = null;
-			for(REvent listElement: replacingEvents)
-			{
-				if(listElement.name.equals(replacingEvent.name))
-				{
-					rEvent = listElement;
-					break;
-				}
-			}		
-			
-			if(rEvent == null)
-			{
-				rEvent = new REvent(replacingEvent.name);
-				replacingEvents.add(rEvent);				
-				rEvent.currentInstance = sepEvent;
-			}
-			else if(rEvent.currentInstance == null)
-			{
-				rEvent.currentInstance = sepEvent;						
-			}
-			else if(rEvent.lastInstance == null)
-			{
-				rEvent.lastInstance = sepEvent;
-			}
-			else
-			{
-				sepEvents.remove(rEvent.lastInstance);				
-				rEvent.lastInstance = sepEvent;
-			}
+			cacheEvent(replacingEvent);
 		}
 	}
 
@@ -157,33 +124,72 @@ class ServiceMemoryPersistence implements ServicePersistence
 			if(storageMode) 
 				throw new IllegalStateException("The storage is in synchronous mode.");
 			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createQueueingEvent(queueingEvent.name, queueingEvent.uid, queueingEvent.getEncoding());
-			sepEvents.add(sepEvent);
+			cacheEvent(queueingEvent);
+		}
+	}
+
+	public void cache(PrivateEvent privateEvent) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
 			
-			QEvent qEvent = null;
-			for(QEvent listElement: queueingEvents)
-			{
-				if(listElement.name.equals(queueingEvent.name))
-				{
-					qEvent = listElement;
-					break;
-				}
-			}
+			if(storageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");
 			
-			if(qEvent == null)
-			{
-				qEvent = new QEvent(queueingEvent.name);
-				queueingEvents.add(qEvent);				
-				qEvent.instanceQueue.add(sepEvent);
-			}
-			else 
-			{
-				qEvent.instanceQueue.add(sepEvent);
-			}
+			cacheEvent(privateEvent);
+		}
+	}
+	
+	public void cache(ReplacingEvent[] events) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(storageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");
+			
+			for(ReplacingEvent event: events)
+				cacheEvent(event);
 		}
 	}
 
-	public void cache(PrivateEvent privateEvent) throws PersistenceStorageFullSoftnetException
+	private void cacheEvent(ReplacingEvent replacingEvent)
+	{
+		ServiceEventPersistable sepEvent = null;
+		if(replacingEvent.isNull == false)
+			sepEvent = ServiceEventPersistable.createReplacingEvent(replacingEvent.name, replacingEvent.uid, replacingEvent.getEncoding());
+		else
+			sepEvent = ServiceEventPersistable.createReplacingNullEvent(replacingEvent.name, replacingEvent.uid);
+		sepEvents.add(sepEvent);
+		
+		REvent rEvent = replacingEvents.get(replacingEvent.name);
+		
+		if(rEvent == null)
+		{
+			rEvent = new REvent(replacingEvent.name);
+			replacingEvents.put(rEvent.name, rEvent);				
+			rEvent.currentInstance = sepEvent;
+		}
+		else if(rEvent.currentInstance == null)
+		{
+			rEvent.currentInstance = sepEvent;						
+		}
+		else if(rEvent.lastInstance == null)
+		{
+			rEvent.lastInstance = sepEvent;
+		}
+		else
+		{
+			sepEvents.remove(rEvent.lastInstance);				
+			rEvent.lastInstance = sepEvent;
+		}
+	}
+	
+	public void cache(QueueingEvent[] events) throws PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
@@ -193,29 +199,61 @@ class ServiceMemoryPersistence implements ServicePersistence
 			if(storageMode) 
 				throw new IllegalStateException("The storage is in synchronous mode.");
 			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createPrivateEvent(privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
-			sepEvents.add(sepEvent);
+			for(QueueingEvent event: events)
+				cacheEvent(event);
+		}
+	}
+
+	private void cacheEvent(QueueingEvent queueingEvent)
+	{
+		ServiceEventPersistable	sepEvent = ServiceEventPersistable.createQueueingEvent(queueingEvent.name, queueingEvent.uid, queueingEvent.getEncoding());
+		sepEvents.add(sepEvent);
+		
+		QEvent qEvent = queueingEvents.get(queueingEvent.name);
+		
+		if(qEvent == null)
+		{
+			qEvent = new QEvent(queueingEvent.name);
+			queueingEvents.put(qEvent.name, qEvent);				
+			qEvent.instanceQueue.add(sepEvent);
+		}
+		else 
+		{
+			qEvent.instanceQueue.add(sepEvent);
+		}
+	}
+	
+	public void cache(PrivateEvent[] events) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
 			
-			PEvent pEvent = null;
-			for(PEvent listElement: privateEvents)
-			{
-				if(listElement.name.equals(privateEvent.name))
-				{
-					pEvent = listElement;
-					break;
-				}
-			}
+			if(storageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");
 			
-			if(pEvent == null)
-			{
-				pEvent = new PEvent(privateEvent.name);
-				privateEvents.add(pEvent);				
-				pEvent.instanceQueue.add(sepEvent);
-			}
-			else 
-			{
-				pEvent.instanceQueue.add(sepEvent);
-			}
+			for(PrivateEvent event: events)
+				cacheEvent(event);
+		}
+	}
+
+	private void cacheEvent(PrivateEvent privateEvent)
+	{
+		ServiceEventPersistable	sepEvent = ServiceEventPersistable.createPrivateEvent(privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
+		sepEvents.add(sepEvent);
+		
+		PEvent pEvent = privateEvents.get(privateEvent.name);
+		
+		if(pEvent == null)
+		{
+			pEvent = new PEvent(privateEvent.name);
+			privateEvents.put(pEvent.name, pEvent);				
+			pEvent.instanceQueue.add(sepEvent);
+		}
+		else 
+		{
+			pEvent.instanceQueue.add(sepEvent);
 		}
 	}
 	
@@ -234,15 +272,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			
 			if(eventKind == 1)
 			{
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						rEvent = listElement;
-						break;
-					}
-				}		
+				REvent rEvent = replacingEvents.get(eventName);
 				
 				if(rEvent == null)
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
@@ -263,15 +293,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			}
 			else if(eventKind == 2)
 			{
-				QEvent qEvent = null;
-				for(QEvent listElement: queueingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						qEvent = listElement;
-						break;
-					}
-				}		
+				QEvent qEvent = queueingEvents.get(eventName);
 				
 				if(qEvent == null)
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
@@ -289,15 +311,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			}
 			else if(eventKind == 4)
 			{
-				PEvent pEvent = null;
-				for(PEvent listElement: privateEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						pEvent = listElement;
-						break;
-					}
-				}		
+				PEvent pEvent = privateEvents.get(eventName);
 				
 				if(pEvent == null)
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
@@ -333,15 +347,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			
 			if(eventKind == 1)
 			{
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						rEvent = listElement;
-						break;
-					}
-				}		
+				REvent rEvent = replacingEvents.get(eventName);
 				
 				if(rEvent == null)
 					return null;
@@ -353,15 +359,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			}
 			else if(eventKind == 2)
 			{
-				QEvent qEvent = null;
-				for(QEvent listElement: queueingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						qEvent = listElement;
-						break;
-					}
-				}		
+				QEvent qEvent = queueingEvents.get(eventName);
 				
 				if(qEvent == null)
 					return null;
@@ -373,15 +371,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			}
 			else if(eventKind == 4)
 			{
-				PEvent pEvent = null;
-				for(PEvent listElement: privateEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						pEvent = listElement;
-						break;
-					}
-				}		
+				PEvent pEvent = privateEvents.get(eventName);
 				
 				if(pEvent == null)
 					return null;
@@ -396,48 +386,66 @@ class ServiceMemoryPersistence implements ServicePersistence
 		}
 	}
 	
-	public void save(ReplacingEvent replacingEvent) throws PersistenceStorageFullSoftnetException
+	public ServiceEventCursor peek(int eventKind, String eventName, int offset)
 	{
 		synchronized(mutex)
 		{
 			if(isClosed) 
 				throw new IllegalStateException("The storage has been closed.");
+
+			if(storageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");			
+
+			if(eventName == null)
+				throw new NullPointerException("The value of eventName is null.");
 			
-			if(storageMode == false) 
-				throw new IllegalStateException("The storage is in asynchronous mode.");
-			
-			ServiceEventPersistable sepEvent = null;
-			if(replacingEvent.isNull == false)
-				sepEvent = ServiceEventPersistable.createReplacingEvent(replacingEvent.name, replacingEvent.uid, replacingEvent.getEncoding());
-			else
-				sepEvent = ServiceEventPersistable.createReplacingNullEvent(replacingEvent.name, replacingEvent.uid);
-			sepEvents.add(sepEvent);
+			if(offset < 0)
+				throw new IllegalArgumentException("The value of 'offset' must not be negative.");
 			
-			REvent rEvent = null;
-			for(REvent listElement: replacingEvents)
-			{
-				if(listElement.name.equals(replacingEvent.name))
-				{
-					rEvent = listElement;
-					break;
-				}
-			}		
-			
-			if(rEvent == null)
+			if(eventKind == 1)
 			{
-				rEvent = new REvent(replacingEvent.name);
-				replacingEvents.add(rEvent);				
-				rEvent.lastInstance = sepEvent;
+				if(offset > 0)
+					return new SingleEventCursor(null);
+				return new SingleEventCursor(peek(eventKind, eventName));
 			}
-			else if(rEvent.lastInstance == null)
+			
+			Queue<ServiceEventPersistable> instanceQueue = null;
+			if(eventKind == 2)
 			{
-				rEvent.lastInstance = sepEvent;
+				QEvent listElement = queueingEvents.get(eventName);
+				if(listElement != null)
+					instanceQueue = listElement.instanceQueue;
 			}
-			else
+			else if(eventKind == 4)
 			{
-				sepEvents.remove(rEvent.lastInstance);				
-				rEvent.lastInstance = sepEvent;
+				PEvent listElement = privateEvents.get(eventName);
+				if(listElement != null)
+					instanceQueue = listElement.instanceQueue;
 			}
+			else 
+				throw new IllegalArgumentException("The value of 'eventKind' is illegal.");
+			
+			if(instanceQueue == null || instanceQueue.size() <= offset)
+				return new SingleEventCursor(null);
+			
+			Iterator<ServiceEventPersistable> iterator = instanceQueue.iterator();
+			for(int i = 0; i < offset; i++)
+				iterator.next();
+			return new InstanceCursor(iterator);
+		}
+	}
+	
+	public void save(ReplacingEvent replacingEvent) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(storageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			saveEvent(replacingEvent);
 		}
 	}
 
@@ -451,8 +459,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 			if(storageMode == false) 
 				throw new IllegalStateException("The storage is in asynchronous mode.");
 			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createQueueingEvent(queueingEvent.name, queueingEvent.uid, queueingEvent.getEncoding());
-			sepEvents.add(sepEvent);			
+			saveEvent(queueingEvent);
 		}
 	}
 
@@ -466,11 +473,95 @@ class ServiceMemoryPersistence implements ServicePersistence
 			if(storageMode == false) 
 				throw new IllegalStateException("The storage is in asynchronous mode.");
 			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createPrivateEvent(privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
-			sepEvents.add(sepEvent);
+			saveEvent(privateEvent);
 		}
 	}
 	
+	public void save(ReplacingEvent[] events) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(storageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			for(ReplacingEvent event: events)
+				saveEvent(event);
+		}
+	}
+
+	private void saveEvent(ReplacingEvent replacingEvent)
+	{
+		ServiceEventPersistable sepEvent = null;
+		if(replacingEvent.isNull == false)
+			sepEvent = ServiceEventPersistable.createReplacingEvent(replacingEvent.name, replacingEvent.uid, replacingEvent.getEncoding());
+		else
+			sepEvent = ServiceEventPersistable.createReplacingNullEvent(replacingEvent.name, replacingEvent.uid);
+		sepEvents.add(sepEvent);
+		
+		REvent rEvent = replacingEvents.get(replacingEvent.name);
+		
+		if(rEvent == null)
+		{
+			rEvent = new REvent(replacingEvent.name);
+			replacingEvents.put(rEvent.name, rEvent);				
+			rEvent.lastInstance = sepEvent;
+		}
+		else if(rEvent.lastInstance == null)
+		{
+			rEvent.lastInstance = sepEvent;
+		}
+		else
+		{
+			sepEvents.remove(rEvent.lastInstance);				
+			rEvent.lastInstance = sepEvent;
+		}
+	}
+	
+	public void save(QueueingEvent[] events) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(storageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			for(QueueingEvent event: events)
+				saveEvent(event);
+		}
+	}
+
+	private void saveEvent(QueueingEvent queueingEvent)
+	{
+		ServiceEventPersistable	sepEvent = ServiceEventPersistable.createQueueingEvent(queueingEvent.name, queueingEvent.uid, queueingEvent.getEncoding());
+		sepEvents.add(sepEvent);
+	}
+	
+	public void save(PrivateEvent[] events) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(storageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			for(PrivateEvent event: events)
+				saveEvent(event);
+		}
+	}
+
+	private void saveEvent(PrivateEvent privateEvent)
+	{
+		ServiceEventPersistable	sepEvent = ServiceEventPersistable.createPrivateEvent(privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
+		sepEvents.add(sepEvent);
+	}
+	
 	public void setAcknowledment()
 	{
 		synchronized(mutex)
@@ -519,6 +610,26 @@ class ServiceMemoryPersistence implements ServicePersistence
 		}
 	}	
 	
+	private class InstanceCursor implements ServiceEventCursor
+	{
+		private final Iterator<ServiceEventPersistable> iterator;
+		public InstanceCursor(Iterator<ServiceEventPersistable> iterator)
+		{
+			this.iterator = iterator;
+		}
+		public ServiceEventPersistable next()
+		{
+			synchronized(mutex)
+			{
+				if(isClosed) 
+					throw new IllegalStateException("The storage has been closed.");
+				if(iterator.hasNext())
+					return iterator.next();
+				return null;
+			}
+		}
+	}
+	
 	private class REvent
 	{
 		public final String name;
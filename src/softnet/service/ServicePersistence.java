@@ -31,11 +31,18 @@ public interface ServicePersistence
 	void cache(ReplacingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
 	void cache(QueueingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
 	void cache(PrivateEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+	void cache(ReplacingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+	void cache(QueueingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+	void cache(PrivateEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
 	ServiceEventPersistable setAcknowledment(int eventKind, String eventName) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException;
 	ServiceEventPersistable peek(int eventKind, String eventName) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException;
+	ServiceEventCursor peek(int eventKind, String eventName, int offset) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException;
 	void save(ReplacingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
 	void save(QueueingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
 	void save(PrivateEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+	void save(ReplacingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+	void save(QueueingEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
+	void save(PrivateEvent[] events) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException;
 	void setAcknowledment() throws PersistenceIOSoftnetException;
 	ServiceEventPersistable peek() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException;
 	void close();
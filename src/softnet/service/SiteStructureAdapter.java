@@ -19,6 +19,7 @@ package softnet.service;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.regex.*;
 
 class SiteStructureAdapter implements SiteStructure
@@ -55,6 +56,7 @@ class SiteStructureAdapter implements SiteStructure
     }
     
 	private String[] roleArray;
+	private HashMap<String, Integer> roleIndexes;
 	public String[] getRoles()
 	{
 		if(roleArray == null)
@@ -69,6 +71,9 @@ class SiteStructureAdapter implements SiteStructure
 
 	public boolean containsReplacingEvent(String eventName)
 	{
+		if(eventNameIndex != null)
+			return eventNameIndex.getId(1, eventName) >= 0;
+		
 		for(REvent evt: replacingEvents)
 		{
 			if(evt.name.equals(eventName))
@@ -92,6 +97,9 @@ class SiteStructureAdapter implements SiteStructure
 
 	public boolean containsQueueingEvent(String eventName)
 	{
+		if(eventNameIndex != null)
+			return eventNameIndex.getId(2, eventName) >= 0;
+		
 		for(QEvent evt: queueingEvents)
 		{
 			if(evt.name.equals(eventName))
@@ -115,6 +123,9 @@ class SiteStructureAdapter implements SiteStructure
 
 	public boolean containsPrivateEvent(String eventName)
 	{
+		if(eventNameIndex != null)
+			return eventNameIndex.getId(4, eventName) >= 0;
+		
 		for(PEvent evt: privateEvents)
 		{
 			if(evt.name.equals(eventName))
@@ -177,8 +188,22 @@ class SiteStructureAdapter implements SiteStructure
 			}
 						
 			Collections.sort(privateEvents);
+			
+			eventNameIndex = new EventNameIndex(replacingEvents.size() + queueingEvents.size() + privateEvents.size());
+			for(REvent evt: replacingEvents)
+				eventNameIndex.add(evt.name, 1);
+			for(QEvent evt: queueingEvents)
+				eventNameIndex.add(evt.name, 2);
+			for(PEvent evt: privateEvents)
+				eventNameIndex.add(evt.name, 4);
 		}
 	}
+	
+	private EventNameIndex eventNameIndex = null;
+	public EventNameIndex getEventNameIndex()
+	{
+		return eventNameIndex;
+	}
 
 	public void setGuestSupport()
 	{
@@ -221,6 +246,9 @@ class SiteStructureAdapter implements SiteStructure
 			}
 			
 			roleArray = roleNames;
+			roleIndexes = new HashMap<String, Integer>(roleNames.length * 2);
+			for(int i = 0; i < roleNames.length; i++)
+				roleIndexes.put(roleNames[i], i);
 		}		
 	}
 		
@@ -228,12 +256,15 @@ class SiteStructureAdapter implements SiteStructure
 	{
 		if(roleArray == null)
 			return false;
-		for(String item: roleArray)
-		{
-			if(item.equals(role))
-				return true;
-		}
-		return false;
+		return roleIndexes.containsKey(role);
+	}
+	
+	public int getRoleIndex(String role)
+	{
+		if(roleArray == null)
+			return -1;
+		Integer index = roleIndexes.get(role);
+		return index != null ? index : -1;
 	}
 	
 	public void setOwnerRole(String role) 
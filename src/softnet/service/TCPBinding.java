@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.nio.channels.SocketChannel;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.UUID;
 
@@ -33,6 +34,7 @@ class TCPBinding
 	public final int virtualPort;
 	public final GuestAccess guestAccess;
 	public final String[] roles;
+	public BitSet roleSet = null;
 
 	private Object mutex;
 	private TCPOptions tcpOptions;
@@ -150,14 +152,13 @@ class TCPBinding
 			else
 			{
 				final TcpRequest request = completedRequests.removeFirst();				
-				Thread thread = new Thread()
+				Threads.start(new Runnable()
 				{
 				    public void run(){
 						request.channel.send(EncodeMessage_ConnectionAccepted(request.requestUid, request.userKind, request.clientId));		
 				    	acceptHandler.accept(new RequestContext(serviceEndpoint, request.user, request.clientId, request.sessionTag), request.socketChannel, request.mode);
 				    }
-				};
-				thread.start();
+				});
 			}
 		}
 	}
@@ -79,13 +79,12 @@ class TCPConnectorV4 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -253,13 +252,12 @@ class TCPConnectorV4 implements TCPConnector
 					listenerChannel.bind(localIEP);
 					
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();				
+					});
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 			
@@ -364,8 +362,7 @@ class TCPConnectorV4 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationTask(acceptedChannel));
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -640,8 +637,7 @@ class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationTask(acceptedChannel));
 				}
 			}
 			
@@ -653,13 +649,12 @@ class TCPConnectorV4 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateP2PConnectionInDualMode(byte[] message) throws AsnException, UnknownHostException
@@ -693,8 +688,7 @@ class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationTask(acceptedChannel));
 				}
 			}
 			
@@ -705,21 +699,19 @@ class TCPConnectorV4 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryLocalP2PConnection();
 		    }
-		};
-		thread.start();
+		});
 
-		thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -728,13 +720,12 @@ class TCPConnectorV4 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();	
+		});
 	}
 
 	private SoftnetMessage EncodeMessage_ServiceP2P()
@@ -822,11 +813,11 @@ class TCPConnectorV4 implements TCPConnector
 		}
 	}
 	
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationTask implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
-		public ClientAuthenticationThread(SocketChannel acceptedChannel){
+		public ClientAuthenticationTask(SocketChannel acceptedChannel){
 			this.acceptedChannel = acceptedChannel;
 		}
 		
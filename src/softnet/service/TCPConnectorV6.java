@@ -77,13 +77,12 @@ class TCPConnectorV6 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -224,13 +223,12 @@ class TCPConnectorV6 implements TCPConnector
 					listenerChannel.bind(localIEP);
 					
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();				
+					});
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 			
@@ -335,8 +333,7 @@ class TCPConnectorV6 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationTask(acceptedChannel));
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -561,8 +558,7 @@ class TCPConnectorV6 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationTask(acceptedChannel));
 				}
 			}
 			
@@ -573,13 +569,12 @@ class TCPConnectorV6 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -588,13 +583,12 @@ class TCPConnectorV6 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();	
+		});
 	}
 
 	private SoftnetMessage EncodeMessage_ServiceP2P()
@@ -671,11 +665,11 @@ class TCPConnectorV6 implements TCPConnector
 		}
 	}
 	
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationTask implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
-		public ClientAuthenticationThread(SocketChannel acceptedChannel){
+		public ClientAuthenticationTask(SocketChannel acceptedChannel){
 			this.acceptedChannel = acceptedChannel;
 		}
 		
@@ -83,6 +83,7 @@ class TCPController
 				throw new IllegalArgumentException(String.format("The TCP virtual port %d is already in use.", virtualPort));
 			
 			TCPBinding newBinding = new TCPBinding(serviceEndpoint, virtualPort, tcpOptions, backlog, roleNames);
+			newBinding.roleSet = membership.getRoleSet(roleNames);
 			tcpBindings.add(newBinding);
 		}
 	}
@@ -114,6 +115,7 @@ class TCPController
 			{
 				tcpBindings.remove(tcpBinding);
 				tcpBinding.close();
+				membership.getAccessCache().invalidateResource(tcpBinding);
 			}
 		}
 	}
@@ -197,45 +199,10 @@ class TCPController
 			return;
 		}
 		
-		if(tcpBinding.roles != null)
+		if(membership.getAccessCache().isAllowed(tcpBinding, tcpBinding.roleSet, tcpBinding.guestAccess, user) == false)
 		{
-			if(user.isGuest())
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;				
-			}
-			
-			boolean userAllowed = false;
-			for(String role: tcpBinding.roles)
-			{
-				if(user.isInRole(role))
-				{
-					userAllowed = true;
-					break;
-				}
-			}
-			
-			if(userAllowed == false)
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;		
-			}
-		}
-		else if(tcpBinding.guestAccess != null)
-		{
-			if(tcpBinding.guestAccess == GuestAccess.GuestDenied)
-			{
-				if(user.isGuest())
-				{
-					channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-					return;
-				}
-			}			
-			else if(user.isStatelessGuest()) // tcpBinding.guestAccess == GuestAccess.StatelessGuestDenied
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;
-			}
+			channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
+			return;
 		}
 		
 		if(tcpBinding.isBusy())
@@ -294,45 +261,10 @@ class TCPController
 			return;
 		}		
 		
-		if(tcpBinding.roles != null)
+		if(membership.getAccessCache().isAllowed(tcpBinding, tcpBinding.roleSet, tcpBinding.guestAccess, user) == false)
 		{
-			if(user.isGuest())
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;				
-			}
-			
-			boolean userAllowed = false;
-			for(String role: tcpBinding.roles)
-			{
-				if(user.isInRole(role))
-				{
-					userAllowed = true;
-					break;
-				}
-			}
-			
-			if(userAllowed == false)
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;		
-			}			
-		}
-		else if(tcpBinding.guestAccess != null)
-		{
-			if(tcpBinding.guestAccess == GuestAccess.GuestDenied)
-			{
-				if(user.isGuest())
-				{
-					channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-					return;
-				}
-			}			
-			else if(user.isStatelessGuest()) // tcpBinding.guestAccess == GuestAccess.StatelessGuestDenied
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;
-			}
+			channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
+			return;
 		}
 		
 		tcpBinding.createConnection(channel, requestUid, connectionUid, serverId, serverIP, userKind, user, clientId, sessionTag);
@@ -33,6 +33,9 @@ class UBMembership implements Membership
 		
 		eventListeners = new HashSet<ServiceEventListener>(1);		
 		mUsers = new ArrayList<MUser>();
+		usersById = new HashMap<Long, MUser>();
+		usersByName = new HashMap<String, MUser>();
+		accessCache = new AccessDecisionCache(this);
 		
 		guest = siteStructure.isGuestSupported() ? new Guest() : null;
 		statelessGuest = siteStructure.isStatelessGuestSupported() ? new StatelessGuest() : null;		
@@ -109,6 +112,21 @@ class UBMembership implements Membership
 	{
 		return false;
 	}
+	
+	public BitSet getRoleSet(String[] roles)
+	{
+		return new BitSet();
+	}
+	
+	public AccessDecisionCache getAccessCache()
+	{
+		return accessCache;
+	}
+	
+	public boolean isInRoles(MembershipUser user, BitSet roleSet)
+	{
+		return false;
+	}
 		
 	public MembershipUser[] getUsers()
 	{
@@ -165,6 +183,11 @@ class UBMembership implements Membership
 	private ServiceEndpoint softnetService;
 	private SiteStructureAdapter siteStructure;
 	private ArrayList<MUser> mUsers;
+	private HashMap<Long, MUser> usersById;
+	private HashMap<String, MUser> usersByName;
+	private AccessDecisionCache accessCache;
+	private byte[] membershipHash;
+	private SnapshotFile snapshotFile;
 	private Guest guest;
 	private StatelessGuest statelessGuest;
 	private boolean is_guest_allowed;
@@ -193,6 +216,82 @@ class UBMembership implements Membership
 	{
 		connectivity_status = StatusEnum.Disconnected;
 	}
+	
+	public void setSnapshotFile(SnapshotFile snapshotFile)
+	{
+		synchronized(endpoint_mutex)
+		{
+			if(this.snapshotFile != null)
+				throw new IllegalStateException("The membership snapshot has already been set.");
+			if(connectivity_status != StatusEnum.Disconnected)
+				throw new IllegalStateException("The membership snapshot must be set before the endpoint is connected.");
+			this.snapshotFile = snapshotFile;
+			
+			try
+			{
+				byte[] snapshot = snapshotFile.read();
+				if(snapshot == null)
+					return;
+				
+				SequenceDecoder asnRootSequence = ASNDecoder.Sequence(snapshot);
+				SequenceDecoder asnUsers = asnRootSequence.Sequence();
+				boolean guestAllowed = asnRootSequence.Boolean();
+				asnRootSequence.end();
+				
+				loadUserList(asnUsers);
+				is_guest_allowed = guestAllowed && siteStructure.isGuestSupported();
+			}
+			catch(AsnException ex)
+			{
+				clearUserList();
+				snapshotFile.delete();
+			}
+			catch(SoftnetException ex)
+			{
+				clearUserList();
+				snapshotFile.delete();
+			}
+		}
+	}
+	
+	private void saveSnapshot()
+	{
+		if(snapshotFile == null)
+			return;
+		
+		snapshotFile.writeLater(snapshotEncoder, softnetService.threadPool);
+	}
+	
+	private final SnapshotFile.Encoder snapshotEncoder = new SnapshotFile.Encoder()
+	{
+		public byte[] encode()
+		{
+			synchronized(endpoint_mutex)
+			{
+				ASNEncoder asnEncoder = new ASNEncoder();
+				SequenceEncoder asnRootSequence = asnEncoder.Sequence();
+				SequenceEncoder asnUsers = asnRootSequence.Sequence();
+				for(MUser mUser: mUsers)
+				{
+					SequenceEncoder asnUser = asnUsers.Sequence();
+					asnUser.Int64(mUser.userId);
+					asnUser.IA5String(mUser.userName);
+				}
+				asnRootSequence.Boolean(is_guest_allowed);
+				return asnEncoder.getEncoding();
+			}
+		}
+	};
+	
+	private void clearUserList()
+	{
+		mUsers = new ArrayList<MUser>();
+		usersById = new HashMap<Long, MUser>();
+		usersByName = new HashMap<String, MUser>();
+		is_guest_allowed = false;
+		membershipHash = null;
+		accessCache.clear();
+	}
 			
 	public byte[] getHash() throws HostErrorSoftnetException
 	{
@@ -200,6 +299,8 @@ class UBMembership implements Membership
 		{
 			if(mUsers.isEmpty())
 				return null;
+			if(membershipHash != null)
+				return membershipHash;
 			
 			ASNEncoder asnEncoder = new ASNEncoder();
             SequenceEncoder asnRootSequence = asnEncoder.Sequence();
@@ -227,7 +328,8 @@ class UBMembership implements Membership
                 asnUser.IA5String(mUser.userName);
             }
             
-            return Sha1Hash.compute(asnEncoder.getEncoding());
+            membershipHash = Sha1Hash.compute(asnEncoder.getEncoding());
+            return membershipHash;
 		}
 	}	
 	
@@ -249,51 +351,45 @@ class UBMembership implements Membership
 
 	private void ProcessMessage_UserList(byte[] message) throws AsnException, SoftnetException
 	{
-		SequenceDecoder asnUsers = ASNDecoder.Sequence(message, 2);		
+		loadUserList(ASNDecoder.Sequence(message, 2));
+		saveSnapshot();
+		
+		fireUsersUpdatedEvent();
+	}
+	
+	private void loadUserList(SequenceDecoder asnUsers) throws AsnException, SoftnetException
+	{
 				
 		ArrayList<MUser> users = new ArrayList<MUser>();
+		HashMap<Long, MUser> receivedUsersById = new HashMap<Long, MUser>();
+		HashMap<String, MUser> receivedUsersByName = new HashMap<String, MUser>();
 		while(asnUsers.hasNext())
 		{
 			SequenceDecoder asnUser = asnUsers.Sequence();
 			long userId = asnUser.Int64();
 			String userName = asnUser.IA5String(1, 256);
 			
-			MUser user = null;
-			for(MUser mUser: mUsers)
-			{
-				if(userId == mUser.userId)
-				{
-					user = mUser;					
-					break;
-				}
-			}
-			
+			MUser user = usersById.get(userId);
 			if(user != null)
 				user.setName(userName);
 			else
 				user = new MUser(userId, userName);			
 			users.add(user);			
+			receivedUsersById.put(userId, user);
+			receivedUsersByName.put(userName, user);
 		}
 		asnUsers.end();		
 				
 		for(MUser mUser: mUsers)
 		{
-			boolean userRemoved = true;
-			for(MUser receivedUser: users)
-			{
-				if(receivedUser.userId == mUser.userId)
-				{					
-					userRemoved = false;
-					break;
-				}
-			}
-			
-			if(userRemoved)
+			if(receivedUsersById.containsKey(mUser.userId) == false)
 				mUser.setRemoved();			
 		}				
 		mUsers = users;		
-		
-		fireUsersUpdatedEvent();
+		usersById = receivedUsersById;
+		usersByName = receivedUsersByName;
+		accessCache.clear();
+		membershipHash = null;
 	}
 
 	private void ProcessMessage_UserIncluded(byte[] message) throws AsnException, SoftnetException
@@ -303,14 +399,15 @@ class UBMembership implements Membership
         String userName = asnRootSequence.IA5String(1, 256);
         asnRootSequence.end();
 
-        for(MUser user: mUsers)
-        {
-        	if(user.userId == userId)
-        		throw new InputDataInconsistentSoftnetException();
-        }
+        if(usersById.containsKey(userId))
+        	throw new InputDataInconsistentSoftnetException();
         
         MUser newUser = new MUser(userId, userName);        
         mUsers.add(newUser);
+        usersById.put(userId, newUser);
+        usersByName.put(userName, newUser);
+        membershipHash = null;
+        saveSnapshot();
         
         fireUserIncludedEvent(newUser);
 	}
@@ -322,19 +419,19 @@ class UBMembership implements Membership
         String userName = asnRootSequence.IA5String(1, 256);
         asnRootSequence.end();
 
-        MUser updatedUser = null;
-        for(MUser user: mUsers)
-        {
-        	if(user.userId == userId)
-        	{
-        		updatedUser = user;
-        		break;
-        	}
-        }
-        
+        MUser updatedUser = usersById.get(userId);
     	if(updatedUser == null)
     		throw new InputDataInconsistentSoftnetException();    	
+    	if(updatedUser.userName.equals(userName) == false)
+    	{
+    		if(usersByName.get(updatedUser.userName) == updatedUser)
+    			usersByName.remove(updatedUser.userName);
+    		usersByName.put(userName, updatedUser);
+    	}
     	updatedUser.setName(userName);
+    	accessCache.invalidateUser(userId);
+    	membershipHash = null;
+    	saveSnapshot();
     	
         fireUserUpdatedEvent(updatedUser);
 	}
@@ -345,20 +442,17 @@ class UBMembership implements Membership
         long userId = asnRootSequence.Int64();
         asnRootSequence.end();
 
-        MUser removedUser = null;
-        for(MUser user: mUsers)
-        {
-        	if(user.userId == userId)
-        	{
-        		removedUser = user;
-        		break;
-        	}
-        }
+        MUser removedUser = usersById.remove(userId);
     	if(removedUser == null)
     		throw new InputDataInconsistentSoftnetException();
     	
     	mUsers.remove(removedUser);
+    	if(usersByName.get(removedUser.userName) == removedUser)
+    		usersByName.remove(removedUser.userName);
     	removedUser.setRemoved();
+    	accessCache.invalidateUser(userId);
+    	membershipHash = null;
+    	saveSnapshot();
         
         fireUserRemovedEvent(removedUser);
 	}
@@ -367,7 +461,9 @@ class UBMembership implements Membership
 	{
 		if(siteStructure.isGuestSupported() == false)
 			return;	
-		is_guest_allowed = true;		
+		is_guest_allowed = true;
+		accessCache.invalidateGuests();
+		saveSnapshot();
 		fireGuestAccessChangedEvent();
 	}
 
@@ -376,6 +472,8 @@ class UBMembership implements Membership
 		if(siteStructure.isGuestSupported() == false)
 			return;	
 		is_guest_allowed = false;
+		accessCache.invalidateGuests();
+		saveSnapshot();
 		fireGuestAccessChangedEvent();
 	}
 
@@ -538,22 +636,12 @@ class UBMembership implements Membership
 	
 	private MUser findMembershipUser(long userId)
 	{
-		for(MUser mUser: mUsers)
-		{
-			if(mUser.userId == userId)
-				return mUser;
-		}
-		return null;
+		return usersById.get(userId);
 	}
 
 	private MUser findMembershipUser(String userName)
 	{
-		for(MUser mUser: mUsers)
-		{
-			if(mUser.userName.equals(userName))
-				return mUser;
-		}
-		return null;
+		return usersByName.get(userName);
 	}
 	
  	private class MUser implements MembershipUser, Comparable<MUser>
@@ -17,6 +17,7 @@
 package softnet.service;
 
 import java.net.*;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.UUID;
 
@@ -30,6 +31,7 @@ class UDPBinding
 	public final int virtualPort;
 	public final GuestAccess guestAccess;
 	public final String[] roles;
+	public BitSet roleSet = null;
 	
 	private Object mutex;
 	private int backlog;
@@ -141,14 +143,13 @@ class UDPBinding
 			else
 			{
 				final UdpRequest request = completedRequests.removeFirst();
-				Thread thread = new Thread()
+				Threads.start(new Runnable()
 				{
 				    public void run(){
 						request.channel.send(EncodeMessage_ConnectionAccepted(request.requestUid, request.userKind, request.clientId));		
 				    	acceptHandler.accept(new RequestContext(serviceEndpoint, request.user, request.clientId, request.sessionTag), request.datagramSocket, request.remoteSocketAddress, request.mode);
 				    }
-				};
-				thread.start();
+				});
 			}
 		}
 	}
@@ -83,6 +83,7 @@ class UDPController
 				throw new IllegalArgumentException(String.format("The UDP virtual port %d is already in use.", virtualPort));
 			
 			UDPBinding newBinding = new UDPBinding(serviceEndpoint, virtualPort, backlog, roleNames);
+			newBinding.roleSet = membership.getRoleSet(roleNames);
 			udpBindings.add(newBinding);
 		}
 	}
@@ -114,6 +115,7 @@ class UDPController
 			{
 				udpBindings.remove(udpBinding);
 				udpBinding.close();
+				membership.getAccessCache().invalidateResource(udpBinding);
 			}
 		}
 	}
@@ -197,45 +199,10 @@ class UDPController
 			return;
 		}
 		
-		if(udpBinding.roles != null)
+		if(membership.getAccessCache().isAllowed(udpBinding, udpBinding.roleSet, udpBinding.guestAccess, user) == false)
 		{
-			if(user.isGuest())
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;				
-			}
-			
-			boolean userAllowed = false;
-			for(String role: udpBinding.roles)
-			{
-				if(user.isInRole(role))
-				{
-					userAllowed = true;
-					break;
-				}
-			}
-			
-			if(userAllowed == false)
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;		
-			}
-		}
-		else if(udpBinding.guestAccess != null)
-		{
-			if(udpBinding.guestAccess == GuestAccess.GuestDenied)
-			{
-				if(user.isGuest())
-				{
-					channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-					return;
-				}
-			}			
-			else if(user.isStatelessGuest()) // udpBinding.guestAccess == GuestAccess.StatelessGuestDenied
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;
-			}
+			channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
+			return;
 		}
 
 		if(udpBinding.isBusy())
@@ -294,45 +261,10 @@ class UDPController
 			return;
 		}		
 		
-		if(udpBinding.roles != null)
+		if(membership.getAccessCache().isAllowed(udpBinding, udpBinding.roleSet, udpBinding.guestAccess, user) == false)
 		{
-			if(user.isGuest())
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;				
-			}
-			
-			boolean userAllowed = false;
-			for(String role: udpBinding.roles)
-			{
-				if(user.isInRole(role))
-				{
-					userAllowed = true;
-					break;
-				}
-			}
-			
-			if(userAllowed == false)
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;		
-			}			
-		}
-		else if(udpBinding.guestAccess != null)
-		{
-			if(udpBinding.guestAccess == GuestAccess.GuestDenied)
-			{
-				if(user.isGuest())
-				{
-					channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-					return;
-				}
-			}			
-			else if(user.isStatelessGuest()) // udpBinding.guestAccess == GuestAccess.StatelessGuestDenied
-			{
-				channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
-				return;
-			}
+			channel.send(EncodeMessage_RequestError(requestUid, ErrorCodes.ACCESS_DENIED, userKind, clientId));
+			return;
 		}
 		
 		udpBinding.createConnection(channel, requestUid, connectionUid, serverId, serverIP, userKind, user, clientId, sessionTag);